@@ -2,6 +2,7 @@
 package org.araymond.joal.core;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,13 +14,19 @@ import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.araymond.joal.core.bandwith.BandwidthDispatcher;
 import org.araymond.joal.core.antihnr.AntiHitAndRunService;
 import org.araymond.joal.core.persistence.ElapsedTimePersistenceService;
+import org.araymond.joal.core.bandwith.PeersUpdateBatchStats;
 import org.araymond.joal.core.bandwith.RandomSpeedProvider;
 import org.araymond.joal.core.bandwith.Speed;
 import org.araymond.joal.core.bandwith.SpeedChangedListener;
 import org.araymond.joal.core.client.emulated.BitTorrentClient;
 import org.araymond.joal.core.client.emulated.BitTorrentClientProvider;
+import org.araymond.joal.core.client.emulated.generator.PregeneratedValuePoolStats;
 import org.araymond.joal.core.config.AppConfiguration;
 import org.araymond.joal.core.config.JoalConfigProvider;
+import org.araymond.joal.core.events.AsyncEventPublisher;
+import org.araymond.joal.core.events.EventPublisherStats;
+import org.araymond.joal.core.events.announce.WillAnnounceEvent;
+import org.araymond.joal.core.events.announce.TrackerHostCircuitBreakerChangedEvent;
 import org.araymond.joal.core.events.config.ListOfClientFilesEvent;
 import org.araymond.joal.core.events.global.state.GlobalSeedStartedEvent;
 import org.araymond.joal.core.events.global.state.GlobalSeedStoppedEvent;
@@ -32,9 +39,19 @@ import org.araymond.joal.core.ttorrent.client.ClientBuilder;
 import org.araymond.joal.core.ttorrent.client.ClientFacade;
 import org.araymond.joal.core.ttorrent.client.ConnectionHandler;
 import org.araymond.joal.core.ttorrent.client.DelayQueue;
+import org.araymond.joal.core.ttorrent.client.DelayScheduler;
+import org.araymond.joal.core.ttorrent.client.TimingWheelDelayScheduler;
+import org.araymond.joal.core.ttorrent.client.DispatchLag;
 import org.araymond.joal.core.ttorrent.client.announcer.AnnouncerFacade;
 import org.araymond.joal.core.ttorrent.client.announcer.AnnouncerFactory;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceDataAccessor;
+import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceRequest;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostRateLimitStats;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.HttpScrapeClient;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHealthRegistry;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakerState;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpTrackerClient;
 import org.springframework.context.ApplicationEventPublisher;
 
 import java.io.IOException;
@@ -42,7 +59,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import static java.nio.file.Files.isDirectory;
@@ -95,10 +115,17 @@ import org.araymond.joal.core.torrent.watcher.TorrentFileChangeAware;
 
 @Slf4j
 public class SeedManager implements TorrentFileChangeAware {
+    private static final long STATUS_LOG_PERIOD_MS = TimeUnit.MINUTES.toMillis(5);
 
 
     // Client HTTP utilisé pour les communications réseau (announces trackers, etc.)
     private final CloseableHttpClient httpClient;
+    // Client HTTP non bloquant pour les announces asynchrones, créé à la demande (voir asyncHttpAnnounce)
+    private java.net.http.HttpClient asyncHttpClient;
+    // Client des trackers udp:// (BEP 15), créé à la demande (voir udpTrackerEnabled)
+    private UdpTrackerClient udpTrackerClient;
+    // Santé des trackers (latence et taux d'échec), conservée d'un démarrage du seed à l'autre
+    private final TrackerHealthRegistry trackerHealthRegistry = new TrackerHealthRegistry();
     // Indique si le seed est en cours
     @Getter private boolean seeding;
     // Chemins des dossiers de configuration, torrents, archives, etc.
@@ -109,8 +136,8 @@ public class SeedManager implements TorrentFileChangeAware {
     private final TorrentFileProvider torrentFileProvider;
     // Fournisseur de clients BitTorrent émulés
     private final BitTorrentClientProvider bitTorrentClientProvider;
-    // Pour publier des événements Spring (utilisé pour la communication interne)
-    private final ApplicationEventPublisher appEventPublisher;
+    // Publie les événements Spring depuis son propre thread (utilisé pour la communication interne)
+    private final AsyncEventPublisher appEventPublisher;
     // Gère les connexions réseau
     private final ConnectionHandler connectionHandler = new ConnectionHandler();
     // Gère la bande passante simulée
@@ -124,6 +151,8 @@ public class SeedManager implements TorrentFileChangeAware {
     private final ElapsedTimePersistenceService elapsedTimePersistenceService;
     // Thread qui vérifie périodiquement l'état anti Hit&Run
     private Thread antiHnRThread;
+    // Écrit l'état interne du seed dans les logs toutes les STATUS_LOG_PERIOD_MS, tant que le seed tourne
+    private final SeedStatusLogger statusLogger = new SeedStatusLogger(STATUS_LOG_PERIOD_MS);
 
     /**
      * Constructeur principal du SeedManager.
@@ -146,9 +175,20 @@ public class SeedManager implements TorrentFileChangeAware {
         // Initialisation des chemins de configuration et des services principaux
         this.joalFoldersPath = new JoalFoldersPath(Paths.get(joalConfRootPath));
         this.torrentFileProvider = new TorrentFileProvider(joalFoldersPath);
-        this.configProvider = new JoalConfigProvider(mapper, joalFoldersPath, appEventPublisher);
+        // Les listeners (web) sont appelés par le thread du publisher, pas par les threads d'announce ni le dispatcher.
+        // Les vitesses et les annonces à venir sont remplacées par les suivantes, elles peuvent être perdues si le
+        // buffer est plein ; les autres événements décrivent un état et font attendre le thread qui les publie.
+        this.appEventPublisher = new AsyncEventPublisher(appEventPublisher, AsyncEventPublisher.DEFAULT_CAPACITY, Map.of(
+                SeedingSpeedsHasChangedEvent.class, AsyncEventPublisher.OverflowPolicy.DROP_OLDEST,
+                WillAnnounceEvent.class, AsyncEventPublisher.OverflowPolicy.DROP_OLDEST
+        ));
+        this.statusLogger.register("eventPublisher", this::getEventPublisherStats);
+        this.statusLogger.register("peersUpdateBatches", this::getPeersUpdateBatchStats);
+        this.statusLogger.register("announceDispatchLag", this::getAnnounceDispatchLag);
+        this.statusLogger.register("trackerRateLimits", this::getTrackerRateLimitStats);
+        this.statusLogger.register("pregeneratedPools", this::getPregeneratedPoolStats);
+        this.configProvider = new JoalConfigProvider(mapper, joalFoldersPath, this.appEventPublisher);
         this.bitTorrentClientProvider = new BitTorrentClientProvider(configProvider, mapper, joalFoldersPath);
-        this.appEventPublisher = appEventPublisher;
         this.elapsedTimePersistenceService = new ElapsedTimePersistenceService(mapper, joalFoldersPath.getConfDirRootPath());
 
         // Configuration du client HTTP pour les communications trackers
@@ -350,25 +390,83 @@ public class SeedManager implements TorrentFileChangeAware {
         this.appEventPublisher.publishEvent(new ListOfClientFilesEvent(this.listClientFiles()));
         final BitTorrentClient bitTorrentClient = bitTorrentClientProvider.generateNewClient();
 
-        this.bandwidthDispatcher = new BandwidthDispatcher(5000, new RandomSpeedProvider(appConfig));  // TODO: move interval to config
+        this.bandwidthDispatcher = new BandwidthDispatcher(
+                new RandomSpeedProvider(appConfig),
+                appConfig.getPeersUpdateBatchWindowMs(),
+                appConfig.getPeersUpdateMaxBatchSize()
+        );
         this.bandwidthDispatcher.setSpeedListener(new SeedManagerSpeedChangeListener(this.appEventPublisher));
         this.bandwidthDispatcher.start();
 
         final AnnounceDataAccessor announceDataAccessor = new AnnounceDataAccessor(bitTorrentClient, bandwidthDispatcher, connectionHandler);
+        final TrackerHostCircuitBreakers circuitBreakers = new TrackerHostCircuitBreakers(
+                appConfig.getTrackerCircuitBreakerFailureThreshold(), appConfig.getTrackerCircuitBreakerOpenMs(),
+                breakerState -> this.appEventPublisher.publishEvent(new TrackerHostCircuitBreakerChangedEvent(breakerState))
+        );
 
         this.client = ClientBuilder.builder()
                 .withAppConfiguration(appConfig)
                 .withTorrentFileProvider(this.torrentFileProvider)
                 .withBandwidthDispatcher(this.bandwidthDispatcher)
-                .withAnnouncerFactory(new AnnouncerFactory(announceDataAccessor, httpClient, appConfig))
+                .withAnnouncerFactory(new AnnouncerFactory(announceDataAccessor, httpClient, appConfig,
+                        appConfig.isAsyncHttpAnnounce() ? this.getOrCreateAsyncHttpClient() : null,
+                        appConfig.isUdpTrackerEnabled() ? this.getOrCreateUdpTrackerClient(appConfig) : null,
+                        this.trackerHealthRegistry, circuitBreakers))
                 .withEventPublisher(this.appEventPublisher)
-                .withDelayQueue(new DelayQueue<>())
+                .withDelayQueue(createAnnounceScheduler(appConfig))
+                .withCircuitBreakers(circuitBreakers)
+                .withScrapeClients(new HttpScrapeClient(httpClient, bitTorrentClient.getHeaders(), appConfig.getMaxTrackerResponseBytes()),
+                        appConfig.isUdpTrackerEnabled() ? this.getOrCreateUdpTrackerClient(appConfig) : null)
                 .build();
 
         this.client.start();
+        this.statusLogger.start();
         appEventPublisher.publishEvent(new GlobalSeedStartedEvent(bitTorrentClient));
     }
 
+    /**
+     * Client HTTP NIO partagé par toutes les announces asynchrones : un thread sélecteur et quelques threads
+     * pour traiter les réponses suffisent pour des milliers d'announces en vol.
+     */
+    private synchronized java.net.http.HttpClient getOrCreateAsyncHttpClient() {
+        if (this.asyncHttpClient == null) {
+            final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("tracker-http-async-%d").setDaemon(true).build();
+            this.asyncHttpClient = java.net.http.HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+                    .executor(Executors.newFixedThreadPool(2, threadFactory))
+                    .build();
+        }
+        return this.asyncHttpClient;
+    }
+
+    /**
+     * Client UDP partagé : une seule socket et un seul thread pour toutes les announces udp://.
+     * Il n'est jamais recréé, les announcers existants le gardent : un changement du nombre de retransmissions dans la
+     * configuration lui est appliqué.
+     */
+    private synchronized UdpTrackerClient getOrCreateUdpTrackerClient(final AppConfiguration appConfig) throws IOException {
+        if (this.udpTrackerClient == null) {
+            this.udpTrackerClient = new UdpTrackerClient(Duration.ofSeconds(15), appConfig.getUdpTrackerMaxRetransmissions());
+        } else {
+            this.udpTrackerClient.setMaxRetransmissions(appConfig.getUdpTrackerMaxRetransmissions());
+        }
+        return this.udpTrackerClient;
+    }
+
+    /**
+     * Instancie le planificateur d'announces choisi dans la configuration.
+     */
+    private static DelayScheduler<AnnounceRequest> createAnnounceScheduler(final AppConfiguration appConfig) {
+        switch (appConfig.getAnnounceScheduler()) {
+            case TIMING_WHEEL:
+                return new TimingWheelDelayScheduler<>(appConfig.getAnnounceSchedulerTickMs(), TimeUnit.MILLISECONDS);
+            case HEAP:
+            default:
+                return new DelayQueue<>();
+        }
+    }
+
     /**
      * Sauvegarde une nouvelle configuration dans le fichier config.json
      */
@@ -431,6 +529,51 @@ public class SeedManager implements TorrentFileChangeAware {
         return this.client == null ? emptyList() : client.getCurrentlySeedingAnnouncers();
     }
 
+    /**
+     * Retourne le retard de l'ordonnanceur d'announces (heure effective de dispatch - heure prévue).
+     */
+    public Optional<DispatchLag> getAnnounceDispatchLag() {
+        return this.client == null ? Optional.empty() : Optional.of(this.client.getDispatchLag());
+    }
+
+    /**
+     * Retourne, par hôte de tracker, le nombre d'announces admis et retardés par le limiteur de débit.
+     */
+    public List<TrackerHostRateLimitStats> getTrackerRateLimitStats() {
+        return this.client == null ? emptyList() : this.client.getTrackerRateLimitStats();
+    }
+
+    /**
+     * État des disjoncteurs des hôtes de trackers, vide si le seed n'est pas démarré.
+     */
+    public List<TrackerHostCircuitBreakerState> getTrackerCircuitBreakerStates() {
+        return this.client == null ? emptyList() : this.client.getTrackerCircuitBreakerStates();
+    }
+
+    /**
+     * Remplissage, hits et misses des pools de peer_id et de key pré-générés du client émulé, vide si le seed n'est
+     * pas démarré ou si la politique de rafraîchissement du client n'en utilise pas.
+     */
+    public List<PregeneratedValuePoolStats> getPregeneratedPoolStats() {
+        return this.client == null ? emptyList() : this.bitTorrentClientProvider.get().getPregeneratedPoolStats();
+    }
+
+    /**
+     * Taille et attente des lots de mises à jour de peers appliqués par le dispatcher de bande passante, vide si le
+     * seed n'est pas démarré.
+     */
+    public Optional<PeersUpdateBatchStats> getPeersUpdateBatchStats() {
+        return this.bandwidthDispatcher == null ? Optional.empty() : Optional.of(this.bandwidthDispatcher.getPeersUpdateBatchStats());
+    }
+
+    /**
+     * Remplissage du buffer des événements en attente de livraison aux listeners, et nombre d'événements perdus ou
+     * ayant fait attendre leur publication.
+     */
+    public EventPublisherStats getEventPublisherStats() {
+        return this.appEventPublisher.getStats();
+    }
+
     /**
      * Retourne la map des vitesses de seed par infoHash.
      */
@@ -480,6 +623,7 @@ public class SeedManager implements TorrentFileChangeAware {
         if (antiHnRThread != null && antiHnRThread.isAlive()) {
             antiHnRThread.interrupt();
         }
+        this.statusLogger.stop();
         if (client != null) {
             this.client.stop();
             this.appEventPublisher.publishEvent(new GlobalSeedStoppedEvent());
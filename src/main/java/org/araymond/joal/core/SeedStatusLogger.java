@@ -0,0 +1,90 @@
+package org.araymond.joal.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Écrit périodiquement dans les logs, en une seule ligne INFO, l'état interne du seed : remplissage des buffers,
+ * retards, limiteurs... Chaque section est lue à partir de son {@link Supplier} au moment du log.
+ * <p/>
+ * Une section dont la valeur est {@code null}, un {@link Optional} vide ou une collection vide n'est pas écrite (seed
+ * arrêté, fonctionnalité désactivée dans la configuration).
+ */
+@Slf4j
+public class SeedStatusLogger {
+    private final long periodMs;
+    private final Map<String, Supplier<?>> sections = new LinkedHashMap<>();
+    private ScheduledExecutorService executor;
+
+    public SeedStatusLogger(final long periodMs) {
+        Preconditions.checkArgument(periodMs > 0, "periodMs must be greater than 0");
+        this.periodMs = periodMs;
+    }
+
+    /**
+     * Ajoute une section, écrite après celles déjà enregistrées.
+     */
+    public synchronized SeedStatusLogger register(final String name, final Supplier<?> section) {
+        Preconditions.checkNotNull(name, "name must not be null");
+        Preconditions.checkNotNull(section, "section must not be null");
+        this.sections.put(name, section);
+        return this;
+    }
+
+    public synchronized void start() {
+        if (this.executor != null) {
+            return;
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("seed-status-logger").setDaemon(true).build()
+        );
+        this.executor.scheduleAtFixedRate(this::logStatus, this.periodMs, this.periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    private void logStatus() {
+        // Une exception non attrapée annulerait les logs suivants
+        try {
+            final String status = this.render();
+            if (!status.isEmpty()) {
+                log.info("Seed status: {}", status);
+            }
+        } catch (final RuntimeException e) {
+            log.warn("Failed to log the seed status", e);
+        }
+    }
+
+    synchronized String render() {
+        final StringBuilder sb = new StringBuilder();
+        this.sections.forEach((name, section) -> {
+            Object value = section.get();
+            if (value instanceof Optional) {
+                value = ((Optional<?>) value).orElse(null);
+            }
+            if (value == null || (value instanceof Collection && ((Collection<?>) value).isEmpty())) {
+                return;
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(name).append('=').append(value);
+        });
+        return sb.toString();
+    }
+}
@@ -1,47 +1,73 @@
 package org.araymond.joal.core.bandwith;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.araymond.joal.core.bandwith.weight.PeersAwareWeightCalculator;
-import org.araymond.joal.core.bandwith.weight.WeightHolder;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-import static java.util.Optional.ofNullable;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
-import static org.apache.commons.lang3.ObjectUtils.getIfNull;
 
 /**
  * Service qui gère la répartition de la bande passante simulée entre les torrents.
- * - Met à jour les vitesses de seed selon les peers et le poids
- * - Rafraîchit périodiquement les stats d'upload
- * Optimisation possible : utiliser un scheduler pour plus de précision et batcher les updates.
+ * - Met à jour les poids des torrents selon leurs peers, rangés avec leurs stats d'upload dans un {@link
+ * TorrentStatsStore} en colonnes de types primitifs, lisible sans verrou
+ * - La vitesse d'un torrent est déduite de son poids : {@code vitesseGlobale * poids / poidsTotal}. Mettre à jour le
+ * poids d'un torrent est en O(1) et ne touche pas aux autres torrents.
+ * - Calcule l'upload de chaque torrent à la demande, sans boucle périodique : on intègre l'upload d'une unité de poids
+ * ({@code vitesseGlobale / poidsTotal} octets par seconde) depuis le démarrage avec une horloge monotone. L'upload
+ * d'un torrent est son poids multiplié par ce qu'une unité de poids a uploadé depuis son dernier changement de poids.
+ * Le total est exact quels que soient les changements de poids et le retard des threads.
+ * - Les mises à jour de peers sont mises en attente puis appliquées par lots, toutes les {@code
+ * peersUpdateBatchWindowMs} ou dès que {@code peersUpdateMaxBatchSize} torrents sont en attente, sous une seule prise
+ * du verrou. Seule la dernière mise à jour de chaque torrent est appliquée.
+ * - Les vitesses de l'interface web sont publiées dans un {@link BandwidthSnapshot} immuable et versionné via une
+ * référence volatile, lu sans verrou ni copie. Sa construction est en O(n), elle n'a lieu qu'au tick du thread qui
+ * suit une modification.
+ * - Les listeners sont notifiés au plus une fois par seconde, uniquement si la version du snapshot a changé.
  */
 @Slf4j
 @RequiredArgsConstructor
 // Gère la logique de répartition de la bande passante et le suivi des stats d'upload.
 public class BandwidthDispatcher implements BandwidthDispatcherFacade, Runnable {
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private final WeightHolder<InfoHash> weightHolder = new WeightHolder<>(new PeersAwareWeightCalculator());
-    private final Map<InfoHash, TorrentSeedStats> torrentsSeedStats = new HashMap<>();
-    private final Map<InfoHash, Speed> speedMap = new HashMap<>();
+    /**
+     * Sérialise les écritures, les lectures passent par {@link #uploadPerWeightUnit}, le {@link #store} et le {@link
+     * #snapshot} sans verrou.
+     */
+    private final Lock lock = new ReentrantLock();
+    private final PeersAwareWeightCalculator weightCalculator = new PeersAwareWeightCalculator();
+    private final TorrentStatsStore store = new TorrentStatsStore();
+    private volatile UploadPerWeightUnit uploadPerWeightUnit = UploadPerWeightUnit.startingAt(System.nanoTime());
+    private volatile BandwidthSnapshot snapshot = BandwidthSnapshot.EMPTY;
+    private volatile boolean snapshotOutdated;
+    private long lastNotifiedVersion;
+    private final Map<InfoHash, PendingPeersUpdate> pendingPeersUpdates = new ConcurrentHashMap<>();
+    private final PeersUpdateBatchRecorder peersUpdateBatchRecorder = new PeersUpdateBatchRecorder();
     private SpeedChangedListener speedChangedListener;
-    private int threadLoopCounter;
     private volatile boolean stop;
     private Thread thread;
 
-    private final int threadPauseIntervalMs;
     private final RandomSpeedProvider randomSpeedProvider;
+    /**
+     * Durée max d'attente d'une mise à jour de peers avant d'être appliquée, 0 pour les appliquer immédiatement.
+     */
+    private final long peersUpdateBatchWindowMs;
+    /**
+     * Nombre de torrents en attente à partir duquel le lot est appliqué sans attendre la fin de la fenêtre.
+     */
+    private final int peersUpdateMaxBatchSize;
 
     private static final long TWENTY_MINS_MS = MINUTES.toMillis(2);
+    private static final long SPEED_NOTIFICATION_INTERVAL_MS = SECONDS.toMillis(1);
 
     /**
      * Définit le listener à notifier lors d'un changement de vitesse.
@@ -51,26 +77,32 @@ public class BandwidthDispatcher implements BandwidthDispatcherFacade, Runnable
     }
 
     /**
-     * This method does not benefit from the lock, because the value will never be accessed in a ambiguous way.
-     * And even if it happens, we return 0 by default.
-     */
-    /**
-     * Retourne les stats d'upload pour un torrent donné.
+     * Retourne les stats d'upload pour un torrent donné, l'upload étant intégré jusqu'à maintenant. Sans verrou.
      */
     public TorrentSeedStats getSeedStatForTorrent(final InfoHash infoHash) {
-        return getIfNull(this.torrentsSeedStats.get(infoHash), TorrentSeedStats::new);
+        final long uploaded = this.store.uploadedAt(infoHash, this.uploadPerWeightUnit.valueAt(System.nanoTime()));
+        return uploaded < 0 ? new TorrentSeedStats() : new TorrentSeedStats(uploaded);
     }
 
     /**
-     * Retourne la map des vitesses de seed pour tous les torrents.
+     * Retourne la map immuable des vitesses de seed pour tous les torrents. Sans verrou ni copie.
      */
     public Map<InfoHash, Speed> getSpeedMap() {
-        try {
-            this.lock.readLock().lock();
-            return new HashMap<>(speedMap);
-        } finally {
-            this.lock.readLock().unlock();
-        }
+        return this.snapshot.getSpeeds();
+    }
+
+    /**
+     * Retourne le dernier état publié, sans verrou. Sa version permet d'ignorer un état déjà traité.
+     */
+    public BandwidthSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Retourne la taille des lots de mises à jour de peers appliqués et l'attente de leur plus ancienne mise à jour.
+     */
+    public PeersUpdateBatchStats getPeersUpdateBatchStats() {
+        return this.peersUpdateBatchRecorder.snapshot();
     }
 
     /**
@@ -97,52 +129,86 @@ public class BandwidthDispatcher implements BandwidthDispatcherFacade, Runnable
 
     @Override
     /**
-     * Boucle principale du thread : met à jour les stats et rafraîchit la bande passante.
+     * Boucle principale du thread : applique le lot de mises à jour de peers en attente, rafraîchit la bande passante
+     * globale et notifie le listener si des vitesses ont changé depuis la dernière notification. Les uploads n'ont pas
+     * besoin d'être incrémentés ici, ils sont intégrés à la demande.
      */
     public void run() {
+        final long tickMs = this.peersUpdateBatchWindowMs > 0
+                ? Math.min(this.peersUpdateBatchWindowMs, SPEED_NOTIFICATION_INTERVAL_MS)
+                : SPEED_NOTIFICATION_INTERVAL_MS;
         try {
+            long lastBandwidthRefresh = System.nanoTime();
+            long lastSpeedNotification = lastBandwidthRefresh;
             while (!this.stop) {
-                MILLISECONDS.sleep(this.threadPauseIntervalMs);
-
-                // refresh bandwidth every 20 minutes:
-                this.threadLoopCounter++;
-                if (this.threadLoopCounter == TWENTY_MINS_MS / this.threadPauseIntervalMs) {
+                MILLISECONDS.sleep(tickMs);
+                this.applyPendingPeersUpdates();
+                this.publishSnapshotIfOutdated();
+                final long now = System.nanoTime();
+                if (now - lastBandwidthRefresh >= MILLISECONDS.toNanos(TWENTY_MINS_MS)) {
+                    lastBandwidthRefresh = now;
                     this.refreshCurrentBandwidth();
-                    this.threadLoopCounter = 0;
                 }
-
-                // This method as to run as fast as possible to avoid blocking other ones. Because we want this loop
-                //  to be scheduled as precise as we can. Locking too much will delay the Thread.sleep and cause stats
-                //  to be undervalued
-                this.lock.readLock().lock();
-                final Set<Map.Entry<InfoHash, TorrentSeedStats>> seedStatsView = new HashSet<>(this.torrentsSeedStats.entrySet());
-                this.lock.readLock().unlock();
-
-                // update the uploaded data amount tallies:
-                seedStatsView.forEach(entry -> {
-                    final long speedInBytesPerSecond = ofNullable(this.speedMap.get(entry.getKey()))
-                            .map(Speed::getBytesPerSecond)
-                            .orElse(0L);
-                    // Divide by 1000 because of the thread pause interval being in milliseconds
-                    // The multiplication HAS to be done before the division, otherwise we're going to have trailing zeroes
-                    entry.getValue().addUploaded(speedInBytesPerSecond * this.threadPauseIntervalMs / 1000);
-                });
+                if (now - lastSpeedNotification >= MILLISECONDS.toNanos(SPEED_NOTIFICATION_INTERVAL_MS)) {
+                    lastSpeedNotification = now;
+                    this.notifySpeedsHaveChanged();
+                }
             }
         } catch (final InterruptedException ignore) {
         }
     }
 
     /**
-     * Met à jour le nombre de seeders/leechers pour un torrent et recalcule les vitesses.
+     * Met en attente le nombre de seeders/leechers d'un torrent, il sera appliqué avec le prochain lot. Le lot est
+     * appliqué par le thread appelant s'il atteint {@code peersUpdateMaxBatchSize} torrents.
      */
     public void updateTorrentPeers(final InfoHash infoHash, final int seeders, final int leechers) {
         log.debug("Updating Peers stats for {}", infoHash.getHumanReadable());
-        this.lock.writeLock().lock();
+        // la dernière mise à jour remplace les précédentes, mais l'attente est mesurée depuis la première
+        this.pendingPeersUpdates.merge(
+                infoHash,
+                new PendingPeersUpdate(new Peers(seeders, leechers), System.nanoTime()),
+                (previous, update) -> new PendingPeersUpdate(update.peers, previous.enqueuedAtNanos)
+        );
+        if (this.peersUpdateBatchWindowMs <= 0 || this.pendingPeersUpdates.size() >= this.peersUpdateMaxBatchSize) {
+            this.applyPendingPeersUpdates();
+        }
+    }
+
+    /**
+     * Applique toutes les mises à jour de peers en attente sous une seule prise du verrou. Seuls les poids des torrents
+     * du lot sont modifiés, la vitesse d'une unité de poids n'est recalculée qu'une fois.
+     */
+    @VisibleForTesting
+    void applyPendingPeersUpdates() {
+        if (this.pendingPeersUpdates.isEmpty()) {
+            return;
+        }
+        this.lock.lock();
         try {
-            this.weightHolder.addOrUpdate(infoHash, new Peers(seeders, leechers));
-            this.recomputeSpeeds();
+            final long now = System.nanoTime();
+            final double uploadPerWeightUnitNow = this.uploadPerWeightUnit.valueAt(now);
+            int batchSize = 0;
+            long latencyNanos = 0;
+            for (final InfoHash infoHash : this.pendingPeersUpdates.keySet()) {
+                final PendingPeersUpdate update = this.pendingPeersUpdates.remove(infoHash);
+                if (update == null) {
+                    continue;
+                }
+                ++batchSize;
+                latencyNanos = Math.max(latencyNanos, now - update.enqueuedAtNanos);
+                // un scrape ou un announce tardif ne doit pas réintroduire un torrent désenregistré, le store l'ignore
+                this.store.updateWeight(infoHash, this.weightCalculator.calculate(update.peers), uploadPerWeightUnitNow);
+            }
+            if (batchSize == 0) {
+                return;
+            }
+            this.uploadPerWeightUnit = this.uploadPerWeightUnit.withRate(now, this.randomSpeedProvider.getCurrentSpeed(), this.store.getTotalWeight());
+            this.snapshotOutdated = true;
+            this.peersUpdateBatchRecorder.record(batchSize, latencyNanos);
+            log.debug("Applied a batch of {} peers updates", batchSize);
         } finally {
-            this.lock.writeLock().unlock();
+            this.lock.unlock();
         }
     }
 
@@ -151,12 +217,12 @@ public class BandwidthDispatcher implements BandwidthDispatcherFacade, Runnable
      */
     public void registerTorrent(final InfoHash infoHash) {
         log.debug("{} has been added to bandwidth dispatcher", infoHash.getHumanReadable());
-        this.lock.writeLock().lock();
+        this.lock.lock();
         try {
-            this.torrentsSeedStats.put(infoHash, new TorrentSeedStats());
-            this.speedMap.put(infoHash, new Speed(0));
+            this.store.register(infoHash, this.uploadPerWeightUnit.valueAt(System.nanoTime()));
+            this.snapshotOutdated = true;
         } finally {
-            this.lock.writeLock().unlock();
+            this.lock.unlock();
         }
     }
 
@@ -165,14 +231,17 @@ public class BandwidthDispatcher implements BandwidthDispatcherFacade, Runnable
      */
     public void unregisterTorrent(final InfoHash infoHash) {
         log.debug("{} has been removed from bandwidth dispatcher", infoHash.getHumanReadable());
-        this.lock.writeLock().lock();
+        this.pendingPeersUpdates.remove(infoHash);
+        this.lock.lock();
         try {
-            this.weightHolder.remove(infoHash);
-            this.torrentsSeedStats.remove(infoHash);
-            this.speedMap.remove(infoHash);
-            this.recomputeSpeeds();
+            if (this.store.unregister(infoHash)) {
+                // le poids total a changé, ce qui change la vitesse des autres torrents
+                final long now = System.nanoTime();
+                this.uploadPerWeightUnit = this.uploadPerWeightUnit.withRate(now, this.randomSpeedProvider.getCurrentSpeed(), this.store.getTotalWeight());
+                this.snapshotOutdated = true;
+            }
         } finally {
-            this.lock.writeLock().unlock();
+            this.lock.unlock();
         }
     }
 
@@ -182,62 +251,94 @@ public class BandwidthDispatcher implements BandwidthDispatcherFacade, Runnable
     @VisibleForTesting
     void refreshCurrentBandwidth() {
         log.debug("Refreshing global bandwidth");
-        this.lock.writeLock().lock();
+        this.lock.lock();
         try {
+            final long now = System.nanoTime();
             this.randomSpeedProvider.refresh();
-            this.recomputeSpeeds();
+            this.uploadPerWeightUnit = this.uploadPerWeightUnit.withRate(now, this.randomSpeedProvider.getCurrentSpeed(), this.store.getTotalWeight());
+            this.snapshotOutdated = true;
             if (log.isDebugEnabled()) {
                 log.debug("Global bandwidth refreshed, new value is {}/s", byteCountToDisplaySize(this.randomSpeedProvider.getCurrentSpeed()));
+                this.logSpeeds(now);
             }
         } finally {
-            this.lock.writeLock().unlock();
+            this.lock.unlock();
         }
     }
 
     /**
-     * Update the values of the {@code speedMap}, introducing change to the current torrent speeds.
+     * Notifie le listener avec les vitesses du dernier snapshot si sa version n'a pas encore été notifiée. Appelé
+     * uniquement par le thread du dispatcher.
      */
+    @VisibleForTesting
+    void notifySpeedsHaveChanged() {
+        final BandwidthSnapshot current = this.snapshot;
+        if (this.speedChangedListener != null && current.getVersion() != this.lastNotifiedVersion) {
+            this.lastNotifiedVersion = current.getVersion();
+            this.speedChangedListener.speedsHasChanged(current.getSpeeds());
+        }
+    }
+
     /**
-     * Recalcule les vitesses de seed pour tous les torrents selon leur poids.
+     * Publie un nouveau snapshot des vitesses si elles ont changé depuis le dernier. Appelé à chaque tick du thread.
      */
     @VisibleForTesting
-    void recomputeSpeeds() {
-        log.debug("Refreshing all torrents speeds");
-        this.torrentsSeedStats.keySet().forEach(infohash -> this.speedMap.compute(infohash, (hash, speed) -> {
-            if (speed == null) {  
-                return new Speed(0);
+    void publishSnapshotIfOutdated() {
+        if (!this.snapshotOutdated) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            if (this.snapshotOutdated) {
+                this.publishSnapshot();
             }
-            double percentOfSpeedAssigned = this.weightHolder.getTotalWeight() == 0.0
-                    ? 0.0
-                    : this.weightHolder.getWeightFor(infohash) / this.weightHolder.getTotalWeight();
-            speed.setBytesPerSecond((long) (this.randomSpeedProvider.getCurrentSpeed() * percentOfSpeedAssigned));
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Publie l'état courant dans un nouveau snapshot immuable. Appelé sous le verrou.
+     */
+    private void publishSnapshot() {
+        this.snapshotOutdated = false;
+        final ImmutableMap.Builder<InfoHash, Speed> speeds = ImmutableMap.builderWithExpectedSize(this.store.size());
+        this.store.forEachWeight((infoHash, weight) -> speeds.put(infoHash, new Speed(this.speedOf(weight))));
+        this.snapshot = new BandwidthSnapshot(this.snapshot.getVersion() + 1, speeds.build());
+    }
 
-            return speed;
-        }));
+    private long speedOf(final double weight) {
+        final double totalWeight = this.store.getTotalWeight();
+        return totalWeight <= 0.0 ? 0L : (long) (this.randomSpeedProvider.getCurrentSpeed() * weight / totalWeight);
+    }
 
-        if (speedChangedListener != null) {
-            this.speedChangedListener.speedsHasChanged(new HashMap<>(this.speedMap));
+    private void logSpeeds(final long now) {
+        if (this.store.size() == 0) {
+            return;
         }
+        final double uploadPerWeightUnitNow = this.uploadPerWeightUnit.valueAt(now);
+        final StringBuilder sb = new StringBuilder("All torrents speeds have been refreshed:\n");
+        final double totalWeight = this.store.getTotalWeight();
+        this.store.forEachWeight((infoHash, weight) -> {
+            final String humanReadableSpeed = byteCountToDisplaySize(this.speedOf(weight));
+            final double weightInPercent = totalWeight > 0.0
+                    ? weight / totalWeight * 100
+                    : 0;
+            sb.append("      ")
+                    .append(infoHash.getHumanReadable())
+                    .append(":")
+                    .append("\n          ").append("current speed: ").append(humanReadableSpeed).append("/s")
+                    .append("\n          ").append("overall upload: ").append(byteCountToDisplaySize(this.store.uploadedAt(infoHash, uploadPerWeightUnitNow)))
+                    .append("\n          ").append("weight: ").append(weightInPercent).append("% (").append(weight).append(" out of ").append(totalWeight).append(")")
+                    .append("\n");
+        });
+        sb.setLength(sb.length() - 1); // remove last \n
+        log.debug(sb.toString());
+    }
 
-        if (log.isDebugEnabled() && !this.speedMap.isEmpty()) {
-            final StringBuilder sb = new StringBuilder("All torrents speeds have been refreshed:\n");
-            final double totalWeight = this.weightHolder.getTotalWeight();
-            this.speedMap.forEach((infoHash, speed) -> {
-                final String humanReadableSpeed = byteCountToDisplaySize(speed.getBytesPerSecond());
-                final double torrentWeight = this.weightHolder.getWeightFor(infoHash);
-                final double weightInPercent = torrentWeight > 0.0
-                        ? totalWeight / torrentWeight * 100
-                        : 0;
-                sb.append("      ")
-                        .append(infoHash.getHumanReadable())
-                        .append(":")
-                        .append("\n          ").append("current speed: ").append(humanReadableSpeed).append("/s")
-                        .append("\n          ").append("overall upload: ").append(byteCountToDisplaySize(this.torrentsSeedStats.get(infoHash).getUploaded()))
-                        .append("\n          ").append("weight: ").append(weightInPercent).append("% (").append(torrentWeight).append(" out of ").append(totalWeight).append(")")
-                        .append("\n");
-            });
-            sb.setLength(sb.length() - 1); // remove last \n
-            log.debug(sb.toString());
-        }
+    @RequiredArgsConstructor
+    private static final class PendingPeersUpdate {
+        private final Peers peers;
+        private final long enqueuedAtNanos;
     }
 }
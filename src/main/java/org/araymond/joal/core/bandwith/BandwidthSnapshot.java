@@ -0,0 +1,30 @@
+package org.araymond.joal.core.bandwith;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.Getter;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.util.Map;
+
+/**
+ * Immutable speeds of the torrents of the {@link BandwidthDispatcher}, published through a volatile reference each time
+ * the torrents, their weights or the global speed change. Readers get it without locking nor copying anything.
+ * <p/>
+ * The version is incremented for every published snapshot, consumers can skip a snapshot whose version they already
+ * processed.
+ */
+@Getter
+public final class BandwidthSnapshot {
+    static final BandwidthSnapshot EMPTY = new BandwidthSnapshot(0L, ImmutableMap.of());
+
+    private final long version;
+    /**
+     * Immutable, can be handed to the listeners as is.
+     */
+    private final Map<InfoHash, Speed> speeds;
+
+    BandwidthSnapshot(final long version, final ImmutableMap<InfoHash, Speed> speeds) {
+        this.version = version;
+        this.speeds = speeds;
+    }
+}
@@ -0,0 +1,33 @@
+package org.araymond.joal.core.bandwith;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free accumulator of {@link PeersUpdateBatchStats} samples.
+ */
+class PeersUpdateBatchRecorder {
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder updateCount = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0L);
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, 0L);
+    private volatile int lastBatchSize;
+    private volatile long lastLatency;
+
+    void record(final int batchSize, final long latencyNanos) {
+        final long latency = Math.max(0L, latencyNanos);
+        this.batchCount.increment();
+        this.updateCount.add(batchSize);
+        this.totalLatency.add(latency);
+        this.maxBatchSize.accumulate(batchSize);
+        this.maxLatency.accumulate(latency);
+        this.lastBatchSize = batchSize;
+        this.lastLatency = latency;
+    }
+
+    PeersUpdateBatchStats snapshot() {
+        return new PeersUpdateBatchStats(this.batchCount.sum(), this.updateCount.sum(), this.lastBatchSize,
+                (int) this.maxBatchSize.get(), this.lastLatency, this.maxLatency.get(), this.totalLatency.sum());
+    }
+}
@@ -0,0 +1,34 @@
+package org.araymond.joal.core.bandwith;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Snapshot of the peers updates batching of the {@link BandwidthDispatcher}: how many updates were applied per batch,
+ * and how long the oldest update of a batch waited before being applied.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class PeersUpdateBatchStats {
+    private final long batchCount;
+    private final long updateCount;
+    private final int lastBatchSize;
+    private final int maxBatchSize;
+    private final long lastLatencyNanos;
+    private final long maxLatencyNanos;
+    private final long totalLatencyNanos;
+
+    public double getAverageBatchSize() {
+        return this.batchCount == 0 ? 0 : (double) this.updateCount / this.batchCount;
+    }
+
+    public long getAverageLatencyNanos() {
+        return this.batchCount == 0 ? 0 : this.totalLatencyNanos / this.batchCount;
+    }
+
+    public double getAverageLatencyMillis() {
+        return this.getAverageLatencyNanos() / 1_000_000d;
+    }
+}
@@ -26,7 +26,10 @@ public class TorrentSeedStats {  // TODO: rename to TorrentSeedState? or Torrent
      */
     private long left;
 
-    void addUploaded(final long bytes) {
-        this.uploaded += bytes;
+    public TorrentSeedStats() {
+    }
+
+    TorrentSeedStats(final long uploaded) {
+        this.uploaded = uploaded;
     }
 }
@@ -0,0 +1,228 @@
+package org.araymond.joal.core.bandwith;
+
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Stats de tous les torrents rangées en colonnes de types primitifs, un torrent occupant un slot (un indice) attribué à
+ * son enregistrement et recyclé à son désenregistrement. Un torrent ne coûte qu'une entrée dans {@link #handles} et
+ * quelques cases de tableaux, sans objet par torrent.
+ * <p/>
+ * Les écritures sont faites par un seul thread à la fois (sous le verrou du {@link BandwidthDispatcher}). Les lectures
+ * ne prennent aucun verrou : chaque slot est protégé par un seqlock, un compteur impair pendant une écriture, que le
+ * lecteur relit après avoir lu les colonnes pour recommencer si une écriture a eu lieu entre temps. La génération du
+ * slot, incrémentée à chaque (dés)enregistrement, empêche de lire les stats d'un autre torrent ayant récupéré le slot.
+ * <p/>
+ * La vitesse d'un torrent n'est pas stockée, elle se déduit de son poids et du poids total.
+ */
+final class TorrentStatsStore {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * {@code génération << 32 | slot} par torrent enregistré.
+     */
+    private final Map<InfoHash, Long> handles = new ConcurrentHashMap<>();
+    /**
+     * Remplacées par des copies plus grandes quand tous les slots sont pris, les lecteurs recommencent alors leur lecture.
+     */
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeSlotCount;
+    private int usedSlotCount;
+    private double totalWeight;
+
+    /**
+     * Enregistre le torrent (ou remet ses stats à zéro s'il l'était déjà), son upload part de {@code
+     * uploadPerWeightUnit}.
+     */
+    void register(final InfoHash infoHash, final double uploadPerWeightUnit) {
+        final Long handle = this.handles.get(infoHash);
+        final int slot;
+        final long generation;
+        if (handle == null) {
+            slot = this.allocateSlot();
+            generation = this.columns.generations[slot] + 1;
+        } else {
+            slot = slotOf(handle);
+            generation = handle >>> 32;
+            this.totalWeight -= this.columns.weights[slot];
+        }
+        final Columns c = this.columns;
+        beginWrite(c, slot);
+        c.generations[slot] = generation;
+        c.uploadedAtLastWeightChange[slot] = 0.0;
+        c.uploadPerWeightUnitAtLastWeightChange[slot] = uploadPerWeightUnit;
+        c.weights[slot] = 0.0;
+        endWrite(c, slot);
+        this.handles.put(infoHash, generation << 32 | slot);
+    }
+
+    /**
+     * @return false si le torrent n'était pas enregistré
+     */
+    boolean unregister(final InfoHash infoHash) {
+        final Long handle = this.handles.remove(infoHash);
+        if (handle == null) {
+            return false;
+        }
+        final int slot = slotOf(handle);
+        final Columns c = this.columns;
+        this.totalWeight -= c.weights[slot];
+        beginWrite(c, slot);
+        c.generations[slot]++;
+        c.weights[slot] = 0.0;
+        endWrite(c, slot);
+        if (this.freeSlotCount == this.freeSlots.length) {
+            this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlots.length * 2);
+        }
+        this.freeSlots[this.freeSlotCount++] = slot;
+        if (this.handles.isEmpty()) {
+            // efface l'erreur accumulée par les additions/soustractions successives de poids
+            this.totalWeight = 0.0;
+        }
+        return true;
+    }
+
+    /**
+     * Fige l'upload du torrent à {@code uploadPerWeightUnit} et lui affecte son nouveau poids.
+     *
+     * @return false si le torrent n'est pas enregistré
+     */
+    boolean updateWeight(final InfoHash infoHash, final double weight, final double uploadPerWeightUnit) {
+        final Long handle = this.handles.get(infoHash);
+        if (handle == null) {
+            return false;
+        }
+        final int slot = slotOf(handle);
+        final Columns c = this.columns;
+        final double previousWeight = c.weights[slot];
+        beginWrite(c, slot);
+        // la fraction d'octet est conservée pour que l'upload ne dérive pas au fil des changements de poids
+        c.uploadedAtLastWeightChange[slot] = exactUploadedAt(c, slot, uploadPerWeightUnit);
+        c.uploadPerWeightUnitAtLastWeightChange[slot] = uploadPerWeightUnit;
+        c.weights[slot] = weight;
+        endWrite(c, slot);
+        this.totalWeight += weight - previousWeight;
+        return true;
+    }
+
+    double getTotalWeight() {
+        return this.totalWeight;
+    }
+
+    int size() {
+        return this.handles.size();
+    }
+
+    /**
+     * Sans verrou.
+     *
+     * @return l'upload du torrent lorsqu'une unité de poids a uploadé {@code uploadPerWeightUnit}, -1 si le torrent
+     * n'est pas enregistré
+     */
+    long uploadedAt(final InfoHash infoHash, final double uploadPerWeightUnit) {
+        final Long handle = this.handles.get(infoHash);
+        if (handle == null) {
+            return -1;
+        }
+        final int slot = slotOf(handle);
+        final long generation = handle >>> 32;
+        while (true) {
+            final Columns c = this.columns;
+            final long sequence = (long) SEQUENCES.getAcquire(c.sequences, slot);
+            if ((sequence & 1) == 0) {
+                final long slotGeneration = c.generations[slot];
+                final double uploaded = exactUploadedAt(c, slot, uploadPerWeightUnit);
+                VarHandle.loadLoadFence();
+                if ((long) SEQUENCES.getVolatile(c.sequences, slot) == sequence && c == this.columns) {
+                    return slotGeneration == generation ? (long) uploaded : -1;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Parcourt les poids des torrents enregistrés. Réservé au thread qui écrit.
+     */
+    void forEachWeight(final ObjDoubleConsumer<InfoHash> consumer) {
+        final Columns c = this.columns;
+        this.handles.forEach((infoHash, handle) -> consumer.accept(infoHash, c.weights[slotOf(handle)]));
+    }
+
+    private static double exactUploadedAt(final Columns c, final int slot, final double uploadPerWeightUnit) {
+        return c.uploadedAtLastWeightChange[slot]
+                + c.weights[slot] * Math.max(0.0, uploadPerWeightUnit - c.uploadPerWeightUnitAtLastWeightChange[slot]);
+    }
+
+    private int allocateSlot() {
+        if (this.freeSlotCount > 0) {
+            return this.freeSlots[--this.freeSlotCount];
+        }
+        if (this.usedSlotCount == this.columns.capacity()) {
+            this.columns = this.columns.grow();
+        }
+        return this.usedSlotCount++;
+    }
+
+    /**
+     * Passe le compteur du slot à une valeur impaire, les lecteurs attendront la fin de l'écriture.
+     */
+    private static void beginWrite(final Columns c, final int slot) {
+        final long sequence = (long) SEQUENCES.get(c.sequences, slot);
+        SEQUENCES.setOpaque(c.sequences, slot, sequence + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    private static void endWrite(final Columns c, final int slot) {
+        final long sequence = (long) SEQUENCES.get(c.sequences, slot);
+        SEQUENCES.setRelease(c.sequences, slot, sequence + 1);
+    }
+
+    private static int slotOf(final long handle) {
+        return (int) handle;
+    }
+
+    private static final class Columns {
+        private final long[] sequences;
+        private final long[] generations;
+        private final double[] uploadedAtLastWeightChange;
+        private final double[] uploadPerWeightUnitAtLastWeightChange;
+        private final double[] weights;
+
+        private Columns(final int capacity) {
+            this(new long[capacity], new long[capacity], new double[capacity], new double[capacity], new double[capacity]);
+        }
+
+        private Columns(final long[] sequences, final long[] generations, final double[] uploadedAtLastWeightChange,
+                        final double[] uploadPerWeightUnitAtLastWeightChange, final double[] weights) {
+            this.sequences = sequences;
+            this.generations = generations;
+            this.uploadedAtLastWeightChange = uploadedAtLastWeightChange;
+            this.uploadPerWeightUnitAtLastWeightChange = uploadPerWeightUnitAtLastWeightChange;
+            this.weights = weights;
+        }
+
+        private int capacity() {
+            return this.sequences.length;
+        }
+
+        private Columns grow() {
+            final int capacity = this.capacity() * 2;
+            return new Columns(
+                    Arrays.copyOf(this.sequences, capacity),
+                    Arrays.copyOf(this.generations, capacity),
+                    Arrays.copyOf(this.uploadedAtLastWeightChange, capacity),
+                    Arrays.copyOf(this.uploadPerWeightUnitAtLastWeightChange, capacity),
+                    Arrays.copyOf(this.weights, capacity)
+            );
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.araymond.joal.core.bandwith;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Nombre d'octets uploadés par une unité de poids depuis le démarrage, intégré paresseusement : {@code
+ * valueAtLastChange + bytesPerSecond * (maintenant - lastChangeNanos)}, où {@code bytesPerSecond} vaut {@code
+ * vitesseGlobale / poidsTotal}. Immuable, une nouvelle instance est créée à chaque changement de la vitesse globale ou
+ * du poids total, ce qui permet de la publier aux lecteurs via une simple référence volatile.
+ */
+final class UploadPerWeightUnit {
+    private static final double NANOS_PER_SECOND = SECONDS.toNanos(1);
+
+    private final double valueAtLastChange;
+    private final long lastChangeNanos;
+    private final double bytesPerSecond;
+
+    private UploadPerWeightUnit(final double valueAtLastChange, final long lastChangeNanos, final double bytesPerSecond) {
+        this.valueAtLastChange = valueAtLastChange;
+        this.lastChangeNanos = lastChangeNanos;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    static UploadPerWeightUnit startingAt(final long now) {
+        return new UploadPerWeightUnit(0.0, now, 0.0);
+    }
+
+    double valueAt(final long now) {
+        final long elapsedNanos = Math.max(0, now - this.lastChangeNanos);
+        return this.valueAtLastChange + this.bytesPerSecond * elapsedNanos / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Ce qui a été uploadé à l'ancienne vitesse est figé à {@code now} avant de passer à la nouvelle.
+     */
+    UploadPerWeightUnit withRate(final long now, final long globalBytesPerSecond, final double totalWeight) {
+        final double newBytesPerSecond = totalWeight <= 0.0 ? 0.0 : globalBytesPerSecond / totalWeight;
+        return new UploadPerWeightUnit(this.valueAt(now), now, newBytesPerSecond);
+    }
+}
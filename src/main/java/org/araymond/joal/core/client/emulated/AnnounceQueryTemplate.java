@@ -0,0 +1,128 @@
+package org.araymond.joal.core.client.emulated;
+
+import com.google.common.collect.ImmutableList;
+import lombok.Getter;
+import org.araymond.joal.core.exception.UnrecognizedClientPlaceholder;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The announce query of a client compiled once into a list of literal chunks and placeholders, so that building the
+ * query of an announce is a single pass over the segments instead of one regex replacement per placeholder.
+ * <p/>
+ * Unknown placeholders are rejected when compiling, that is when the client file is loaded.
+ * <p/>
+ * {@code {ip}}, {@code {ipv6}} and {@code {event}} are optional: when they have no value the whole parameter is
+ * omitted from the query. Their segment carries the {@code &name=} prefix to drop along with them.
+ */
+final class AnnounceQueryTemplate {
+    private static final Pattern PLACEHOLDER_PTRN = Pattern.compile("\\{.*?}");
+    private static final Pattern OPTIONAL_PARAM_PREFIX_PTRN = Pattern.compile("&*\\w+=$");
+
+    @Getter private final List<Segment> segments;
+    private final Set<Placeholder> placeholders;
+
+    private AnnounceQueryTemplate(final List<Segment> segments) {
+        this.segments = segments;
+        this.placeholders = EnumSet.noneOf(Placeholder.class);
+        segments.stream()
+                .map(Segment::getPlaceholder)
+                .filter(Objects::nonNull)
+                .forEach(this.placeholders::add);
+    }
+
+    static AnnounceQueryTemplate compile(final String query) {
+        final ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+        final Matcher matcher = PLACEHOLDER_PTRN.matcher(query);
+        int literalStart = 0;
+        while (matcher.find()) {
+            final Placeholder placeholder = Placeholder.fromToken(matcher.group())
+                    .orElseThrow(() -> new UnrecognizedClientPlaceholder("Placeholder [" + matcher.group() + "] were not recognized while building announce URL"));
+            String literal = query.substring(literalStart, matcher.start());
+            String optionalPrefix = null;
+            if (placeholder.isOptional()) {
+                final Matcher prefixMatcher = OPTIONAL_PARAM_PREFIX_PTRN.matcher(literal);
+                if (prefixMatcher.find()) {
+                    optionalPrefix = prefixMatcher.group();
+                    literal = literal.substring(0, prefixMatcher.start());
+                }
+            }
+            if (!literal.isEmpty()) {
+                segments.add(Segment.literal(literal));
+            }
+            segments.add(new Segment(null, placeholder, optionalPrefix));
+            literalStart = matcher.end();
+        }
+        if (literalStart < query.length()) {
+            segments.add(Segment.literal(query.substring(literalStart)));
+        }
+        return new AnnounceQueryTemplate(segments.build());
+    }
+
+    boolean contains(final Placeholder placeholder) {
+        return this.placeholders.contains(placeholder);
+    }
+
+    enum Placeholder {
+        INFOHASH("infohash", false),
+        UPLOADED("uploaded", false),
+        DOWNLOADED("downloaded", false),
+        LEFT("left", false),
+        PORT("port", false),
+        NUMWANT("numwant", false),
+        PEER_ID("peerid", false),
+        IP("ip", true),
+        IPV6("ipv6", true),
+        EVENT("event", true),
+        KEY("key", false);
+
+        @Getter private final String token;
+        @Getter private final boolean optional;
+
+        Placeholder(final String name, final boolean optional) {
+            this.token = '{' + name + '}';
+            this.optional = optional;
+        }
+
+        private static Optional<Placeholder> fromToken(final String token) {
+            return Arrays.stream(values())
+                    .filter(p -> p.token.equals(token))
+                    .findFirst();
+        }
+    }
+
+    /**
+     * Either a literal chunk of the query, or a placeholder.
+     */
+    @Getter
+    static final class Segment {
+        private final String literal;
+        private final Placeholder placeholder;
+        /**
+         * For optional placeholders, the {@code &name=} to write before the value, null if the placeholder is not
+         * written as a {@code name=} parameter.
+         */
+        private final String optionalPrefix;
+
+        private Segment(final String literal, final Placeholder placeholder, final String optionalPrefix) {
+            this.literal = literal;
+            this.placeholder = placeholder;
+            this.optionalPrefix = optionalPrefix;
+        }
+
+        private static Segment literal(final String literal) {
+            return new Segment(literal, null, null);
+        }
+
+        boolean isLiteral() {
+            return this.placeholder == null;
+        }
+    }
+}
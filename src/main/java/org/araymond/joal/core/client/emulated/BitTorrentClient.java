@@ -7,13 +7,18 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 import org.araymond.joal.core.bandwith.TorrentSeedStats;
+import org.araymond.joal.core.client.emulated.AnnounceQueryTemplate.Placeholder;
+import org.araymond.joal.core.client.emulated.AnnounceQueryTemplate.Segment;
+import org.araymond.joal.core.client.emulated.generator.PregeneratedValuePoolStats;
 import org.araymond.joal.core.client.emulated.generator.UrlEncoder;
 import org.araymond.joal.core.client.emulated.generator.key.KeyGenerator;
 import org.araymond.joal.core.client.emulated.generator.numwant.NumwantProvider;
 import org.araymond.joal.core.client.emulated.generator.peerid.PeerIdGenerator;
 import org.araymond.joal.core.exception.UnrecognizedClientPlaceholder;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.araymond.joal.core.torrent.torrent.MockedTorrent;
 import org.araymond.joal.core.ttorrent.client.ConnectionHandler;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpAnnounceRequest;
 
 import java.net.Inet4Address;
 import java.net.Inet6Address;
@@ -26,9 +31,7 @@ import java.util.regex.Pattern;
 import static com.google.common.base.StandardSystemProperty.JAVA_VERSION;
 import static com.google.common.base.StandardSystemProperty.OS_NAME;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
-import static java.lang.String.valueOf;
 import static java.util.Optional.ofNullable;
-import static org.apache.commons.lang3.StringUtils.EMPTY;
 import static org.araymond.joal.core.client.emulated.BitTorrentClientConfig.HttpHeader;
 
 /**
@@ -39,33 +42,27 @@ import static org.araymond.joal.core.client.emulated.BitTorrentClientConfig.Http
  * <p/>
  * Created by raymo on 26/01/2017.
  */
-@EqualsAndHashCode(exclude = "urlEncoder")
+@EqualsAndHashCode(exclude = {"urlEncoder", "queryTemplate"})
 public class BitTorrentClient {
     private final PeerIdGenerator peerIdGenerator;
     private final KeyGenerator keyGenerator;
     private final UrlEncoder urlEncoder;
     @Getter private final String query;
+    private final AnnounceQueryTemplate queryTemplate;
     @Getter private final Set<Map.Entry<String, String>> headers;
     private final NumwantProvider numwantProvider;
 
-    private static final Pattern INFOHASH_PTRN = Pattern.compile("\\{infohash}");
-    private static final Pattern UPLOADED_PTRN = Pattern.compile("\\{uploaded}");
-    private static final Pattern DOWNLOADED_PTRN = Pattern.compile("\\{downloaded}");
-    private static final Pattern LEFT_PTRN = Pattern.compile("\\{left}");
-    private static final Pattern PORT_PTRN = Pattern.compile("\\{port}");
-    private static final Pattern NUMWANT_PTRN = Pattern.compile("\\{numwant}");
-    private static final Pattern PEER_ID_PTRN = Pattern.compile("\\{peerid}");
-    private static final Pattern EVENT_PTRN = Pattern.compile("\\{event}");
-    private static final Pattern KEY_PTRN = Pattern.compile("\\{key}");
     private static final Pattern JAVA_PTRN = Pattern.compile("\\{java}");
     private static final Pattern OS_PTRN = Pattern.compile("\\{os}");
     private static final Pattern LOCALE_PTRN = Pattern.compile("\\{locale}");
     private static final Pattern AMPERSAND_DUPES_PTRN = Pattern.compile("&{2,}");
-    private static final Pattern IP_PTRN = Pattern.compile("\\{ip}");
-    private static final Pattern IPV6_PTRN = Pattern.compile("\\{ipv6}");
-    private static final Pattern IP_Q_PTRN = Pattern.compile("&*\\w+=\\{ip(?:v6)?}");
-    private static final Pattern EVENT_Q_PTRN = Pattern.compile("&*\\w+=\\{event}");
+    /**
+     * Announce queries are rendered in a per thread buffer, reused from one announce to the next on the platform
+     * thread pool. On the virtual-thread executor each announce has its own thread, so it gets a fresh builder.
+     */
+    private static final ThreadLocal<StringBuilder> QUERY_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(512));
     private static final Pattern PLACEHOLDER_PTRN = Pattern.compile("\\{.*?}");
+    private static final Pattern HEX_KEY_PTRN = Pattern.compile("[0-9a-fA-F]{1,8}");
 
     BitTorrentClient(final PeerIdGenerator peerIdGenerator, final KeyGenerator keyGenerator, final UrlEncoder urlEncoder,
                      final String query, final Collection<HttpHeader> headers, final NumwantProvider numwantProvider) {
@@ -77,6 +74,7 @@ public class BitTorrentClient {
         this.peerIdGenerator = peerIdGenerator;
         this.urlEncoder = urlEncoder;
         this.query = AMPERSAND_DUPES_PTRN.matcher(query).replaceAll("&");  // collapse dupes;
+        this.queryTemplate = AnnounceQueryTemplate.compile(this.query);
         this.headers = createRequestHeaders(headers);
         this.keyGenerator = keyGenerator;
         this.numwantProvider = numwantProvider;
@@ -93,63 +91,154 @@ public class BitTorrentClient {
                 .map(keyGen -> keyGen.getKey(infoHash, event));
     }
 
+    /**
+     * Forget the peer id and key kept for the torrent, once it has left the client.
+     */
+    public void onTorrentUnregistered(final InfoHash infoHash) {
+        this.peerIdGenerator.onTorrentUnregistered(infoHash);
+        ofNullable(this.keyGenerator).ifPresent(keyGen -> keyGen.onTorrentUnregistered(infoHash));
+    }
+
+    /**
+     * Hits and misses of the peer id and key pools, for the refresh policies generating them ahead of time.
+     */
+    public List<PregeneratedValuePoolStats> getPregeneratedPoolStats() {
+        final List<PregeneratedValuePoolStats> stats = new ArrayList<>(2);
+        this.peerIdGenerator.getPregeneratedPoolStats().ifPresent(stats::add);
+        ofNullable(this.keyGenerator).flatMap(KeyGenerator::getPregeneratedPoolStats).ifPresent(stats::add);
+        return stats;
+    }
+
     @VisibleForTesting
     int getNumwant(final RequestEvent event) {
         return this.numwantProvider.get(event);
     }
 
+    /**
+     * The info hash as written in the announce queries, it never changes for a given torrent and can be computed once
+     * and passed to {@link #createRequestQuery(RequestEvent, InfoHash, String, TorrentSeedStats, ConnectionHandler)}.
+     */
+    public String urlEncodeInfoHash(final InfoHash torrentInfoHash) {
+        return urlEncoder.encode(torrentInfoHash.value());
+    }
+
     /**
      * For torrent protocol, see https://wiki.theory.org/BitTorrent_Tracker_Protocol
      */
     public String createRequestQuery(final RequestEvent event, final InfoHash torrentInfoHash,
                                      final TorrentSeedStats stats, final ConnectionHandler connectionHandler) {
-        String q = INFOHASH_PTRN.matcher(this.getQuery()).replaceAll(urlEncoder.encode(torrentInfoHash.value()));
-        q = UPLOADED_PTRN.matcher(q).replaceAll(valueOf(stats.getUploaded()));
-        q = DOWNLOADED_PTRN.matcher(q).replaceAll(valueOf(stats.getDownloaded()));
-        q = LEFT_PTRN.matcher(q).replaceAll(valueOf(stats.getLeft()));
-        q = PORT_PTRN.matcher(q).replaceAll(valueOf(connectionHandler.getPort()));
-        q = NUMWANT_PTRN.matcher(q).replaceAll(valueOf(this.getNumwant(event)));
+        return this.createRequestQuery(event, torrentInfoHash, this.urlEncodeInfoHash(torrentInfoHash), stats, connectionHandler);
+    }
 
+    /**
+     * @param urlEncodedInfoHash {@link #urlEncodeInfoHash(InfoHash)} of the torrent
+     */
+    public String createRequestQuery(final RequestEvent event, final InfoHash torrentInfoHash, final String urlEncodedInfoHash,
+                                     final TorrentSeedStats stats, final ConnectionHandler connectionHandler) {
         final String peerId = this.peerIdGenerator.isShouldUrlEncode()
                 ? urlEncoder.encode(this.getPeerId(torrentInfoHash, event))
                 : this.getPeerId(torrentInfoHash, event);
-        q = PEER_ID_PTRN.matcher(q).replaceAll(peerId);
-
-        // set ip or ipv6 then remove placeholders that were left empty
-        InetAddress addy = connectionHandler.getIpAddress();
-        if (q.contains("{ip}") && addy instanceof Inet4Address) {
-            q = IP_PTRN.matcher(q).replaceAll(addy.getHostAddress());
-        } else if (q.contains("{ipv6}") && addy instanceof Inet6Address) {
-            q = IPV6_PTRN.matcher(q).replaceAll(urlEncoder.encode(addy.getHostAddress()));
-        }
-        q = IP_Q_PTRN.matcher(q).replaceAll(EMPTY);
+        final int numwant = this.getNumwant(event);
+        final String key = this.queryTemplate.contains(Placeholder.KEY)
+                ? urlEncoder.encode(this.getKey(torrentInfoHash, event)
+                        .orElseThrow(() -> new IllegalStateException("Client request query contains 'key' but BitTorrentClient does not have a key")))
+                : null;
+        // if event was NONE, the event is removed from the query string; this is the normal announce made at regular intervals.
+        final String eventName = (event == null || event == RequestEvent.NONE) ? null : event.getEventName();
+        final InetAddress addy = connectionHandler.getIpAddress();
 
-        if (event == null || event == RequestEvent.NONE) {
-            // if event was NONE, remove the event from the query string; this is the normal announce made at regular intervals.
-            q = EVENT_Q_PTRN.matcher(q).replaceAll(EMPTY);
-        } else {
-            q = EVENT_PTRN.matcher(q).replaceAll(event.getEventName());
+        final StringBuilder q = QUERY_BUILDER.get();
+        q.setLength(0);
+        for (final Segment segment : this.queryTemplate.getSegments()) {
+            if (segment.isLiteral()) {
+                q.append(segment.getLiteral());
+                continue;
+            }
+            switch (segment.getPlaceholder()) {
+                case INFOHASH:
+                    q.append(urlEncodedInfoHash);
+                    break;
+                case UPLOADED:
+                    q.append(stats.getUploaded());
+                    break;
+                case DOWNLOADED:
+                    q.append(stats.getDownloaded());
+                    break;
+                case LEFT:
+                    q.append(stats.getLeft());
+                    break;
+                case PORT:
+                    q.append(connectionHandler.getPort());
+                    break;
+                case NUMWANT:
+                    q.append(numwant);
+                    break;
+                case PEER_ID:
+                    q.append(peerId);
+                    break;
+                // set ip or ipv6, placeholders left empty are removed
+                case IP:
+                    appendOptional(q, segment, addy instanceof Inet4Address ? addy.getHostAddress() : null);
+                    break;
+                case IPV6:
+                    appendOptional(q, segment, addy instanceof Inet6Address ? urlEncoder.encode(addy.getHostAddress()) : null);
+                    break;
+                case EVENT:
+                    appendOptional(q, segment, eventName);
+                    break;
+                case KEY:
+                    q.append(key);
+                    break;
+                default:
+                    throw new IllegalStateException("Unhandled placeholder " + segment.getPlaceholder());
+            }
         }
 
-        if (q.contains("{key}")) {
-            final String key = this.getKey(torrentInfoHash, event)
-                    .orElseThrow(() -> new IllegalStateException("Client request query contains 'key' but BitTorrentClient does not have a key"));
-            q = KEY_PTRN.matcher(q).replaceAll(urlEncoder.encode(key));
+        int start = 0;
+        int end = q.length();
+        if (end > 0 && q.charAt(end - 1) == '&') {
+            end--;
         }
-
-        final Matcher placeholderMatcher = PLACEHOLDER_PTRN.matcher(q);
-        if (placeholderMatcher.find()) {
-            throw new UnrecognizedClientPlaceholder("Placeholder [" + placeholderMatcher.group() + "] were not recognized while building announce URL");
+        if (end > 0 && q.charAt(0) == '&') {
+            start = 1;
         }
 
-        if (q.endsWith("&")) {
-            q = q.substring(0, q.length() - 1);
-        }
-        if (q.startsWith("&")) {
-            q = q.substring(1);
+        return q.substring(start, end);
+    }
+
+    private static void appendOptional(final StringBuilder q, final Segment segment, final String value) {
+        if (value != null) {
+            if (segment.getOptionalPrefix() != null) {
+                q.append(segment.getOptionalPrefix());
+            }
+            q.append(value);
+        } else if (segment.getOptionalPrefix() == null) {
+            // not written as a query parameter, there is nothing we can remove
+            throw new UnrecognizedClientPlaceholder("Placeholder [" + segment.getPlaceholder().getToken() + "] were not recognized while building announce URL");
         }
+    }
 
-        return q;
+    /**
+     * UDP trackers (BEP 15) take a fixed binary layout instead of the client query: only the peer_id, key and numwant
+     * of the emulated client are used. The key is sent as the 32 bits integer it represents when it is an hexadecimal
+     * string (which is what most clients generate), otherwise as its hash.
+     */
+    public UdpAnnounceRequest createUdpAnnounceRequest(final RequestEvent event, final InfoHash torrentInfoHash,
+                                                       final TorrentSeedStats stats, final ConnectionHandler connectionHandler) {
+        final int key = this.getKey(torrentInfoHash, event)
+                .map(k -> HEX_KEY_PTRN.matcher(k).matches() ? (int) Long.parseLong(k, 16) : k.hashCode())
+                .orElse(0);
+        return new UdpAnnounceRequest(
+                torrentInfoHash.value().getBytes(MockedTorrent.BYTE_ENCODING),
+                this.getPeerId(torrentInfoHash, event).getBytes(MockedTorrent.BYTE_ENCODING),
+                stats.getDownloaded(),
+                stats.getLeft(),
+                stats.getUploaded(),
+                event,
+                key,
+                this.getNumwant(event),
+                connectionHandler.getPort()
+        );
     }
 
     private Set<Map.Entry<String, String>> createRequestHeaders(Collection<HttpHeader> headers) {
@@ -0,0 +1,334 @@
+package org.araymond.joal.core.client.emulated.generator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random string generator for the simple regex patterns of the .client files, eg {@code -qB4500-[A-Za-z0-9_~\(\)\!\.\*-]{12}},
+ * compiled once into a table driven automaton. Generating a value walks {@code length} states, without the recursion
+ * and the string concatenations of Generex.
+ * <p/>
+ * Only fixed length patterns are supported: literal characters, escaped non alphanumeric characters, character
+ * classes, groups of literal alternatives of the same length, each optionally repeated a fixed number of times with
+ * {@code {n}}. Anything else makes {@link #compile(String)} return an empty optional, so that the caller falls back on
+ * Generex.
+ * <p/>
+ * The generated values follow the same distribution as {@code Generex.random()}: in each state of the minimal
+ * automaton a transition (a maximal range of consecutive characters leading to the same state) is picked uniformly,
+ * then a character uniformly within that range. As a consequence {@code [A-Za-z0-9]} does not pick its characters
+ * uniformly, digits are more likely than letters, exactly like the values Generex produced so far.
+ */
+public final class CompiledRegexGenerator {
+    private static final int ACCEPT = -1;
+    private static final String UNSUPPORTED_CHARACTERS = ".*+?{}[]()|&~#@<>\"^$";
+
+    private final int length;
+    private final int initialState;
+    private final char[][] transitionMins;
+    private final char[][] transitionMaxs;
+    private final int[][] transitionDests;
+
+    private CompiledRegexGenerator(final int length, final int initialState, final List<State> states) {
+        this.length = length;
+        this.initialState = initialState;
+        this.transitionMins = new char[states.size()][];
+        this.transitionMaxs = new char[states.size()][];
+        this.transitionDests = new int[states.size()][];
+        for (int i = 0; i < states.size(); i++) {
+            this.transitionMins[i] = states.get(i).mins;
+            this.transitionMaxs[i] = states.get(i).maxs;
+            this.transitionDests[i] = states.get(i).dests;
+        }
+    }
+
+    /**
+     * @return the compiled generator, or empty if the pattern uses constructs this compiler does not support
+     */
+    public static Optional<CompiledRegexGenerator> compile(final String pattern) {
+        try {
+            return Optional.of(new Compiler(pattern).compile());
+        } catch (final UnsupportedPatternException e) {
+            return Optional.empty();
+        }
+    }
+
+    public String generate() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final char[] buffer = new char[this.length];
+        int state = this.initialState;
+        for (int i = 0; state != ACCEPT; i++) {
+            final char[] mins = this.transitionMins[state];
+            final int transition = mins.length == 1 ? 0 : random.nextInt(mins.length);
+            final int width = this.transitionMaxs[state][transition] - mins[transition] + 1;
+            buffer[i] = (char) (mins[transition] + (width == 1 ? 0 : random.nextInt(width)));
+            state = this.transitionDests[state][transition];
+        }
+        return new String(buffer);
+    }
+
+    private static final class State {
+        private final char[] mins;
+        private final char[] maxs;
+        private final int[] dests;
+
+        private State(final List<char[]> ranges, final List<Integer> dests) {
+            this.mins = new char[ranges.size()];
+            this.maxs = new char[ranges.size()];
+            this.dests = new int[ranges.size()];
+            for (int i = 0; i < ranges.size(); i++) {
+                this.mins[i] = ranges.get(i)[0];
+                this.maxs[i] = ranges.get(i)[1];
+                this.dests[i] = dests.get(i);
+            }
+        }
+    }
+
+    /**
+     * An element of the pattern, either a character set (literal character or class) or a group of alternatives.
+     */
+    private static final class Element {
+        private final BitSet chars;
+        private final Set<String> alternatives;
+
+        private Element(final BitSet chars, final Set<String> alternatives) {
+            this.chars = chars;
+            this.alternatives = alternatives;
+        }
+
+        private int length() {
+            return this.chars == null ? this.alternatives.iterator().next().length() : 1;
+        }
+    }
+
+    private static final class UnsupportedPatternException extends Exception {
+        private static final long serialVersionUID = 6092781384510470962L;
+    }
+
+    /**
+     * Parses the pattern into a list of elements, then builds the automaton from the last element to the first one,
+     * each element pointing to the initial state of the elements following it.
+     */
+    private static final class Compiler {
+        private final String pattern;
+        private final List<State> states = new ArrayList<>();
+        private int pos;
+
+        private Compiler(final String pattern) {
+            this.pattern = pattern;
+        }
+
+        private CompiledRegexGenerator compile() throws UnsupportedPatternException {
+            final List<Element> elements = new ArrayList<>();
+            while (this.pos < this.pattern.length()) {
+                final Element element = this.parseElement();
+                final int repeat = this.parseRepetition();
+                for (int i = 0; i < repeat; i++) {
+                    elements.add(element);
+                }
+            }
+            if (elements.isEmpty()) {
+                throw new UnsupportedPatternException();
+            }
+
+            int length = 0;
+            int next = ACCEPT;
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                final Element element = elements.get(i);
+                length += element.length();
+                next = element.chars == null
+                        ? this.addGroupStates(element.alternatives, next, new HashMap<>())
+                        : this.addState(element.chars, next);
+            }
+            return new CompiledRegexGenerator(length, next, this.states);
+        }
+
+        private Element parseElement() throws UnsupportedPatternException {
+            final char c = this.pattern.charAt(this.pos);
+            if (c == '[') {
+                this.pos++;
+                return new Element(this.parseCharClass(), null);
+            }
+            if (c == '(') {
+                this.pos++;
+                return new Element(null, this.parseGroup());
+            }
+            final BitSet chars = new BitSet();
+            chars.set(this.parseLiteral());
+            return new Element(chars, null);
+        }
+
+        private char parseLiteral() throws UnsupportedPatternException {
+            final char c = this.next();
+            if (c == '\\') {
+                // \d, \w, \s... are predefined classes for Generex
+                final char escaped = this.next();
+                if (Character.isLetterOrDigit(escaped)) {
+                    throw new UnsupportedPatternException();
+                }
+                return escaped;
+            }
+            if (UNSUPPORTED_CHARACTERS.indexOf(c) != -1) {
+                throw new UnsupportedPatternException();
+            }
+            return c;
+        }
+
+        private BitSet parseCharClass() throws UnsupportedPatternException {
+            final BitSet chars = new BitSet();
+            if (this.peek() == '^') {
+                throw new UnsupportedPatternException();
+            }
+            do {
+                final char from = this.parseClassChar();
+                if (this.peek() == '-' && this.peekAt(1) != ']') {
+                    this.pos++;
+                    final char to = this.parseClassChar();
+                    if (to < from) {
+                        throw new UnsupportedPatternException();
+                    }
+                    chars.set(from, to + 1);
+                } else {
+                    chars.set(from);
+                }
+            } while (this.peek() != ']');
+            this.pos++;
+            return chars;
+        }
+
+        private char parseClassChar() throws UnsupportedPatternException {
+            final char c = this.next();
+            if (c == '\\') {
+                final char escaped = this.next();
+                if (Character.isLetterOrDigit(escaped)) {
+                    throw new UnsupportedPatternException();
+                }
+                return escaped;
+            }
+            if (c == '[' || c == ']') {
+                throw new UnsupportedPatternException();
+            }
+            return c;
+        }
+
+        private Set<String> parseGroup() throws UnsupportedPatternException {
+            final Set<String> alternatives = new TreeSet<>();
+            final StringBuilder alternative = new StringBuilder();
+            while (true) {
+                final char c = this.peek();
+                if (c == '|' || c == ')') {
+                    this.pos++;
+                    if (alternative.length() == 0) {
+                        throw new UnsupportedPatternException();
+                    }
+                    alternatives.add(alternative.toString());
+                    alternative.setLength(0);
+                    if (c == ')') {
+                        break;
+                    }
+                } else {
+                    alternative.append(this.parseLiteral());
+                }
+            }
+            // alternatives of different lengths would make some accepting states non final, Generex may stop there
+            if (alternatives.stream().mapToInt(String::length).distinct().count() != 1) {
+                throw new UnsupportedPatternException();
+            }
+            return alternatives;
+        }
+
+        private int parseRepetition() throws UnsupportedPatternException {
+            if (this.pos >= this.pattern.length() || this.pattern.charAt(this.pos) != '{') {
+                return 1;
+            }
+            final int end = this.pattern.indexOf('}', this.pos);
+            if (end == -1) {
+                throw new UnsupportedPatternException();
+            }
+            final String count = this.pattern.substring(this.pos + 1, end);
+            if (count.isEmpty() || count.length() > 3 || !count.chars().allMatch(ch -> ch >= '0' && ch <= '9')) {
+                throw new UnsupportedPatternException();  // {n,m} and friends
+            }
+            this.pos = end + 1;
+            final int repeat = Integer.parseInt(count);
+            if (repeat == 0) {
+                throw new UnsupportedPatternException();
+            }
+            return repeat;
+        }
+
+        /**
+         * States of a group of same length literal alternatives, as a trie in which the nodes accepting the same
+         * suffixes are merged, like in the minimal automaton.
+         */
+        private int addGroupStates(final Set<String> suffixes, final int next, final Map<Set<String>, Integer> statesBySuffixes) {
+            if (suffixes.contains("")) {
+                return next;
+            }
+            final Integer known = statesBySuffixes.get(suffixes);
+            if (known != null) {
+                return known;
+            }
+            final TreeMap<Character, Set<String>> suffixesByChar = new TreeMap<>();
+            for (final String suffix : suffixes) {
+                suffixesByChar.computeIfAbsent(suffix.charAt(0), k -> new TreeSet<>()).add(suffix.substring(1));
+            }
+            final List<char[]> ranges = new ArrayList<>();
+            final List<Integer> dests = new ArrayList<>();
+            for (final Map.Entry<Character, Set<String>> entry : suffixesByChar.entrySet()) {
+                final char c = entry.getKey();
+                final int dest = this.addGroupStates(entry.getValue(), next, statesBySuffixes);
+                final int last = ranges.size() - 1;
+                if (last >= 0 && ranges.get(last)[1] == c - 1 && dests.get(last) == dest) {
+                    ranges.get(last)[1] = c;
+                } else {
+                    ranges.add(new char[]{c, c});
+                    dests.add(dest);
+                }
+            }
+            final int state = this.addState(ranges, dests);
+            statesBySuffixes.put(suffixes, state);
+            return state;
+        }
+
+        private int addState(final BitSet chars, final int next) {
+            final List<char[]> ranges = new ArrayList<>();
+            final List<Integer> dests = new ArrayList<>();
+            for (int from = chars.nextSetBit(0); from >= 0; from = chars.nextSetBit(chars.nextClearBit(from))) {
+                ranges.add(new char[]{(char) from, (char) (chars.nextClearBit(from) - 1)});
+                dests.add(next);
+            }
+            return this.addState(ranges, dests);
+        }
+
+        private int addState(final List<char[]> ranges, final List<Integer> dests) {
+            this.states.add(new State(ranges, dests));
+            return this.states.size() - 1;
+        }
+
+        private char next() throws UnsupportedPatternException {
+            if (this.pos >= this.pattern.length()) {
+                throw new UnsupportedPatternException();
+            }
+            return this.pattern.charAt(this.pos++);
+        }
+
+        private char peek() throws UnsupportedPatternException {
+            return this.peekAt(0);
+        }
+
+        private char peekAt(final int offset) throws UnsupportedPatternException {
+            if (this.pos + offset >= this.pattern.length()) {
+                throw new UnsupportedPatternException();
+            }
+            return this.pattern.charAt(this.pos + offset);
+        }
+    }
+}
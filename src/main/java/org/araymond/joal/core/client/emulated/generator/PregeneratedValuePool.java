@@ -0,0 +1,121 @@
+package org.araymond.joal.core.client.emulated.generator;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of values (peer ids, keys) generated ahead of time, so that the announces do not pay for the regex
+ * automaton walks and the SecureRandom reseeds of the generation algorithms.
+ * <p/>
+ * {@link #take()} never waits: it polls the lock-free queue, and only generates the value itself when the pool is
+ * empty (a miss). The pools are refilled by a single low priority daemon thread, shared by all the pools, which is
+ * woken up as soon as a pool drops below half of its capacity. The pools are weakly referenced by that thread, the
+ * pools of a discarded client are simply garbage collected.
+ */
+@Slf4j
+public class PregeneratedValuePool {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final String name;
+    private final Supplier<String> generator;
+    private final int capacity;
+    private final Queue<String> values = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PregeneratedValuePool(final String name, final Supplier<String> generator) {
+        this(name, generator, DEFAULT_CAPACITY);
+    }
+
+    public PregeneratedValuePool(final String name, final Supplier<String> generator, final int capacity) {
+        Preconditions.checkNotNull(generator, "generator must not be null");
+        Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+        this.name = name;
+        this.generator = generator;
+        this.capacity = capacity;
+        Refiller.register(this);
+    }
+
+    public String take() {
+        final String value = this.values.poll();
+        if (value == null) {
+            this.misses.increment();
+            Refiller.wakeUp();
+            return this.generator.get();
+        }
+        this.hits.increment();
+        if (this.size.decrementAndGet() < this.capacity / 2) {
+            Refiller.wakeUp();
+        }
+        return value;
+    }
+
+    public PregeneratedValuePoolStats getStats() {
+        return new PregeneratedValuePoolStats(this.name, this.capacity, this.size.get(), this.hits.sum(), this.misses.sum());
+    }
+
+    /**
+     * Only called by the refill thread, the single producer of the pool.
+     */
+    private void refill() {
+        while (this.size.get() < this.capacity) {
+            this.values.offer(this.generator.get());
+            this.size.incrementAndGet();
+        }
+    }
+
+    private static final class Refiller {
+        private static final long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+        private static final List<WeakReference<PregeneratedValuePool>> POOLS = new CopyOnWriteArrayList<>();
+        private static Thread thread;
+
+        private static synchronized void register(final PregeneratedValuePool pool) {
+            POOLS.add(new WeakReference<>(pool));
+            if (thread == null) {
+                thread = new Thread(Refiller::refillForever);
+                thread.setName("pregenerated-value-pool-refill");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            wakeUp();
+        }
+
+        private static void wakeUp() {
+            final Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        private static void refillForever() {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (final WeakReference<PregeneratedValuePool> ref : POOLS) {
+                    final PregeneratedValuePool pool = ref.get();
+                    if (pool == null) {
+                        POOLS.remove(ref);
+                        continue;
+                    }
+                    try {
+                        pool.refill();
+                    } catch (final RuntimeException e) {
+                        log.warn("Failed to refill the {} pool", pool.name, e);
+                    }
+                }
+                LockSupport.parkNanos(MAX_IDLE_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.araymond.joal.core.client.emulated.generator;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Fill level of a {@link PregeneratedValuePool}, and how many values were served from it (hits) or had to be
+ * generated on the announce path because it was empty (misses).
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class PregeneratedValuePoolStats {
+    private final String name;
+    private final int capacity;
+    private final int size;
+    private final long hits;
+    private final long misses;
+}
@@ -4,10 +4,12 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.annotations.VisibleForTesting;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.araymond.joal.core.client.emulated.utils.Casing;
 
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
 import static java.lang.String.format;
@@ -21,6 +23,13 @@ public class UrlEncoder {
     private final Casing encodedHexCase;
     @JsonIgnore
     private final Pattern pattern;
+    /**
+     * Whether each of the 256 first characters is left as is, computed once from the exclusion pattern.
+     */
+    @Getter(AccessLevel.NONE)
+    private final boolean[] notEncoded = new boolean[256];
+    @Getter(AccessLevel.NONE)
+    private final char[] hexDigits;
 
     @JsonCreator
     public UrlEncoder(
@@ -30,6 +39,10 @@ public class UrlEncoder {
         this.encodingExclusionPattern = encodingExclusionPattern;
         this.encodedHexCase = encodedHexCase;
         this.pattern = Pattern.compile(this.encodingExclusionPattern);
+        for (int i = 0; i < this.notEncoded.length; i++) {
+            this.notEncoded[i] = this.pattern.matcher(valueOf((char) i)).matches();
+        }
+        this.hexDigits = this.encodedHexCase.toCase("0123456789abcdef").toCharArray();
     }
 
     /**
@@ -38,20 +51,48 @@ public class UrlEncoder {
      * @return encoded string
      */
     public String encode(final String toBeEncoded) {
-        final StringBuilder sb = new StringBuilder();
-        for (final char ch : toBeEncoded.toCharArray()) {
-            sb.append(this.urlEncodeChar(ch));
+        final int length = toBeEncoded.length();
+        char[] buffer = new char[length * 3];
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = toBeEncoded.charAt(i);
+            if (ch < this.notEncoded.length) {
+                pos = this.encodeByte(ch, buffer, pos);
+            } else {
+                // outside of the table, torrent binary strings never get there
+                final String encoded = this.urlEncodeChar(ch);
+                if (pos + encoded.length() + (length - i - 1) * 3 > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, pos + encoded.length() + (length - i - 1) * 3);
+                }
+                encoded.getChars(0, encoded.length(), buffer, pos);
+                pos += encoded.length();
+            }
         }
-        return sb.toString();
+        return new String(buffer, 0, pos);
+    }
+
+    private int encodeByte(final char ch, final char[] buffer, int pos) {
+        if (this.notEncoded[ch]) {
+            buffer[pos++] = ch;
+        } else {
+            buffer[pos++] = '%';
+            buffer[pos++] = this.hexDigits[ch >> 4];
+            buffer[pos++] = this.hexDigits[ch & 0xF];
+        }
+        return pos;
     }
 
     @VisibleForTesting
     String urlEncodeChar(final char character) {
+        if (character < this.notEncoded.length) {
+            final char[] buffer = new char[3];
+            return new String(buffer, 0, this.encodeByte(character, buffer, 0));
+        }
         if (pattern.matcher(valueOf(character)).matches()) {
             return valueOf(character);
         }
 
-        final String hex = character == 0 ? "%00" : format("%%%02x", (int) character);
+        final String hex = format("%%%02x", (int) character);
         return encodedHexCase.toCase(hex);
     }
 }
@@ -17,7 +17,7 @@ public class AlwaysRefreshKeyGenerator extends KeyGenerator {
             @JsonProperty(value = "algorithm", required = true) final KeyAlgorithm algorithm,
             @JsonProperty(value = "keyCase", required = true) final Casing keyCase
     ) {
-        super(algorithm, keyCase);
+        super(algorithm, keyCase, true);
     }
 
     @Override
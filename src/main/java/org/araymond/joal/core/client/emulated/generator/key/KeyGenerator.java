@@ -5,13 +5,18 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.araymond.joal.core.client.emulated.TorrentClientConfigIntegrityException;
+import org.araymond.joal.core.client.emulated.generator.PregeneratedValuePool;
+import org.araymond.joal.core.client.emulated.generator.PregeneratedValuePoolStats;
 import org.araymond.joal.core.client.emulated.generator.key.algorithm.KeyAlgorithm;
 import org.araymond.joal.core.client.emulated.utils.Casing;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 
+import java.util.Optional;
+
 /**
  * Created by raymo on 16/07/2017.
  */
@@ -25,27 +30,51 @@ import org.araymond.joal.core.torrent.torrent.InfoHash;
         @JsonSubTypes.Type(value = TorrentPersistentRefreshKeyGenerator.class, name = "TORRENT_PERSISTENT")
 })
 @Getter
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = "pregeneratedPool")
 public abstract class KeyGenerator {
 
     @JsonProperty("algorithm")
     private final KeyAlgorithm algorithm;
     @JsonProperty("keyCase")
     private final Casing keyCase;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private final PregeneratedValuePool pregeneratedPool;
 
     public KeyGenerator(final KeyAlgorithm keyAlgorithm, final Casing keyCase) {
+        this(keyAlgorithm, keyCase, false);
+    }
+
+    /**
+     * @param pregenerate generate the keys ahead of time in a background thread, for the refresh policies that need
+     *                    a new key on the announce path
+     */
+    protected KeyGenerator(final KeyAlgorithm keyAlgorithm, final Casing keyCase, final boolean pregenerate) {
         if (keyAlgorithm == null) {
             throw new TorrentClientConfigIntegrityException("key algorithm must not be null");
         }
         this.algorithm = keyAlgorithm;
         this.keyCase = keyCase;
+        this.pregeneratedPool = pregenerate ? new PregeneratedValuePool("key", () -> keyCase.toCase(keyAlgorithm.generate())) : null;
     }
 
     @JsonIgnore
     public abstract String getKey(final InfoHash infoHash, RequestEvent event);
 
+    /**
+     * Called once the torrent has left the client, for the generators keeping a key per torrent.
+     */
+    public void onTorrentUnregistered(final InfoHash infoHash) {
+        // noop
+    }
+
+    @JsonIgnore
+    public Optional<PregeneratedValuePoolStats> getPregeneratedPoolStats() {
+        return Optional.ofNullable(this.pregeneratedPool).map(PregeneratedValuePool::getStats);
+    }
+
     protected String generateKey() {
-        return keyCase.toCase(this.algorithm.generate());
+        return this.pregeneratedPool == null ? keyCase.toCase(this.algorithm.generate()) : this.pregeneratedPool.take();
     }
 
 }
@@ -21,7 +21,7 @@ public class TorrentVolatileRefreshKeyGenerator extends KeyGenerator {
             @JsonProperty(value = "algorithm", required = true) final KeyAlgorithm algorithm,
             @JsonProperty(value = "keyCase", required = true) final Casing keyCase
     ) {
-        super(algorithm, keyCase);
+        super(algorithm, keyCase, true);
         keyPerTorrent = new ConcurrentHashMap<>();
     }
 
@@ -6,6 +6,9 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 import org.araymond.joal.core.client.emulated.TorrentClientConfigIntegrityException;
+import org.araymond.joal.core.client.emulated.generator.CompiledRegexGenerator;
+
+import java.util.function.Supplier;
 
 @EqualsAndHashCode(of = "pattern")
 public class RegexPatternKeyAlgorithm implements KeyAlgorithm {
@@ -13,7 +16,10 @@ public class RegexPatternKeyAlgorithm implements KeyAlgorithm {
     @Getter
     @JsonProperty("pattern")
     private final String pattern;
-    private final Generex generex;
+    /**
+     * Compiled into a table driven generator when the pattern is simple enough, Generex otherwise.
+     */
+    private final Supplier<String> generator;
 
     public RegexPatternKeyAlgorithm(
             @JsonProperty(value = "pattern", required = true) final String pattern
@@ -22,12 +28,14 @@ public class RegexPatternKeyAlgorithm implements KeyAlgorithm {
             throw new TorrentClientConfigIntegrityException("peerId algorithm pattern must not be null.");
         }
         this.pattern = pattern;
-        this.generex = new Generex(pattern);
+        this.generator = CompiledRegexGenerator.compile(pattern)
+                .<Supplier<String>>map(compiled -> compiled::generate)
+                .orElseGet(() -> new Generex(pattern)::random);
     }
 
     @Override
     public String generate() {
-        return this.generex.random();
+        return this.generator.get();
     }
 
 }
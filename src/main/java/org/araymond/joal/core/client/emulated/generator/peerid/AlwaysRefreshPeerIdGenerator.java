@@ -16,7 +16,7 @@ public class AlwaysRefreshPeerIdGenerator extends PeerIdGenerator {
             @JsonProperty(value = "algorithm", required = true) final PeerIdAlgorithm algorithm,
             @JsonProperty(value = "shouldUrlEncode", required = true) final boolean isUrlEncoded
     ) {
-        super(algorithm, isUrlEncoded);
+        super(algorithm, isUrlEncoded, true);
     }
 
     @Override
@@ -5,12 +5,17 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.araymond.joal.core.client.emulated.TorrentClientConfigIntegrityException;
+import org.araymond.joal.core.client.emulated.generator.PregeneratedValuePool;
+import org.araymond.joal.core.client.emulated.generator.PregeneratedValuePoolStats;
 import org.araymond.joal.core.client.emulated.generator.peerid.generation.PeerIdAlgorithm;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 
+import java.util.Optional;
+
 /**
  * Created by raymo on 16/07/2017.
  */
@@ -22,7 +27,7 @@ import org.araymond.joal.core.torrent.torrent.InfoHash;
         @JsonSubTypes.Type(value = TorrentVolatileRefreshPeerIdGenerator.class, name = "TORRENT_VOLATILE"),
         @JsonSubTypes.Type(value = TorrentPersistentRefreshPeerIdGenerator.class, name = "TORRENT_PERSISTENT")
 })
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = "pregeneratedPool")
 @Getter
 public abstract class PeerIdGenerator {
     public static final int PEER_ID_LENGTH = 20;
@@ -31,20 +36,44 @@ public abstract class PeerIdGenerator {
     private final PeerIdAlgorithm algorithm;
     @JsonProperty("shouldUrlEncode")
     private final boolean shouldUrlEncode;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    private final PregeneratedValuePool pregeneratedPool;
 
     public PeerIdGenerator(final PeerIdAlgorithm algorithm, final boolean shouldUrlEncode) {
+        this(algorithm, shouldUrlEncode, false);
+    }
+
+    /**
+     * @param pregenerate generate the peer ids ahead of time in a background thread, for the refresh policies that
+     *                    need a new peer id on the announce path
+     */
+    protected PeerIdGenerator(final PeerIdAlgorithm algorithm, final boolean shouldUrlEncode, final boolean pregenerate) {
         if (algorithm == null) {
             throw new TorrentClientConfigIntegrityException("peerId algorithm must not be null");
         }
         this.algorithm = algorithm;
         this.shouldUrlEncode = shouldUrlEncode;
+        this.pregeneratedPool = pregenerate ? new PregeneratedValuePool("peerId", algorithm::generate) : null;
     }
 
     @JsonIgnore
     public abstract String getPeerId(final InfoHash infoHash, RequestEvent event);
 
+    /**
+     * Called once the torrent has left the client, for the generators keeping a peerId per torrent.
+     */
+    public void onTorrentUnregistered(final InfoHash infoHash) {
+        // noop
+    }
+
+    @JsonIgnore
+    public Optional<PregeneratedValuePoolStats> getPregeneratedPoolStats() {
+        return Optional.ofNullable(this.pregeneratedPool).map(PregeneratedValuePool::getStats);
+    }
+
     protected String generatePeerId() {
-        final String peerId = this.algorithm.generate();
+        final String peerId = this.pregeneratedPool == null ? this.algorithm.generate() : this.pregeneratedPool.take();
         if (peerId.length() != PEER_ID_LENGTH) {
             throw new IllegalStateException("PeerId length was supposed to be " + PEER_ID_LENGTH + ", but a length of "
                     + peerId.length() + " was generated. Throw exception to prevent sending invalid PeerId to tracker");
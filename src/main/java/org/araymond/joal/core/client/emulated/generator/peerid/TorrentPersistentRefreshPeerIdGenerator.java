@@ -2,25 +2,24 @@ package org.araymond.joal.core.client.emulated.generator.peerid;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
-import lombok.Getter;
 import org.araymond.joal.core.client.emulated.generator.peerid.generation.PeerIdAlgorithm;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by raymo on 16/07/2017.
  */
 public class TorrentPersistentRefreshPeerIdGenerator extends PeerIdGenerator {
-    private final Map<InfoHash, AccessAwarePeerId> peerIdPerTorrent;
-
-    private int getCounter = 0;
+    /**
+     * PeerIds not used for two hours are evicted. The cache is access ordered, expired entries are cleaned up along
+     * with the regular reads and writes instead of scanning every entry on each announce.
+     */
+    private final LoadingCache<InfoHash, String> peerIdPerTorrent;
 
     @JsonCreator
     TorrentPersistentRefreshPeerIdGenerator(
@@ -28,56 +27,18 @@ public class TorrentPersistentRefreshPeerIdGenerator extends PeerIdGenerator {
             @JsonProperty(value = "shouldUrlEncode", required = true) final boolean isUrlEncoded
     ) {
         super(algorithm, isUrlEncoded);
-        peerIdPerTorrent = new ConcurrentHashMap<>();
+        peerIdPerTorrent = CacheBuilder.newBuilder()
+                .expireAfterAccess(120, TimeUnit.MINUTES)
+                .build(CacheLoader.from(infoHash -> super.generatePeerId()));
     }
 
     @Override
     public String getPeerId(final InfoHash infoHash, final RequestEvent event) {
-        if (!this.peerIdPerTorrent.containsKey(infoHash)) {
-            this.peerIdPerTorrent.put(infoHash, new AccessAwarePeerId(super.generatePeerId()));
-        }
-
-        final String key = this.peerIdPerTorrent.get(infoHash).getPeerId();
-        getCounter++;
-        if (getCounter >= 30) {
-            getCounter = 0;
-            evictOldEntries();
-        }
-        return key;
+        return this.peerIdPerTorrent.getUnchecked(infoHash);
     }
 
-    @VisibleForTesting
-    void evictOldEntries() {
-        new HashSet<>(this.peerIdPerTorrent.entrySet()).stream()
-                .filter(this::shouldEvictEntry)
-                .forEach(entry -> this.peerIdPerTorrent.remove(entry.getKey()));
-    }
-
-    /**
-     * If an entry is older than one hour and a half, it shoul be considered as evictable
-     *
-     * @param entry decide whether this entry is evictable
-     * @return true if evictable, false otherwise
-     */
-    @VisibleForTesting
-    boolean shouldEvictEntry(final Map.Entry<InfoHash, AccessAwarePeerId> entry) {
-        return ChronoUnit.MINUTES.between(entry.getValue().getLastAccess(), LocalDateTime.now()) >= 120;
-    }
-
-    static class AccessAwarePeerId {
-        private final String peerId;
-        @Getter
-        private LocalDateTime lastAccess;
-
-        @VisibleForTesting
-        AccessAwarePeerId(final String peerId) {
-            this.peerId = peerId;
-            this.lastAccess = LocalDateTime.now();
-        }
-
-        public String getPeerId() {
-            this.lastAccess = LocalDateTime.now();
-            return this.peerId;
-        }
+    @Override
+    public void onTorrentUnregistered(final InfoHash infoHash) {
+        this.peerIdPerTorrent.invalidate(infoHash);
     }
 }
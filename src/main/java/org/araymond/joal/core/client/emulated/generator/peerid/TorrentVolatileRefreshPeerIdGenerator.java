@@ -20,7 +20,7 @@ public class TorrentVolatileRefreshPeerIdGenerator extends PeerIdGenerator {
             @JsonProperty(value = "algorithm", required = true) final PeerIdAlgorithm algorithm,
             @JsonProperty(value = "shouldUrlEncode", required = true) final boolean isUrlEncoded
     ) {
-        super(algorithm, isUrlEncoded);
+        super(algorithm, isUrlEncoded, true);
         peerIdPerTorrent = new ConcurrentHashMap<>();
     }
 
@@ -5,6 +5,9 @@ import com.mifmif.common.regex.Generex;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.araymond.joal.core.client.emulated.TorrentClientConfigIntegrityException;
+import org.araymond.joal.core.client.emulated.generator.CompiledRegexGenerator;
+
+import java.util.function.Supplier;
 
 @EqualsAndHashCode(of = "pattern")
 public class RegexPatternPeerIdAlgorithm implements PeerIdAlgorithm {
@@ -12,7 +15,10 @@ public class RegexPatternPeerIdAlgorithm implements PeerIdAlgorithm {
     @JsonProperty("pattern")
     @Getter
     private final String pattern;
-    private final Generex generex;
+    /**
+     * Compiled into a table driven generator when the pattern is simple enough, Generex otherwise.
+     */
+    private final Supplier<String> generator;
 
     public RegexPatternPeerIdAlgorithm(
             @JsonProperty(value = "pattern", required = true) final String pattern
@@ -21,11 +27,13 @@ public class RegexPatternPeerIdAlgorithm implements PeerIdAlgorithm {
             throw new TorrentClientConfigIntegrityException("peerId algorithm pattern must not be null.");
         }
         this.pattern = pattern;
-        this.generex = new Generex(pattern);
+        this.generator = CompiledRegexGenerator.compile(pattern)
+                .<Supplier<String>>map(compiled -> compiled::generate)
+                .orElseGet(() -> new Generex(pattern)::random);
     }
 
     @Override
     public String generate() {
-        return this.generex.random();
+        return this.generator.get();
     }
 }
@@ -0,0 +1,15 @@
+package org.araymond.joal.core.config;
+
+/**
+ * Structure de données utilisée pour planifier les announces.
+ */
+public enum AnnounceSchedulerType {
+    /**
+     * Tas binaire indexé par info hash : O(log n) par replanification, échéances exactes.
+     */
+    HEAP,
+    /**
+     * Roue temporelle hiérarchique : O(1) par replanification, échéances arrondies au tick configuré.
+     */
+    TIMING_WHEEL
+}
@@ -0,0 +1,15 @@
+package org.araymond.joal.core.config;
+
+/**
+ * Threads sur lesquels les announces bloquantes sont exécutées.
+ */
+public enum AnnouncerExecutorMode {
+    /**
+     * Pool de threads plateforme de taille fixe (voir announcerThreadPoolSize).
+     */
+    PLATFORM,
+    /**
+     * Un thread virtuel par announce si la JVM le permet (JDK 21+), sinon repli sur le pool de threads plateforme.
+     */
+    VIRTUAL
+}
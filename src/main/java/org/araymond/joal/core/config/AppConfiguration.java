@@ -7,6 +7,10 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Created by raymo on 24/01/2017.
  */
@@ -28,6 +32,24 @@ public class AppConfiguration {
     private final float uploadRatioTarget;
     private final long maxNonSeedingTimeMs;
     private final long requiredSeedingTimeMs;
+    private final AnnounceSchedulerType announceScheduler;
+    private final long announceSchedulerTickMs;
+    private final long startupAnnounceRampMs;
+    private final int announceJitterPercent;
+    private final Map<String, Double> trackerRateLimits;
+    private final boolean asyncHttpAnnounce;
+    private final AnnouncerExecutorMode announcerExecutorMode;
+    private final int announcerThreadPoolSize;
+    private final int maxInFlightAnnounces;
+    private final boolean udpTrackerEnabled;
+    private final int udpTrackerMaxRetransmissions;
+    private final long scrapeIntervalMs;
+    private final int scrapeBatchSize;
+    private final int trackerCircuitBreakerFailureThreshold;
+    private final long trackerCircuitBreakerOpenMs;
+    private final int maxTrackerResponseBytes;
+    private final long peersUpdateBatchWindowMs;
+    private final int peersUpdateMaxBatchSize;
 
     /**
      * Constructeur principal avec validation des paramètres.
@@ -41,7 +63,25 @@ public class AppConfiguration {
             @JsonProperty(value = "keepTorrentWithZeroLeechers", required = true) final boolean keepTorrentWithZeroLeechers,
             @JsonProperty(value = "uploadRatioTarget", required = false) final Float uploadRatioTarget,
             @JsonProperty(value = "maxNonSeedingTimeMs", required = false) final Long maxNonSeedingTimeMs,
-            @JsonProperty(value = "requiredSeedingTimeMs", required = false) final Long requiredSeedingTimeMs
+            @JsonProperty(value = "requiredSeedingTimeMs", required = false) final Long requiredSeedingTimeMs,
+            @JsonProperty(value = "announceScheduler", required = false) final AnnounceSchedulerType announceScheduler,
+            @JsonProperty(value = "announceSchedulerTickMs", required = false) final Long announceSchedulerTickMs,
+            @JsonProperty(value = "startupAnnounceRampMs", required = false) final Long startupAnnounceRampMs,
+            @JsonProperty(value = "announceJitterPercent", required = false) final Integer announceJitterPercent,
+            @JsonProperty(value = "trackerRateLimits", required = false) final Map<String, Double> trackerRateLimits,
+            @JsonProperty(value = "asyncHttpAnnounce", required = false) final Boolean asyncHttpAnnounce,
+            @JsonProperty(value = "announcerExecutorMode", required = false) final AnnouncerExecutorMode announcerExecutorMode,
+            @JsonProperty(value = "announcerThreadPoolSize", required = false) final Integer announcerThreadPoolSize,
+            @JsonProperty(value = "maxInFlightAnnounces", required = false) final Integer maxInFlightAnnounces,
+            @JsonProperty(value = "udpTrackerEnabled", required = false) final Boolean udpTrackerEnabled,
+            @JsonProperty(value = "udpTrackerMaxRetransmissions", required = false) final Integer udpTrackerMaxRetransmissions,
+            @JsonProperty(value = "scrapeIntervalMs", required = false) final Long scrapeIntervalMs,
+            @JsonProperty(value = "scrapeBatchSize", required = false) final Integer scrapeBatchSize,
+            @JsonProperty(value = "trackerCircuitBreakerFailureThreshold", required = false) final Integer trackerCircuitBreakerFailureThreshold,
+            @JsonProperty(value = "trackerCircuitBreakerOpenMs", required = false) final Long trackerCircuitBreakerOpenMs,
+            @JsonProperty(value = "maxTrackerResponseBytes", required = false) final Integer maxTrackerResponseBytes,
+            @JsonProperty(value = "peersUpdateBatchWindowMs", required = false) final Long peersUpdateBatchWindowMs,
+            @JsonProperty(value = "peersUpdateMaxBatchSize", required = false) final Integer peersUpdateMaxBatchSize
     ) {
         this.minUploadRate = minUploadRate;
         this.maxUploadRate = maxUploadRate;
@@ -51,8 +91,52 @@ public class AppConfiguration {
         this.uploadRatioTarget = uploadRatioTarget == null ? -1.0f : uploadRatioTarget;
         this.maxNonSeedingTimeMs = maxNonSeedingTimeMs == null ? 72 * 60 * 60 * 1000L : maxNonSeedingTimeMs;
         this.requiredSeedingTimeMs = requiredSeedingTimeMs == null ? 7 * 24 * 60 * 60 * 1000L : requiredSeedingTimeMs;
+        this.announceScheduler = announceScheduler == null ? AnnounceSchedulerType.HEAP : announceScheduler;
+        this.announceSchedulerTickMs = announceSchedulerTickMs == null ? 1000L : announceSchedulerTickMs;
+        this.startupAnnounceRampMs = startupAnnounceRampMs == null ? 0L : startupAnnounceRampMs;
+        this.announceJitterPercent = announceJitterPercent == null ? 5 : announceJitterPercent;
+        this.trackerRateLimits = trackerRateLimits == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(trackerRateLimits));
+        this.asyncHttpAnnounce = asyncHttpAnnounce != null && asyncHttpAnnounce;
+        this.announcerExecutorMode = announcerExecutorMode == null ? AnnouncerExecutorMode.PLATFORM : announcerExecutorMode;
+        this.announcerThreadPoolSize = announcerThreadPoolSize == null ? 3 : announcerThreadPoolSize;
+        this.maxInFlightAnnounces = maxInFlightAnnounces == null ? 0 : maxInFlightAnnounces;
+        this.udpTrackerEnabled = udpTrackerEnabled != null && udpTrackerEnabled;
+        this.udpTrackerMaxRetransmissions = udpTrackerMaxRetransmissions == null ? 3 : udpTrackerMaxRetransmissions;
+        this.scrapeIntervalMs = scrapeIntervalMs == null ? 0L : scrapeIntervalMs;
+        this.scrapeBatchSize = scrapeBatchSize == null ? 50 : scrapeBatchSize;
+        this.trackerCircuitBreakerFailureThreshold = trackerCircuitBreakerFailureThreshold == null ? 5 : trackerCircuitBreakerFailureThreshold;
+        this.trackerCircuitBreakerOpenMs = trackerCircuitBreakerOpenMs == null ? 60000L : trackerCircuitBreakerOpenMs;
+        this.maxTrackerResponseBytes = maxTrackerResponseBytes == null ? 512 * 1024 : maxTrackerResponseBytes;
+        this.peersUpdateBatchWindowMs = peersUpdateBatchWindowMs == null ? 200L : peersUpdateBatchWindowMs;
+        this.peersUpdateMaxBatchSize = peersUpdateMaxBatchSize == null ? 256 : peersUpdateMaxBatchSize;
         validate();
     }
+
+    /**
+     * Retourne une copie de cette configuration avec les paramètres de seed éditables depuis l'interface web,
+     * les paramètres avancés (non exposés dans l'interface) sont conservés.
+     */
+    public AppConfiguration withSeedSettings(
+            final long minUploadRate,
+            final long maxUploadRate,
+            final int simultaneousSeed,
+            final String client,
+            final boolean keepTorrentWithZeroLeechers,
+            final Float uploadRatioTarget,
+            final Long maxNonSeedingTimeMs,
+            final Long requiredSeedingTimeMs
+    ) {
+        return new AppConfiguration(
+                minUploadRate, maxUploadRate, simultaneousSeed, client, keepTorrentWithZeroLeechers,
+                uploadRatioTarget, maxNonSeedingTimeMs, requiredSeedingTimeMs,
+                this.announceScheduler, this.announceSchedulerTickMs,
+                this.startupAnnounceRampMs, this.announceJitterPercent,
+                this.trackerRateLimits, this.asyncHttpAnnounce,
+                this.announcerExecutorMode, this.announcerThreadPoolSize, this.maxInFlightAnnounces,
+                this.udpTrackerEnabled, this.udpTrackerMaxRetransmissions, this.scrapeIntervalMs, this.scrapeBatchSize, this.trackerCircuitBreakerFailureThreshold, this.trackerCircuitBreakerOpenMs, this.maxTrackerResponseBytes,
+                this.peersUpdateBatchWindowMs, this.peersUpdateMaxBatchSize
+        );
+    }
     /**
      * Retourne le temps de seed requis (en ms).
      */
@@ -92,5 +176,63 @@ public class AppConfiguration {
         if (uploadRatioTarget < 0f && uploadRatioTarget != -1f){
             throw new AppConfigurationIntegrityException("uploadRatioTarget must be greater than 0 (or equal to -1)");
         }
+
+        if (announceSchedulerTickMs <= 0) {
+            throw new AppConfigurationIntegrityException("announceSchedulerTickMs must be greater than 0");
+        }
+
+        if (startupAnnounceRampMs < 0) {
+            throw new AppConfigurationIntegrityException("startupAnnounceRampMs must be at least 0");
+        }
+
+        if (announceJitterPercent < 0 || announceJitterPercent > 100) {
+            throw new AppConfigurationIntegrityException("announceJitterPercent must be between 0 and 100");
+        }
+
+        if (announcerThreadPoolSize < 1) {
+            throw new AppConfigurationIntegrityException("announcerThreadPoolSize must be greater than 0");
+        }
+
+        if (maxInFlightAnnounces < 0) {
+            throw new AppConfigurationIntegrityException("maxInFlightAnnounces must be at least 0 (0 means unlimited)");
+        }
+
+        if (udpTrackerMaxRetransmissions < 0 || udpTrackerMaxRetransmissions > 8) {
+            throw new AppConfigurationIntegrityException("udpTrackerMaxRetransmissions must be between 0 and 8");
+        }
+
+        if (scrapeIntervalMs < 0) {
+            throw new AppConfigurationIntegrityException("scrapeIntervalMs must be at least 0 (0 disables scraping)");
+        }
+
+        if (scrapeBatchSize < 1) {
+            throw new AppConfigurationIntegrityException("scrapeBatchSize must be greater than 0");
+        }
+
+        if (trackerCircuitBreakerFailureThreshold < 0) {
+            throw new AppConfigurationIntegrityException("trackerCircuitBreakerFailureThreshold must be at least 0 (0 disables the circuit breakers)");
+        }
+
+        if (trackerCircuitBreakerOpenMs <= 0) {
+            throw new AppConfigurationIntegrityException("trackerCircuitBreakerOpenMs must be greater than 0");
+        }
+
+        if (maxTrackerResponseBytes < 1024) {
+            throw new AppConfigurationIntegrityException("maxTrackerResponseBytes must be at least 1024");
+        }
+
+        if (peersUpdateBatchWindowMs < 0) {
+            throw new AppConfigurationIntegrityException("peersUpdateBatchWindowMs must be at least 0 (0 disables batching)");
+        }
+
+        if (peersUpdateMaxBatchSize < 1) {
+            throw new AppConfigurationIntegrityException("peersUpdateMaxBatchSize must be greater than 0");
+        }
+
+        trackerRateLimits.forEach((host, requestsPerSecond) -> {
+            if (StringUtils.isBlank(host) || requestsPerSecond == null || requestsPerSecond < 0) {
+                throw new AppConfigurationIntegrityException("trackerRateLimits must map tracker hostnames to a rate of at least 0 request per second");
+            }
+        });
     }
 }
@@ -0,0 +1,155 @@
+package org.araymond.joal.core.events;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes the core events to the Spring listeners (the web UI ones) from a dedicated thread, so that the announcer
+ * threads and the bandwidth dispatcher do not wait for the serialization of the events and the STOMP sends to the
+ * web clients.
+ * <p/>
+ * The events wait in a bounded ring buffer. When it is full, what happens depends on the {@link OverflowPolicy} of the
+ * event class: telemetry events replace the oldest telemetry event of the buffer (they will be superseded soon
+ * anyway), state events block the publisher until some room is available, so that they are never lost.
+ * <p/>
+ * Events are delivered in the order they were published. An event published by a listener, from the delivery thread
+ * itself, is delivered right away to avoid a deadlock on a full buffer.
+ */
+@Slf4j
+public class AsyncEventPublisher implements ApplicationEventPublisher {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public enum OverflowPolicy {
+        /**
+         * Drop the oldest telemetry event of the buffer, or this one if the buffer only holds state events.
+         */
+        DROP_OLDEST,
+        /**
+         * Wait for the delivery thread to make some room.
+         */
+        BLOCK
+    }
+
+    private final ApplicationEventPublisher delegate;
+    private final int capacity;
+    private final Map<Class<?>, OverflowPolicy> policies;
+    private final ArrayDeque<Object> buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Thread deliveryThread;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private int maxDepth;
+
+    /**
+     * @param policies overflow policy of the event classes, the ones missing are {@link OverflowPolicy#BLOCK}
+     */
+    public AsyncEventPublisher(final ApplicationEventPublisher delegate, final int capacity, final Map<Class<?>, OverflowPolicy> policies) {
+        Preconditions.checkNotNull(delegate, "delegate must not be null");
+        Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.policies = ImmutableMap.copyOf(policies);
+        this.buffer = new ArrayDeque<>(capacity);
+        this.deliveryThread = new Thread(this::deliverForever);
+        this.deliveryThread.setName("event-publisher");
+        this.deliveryThread.setDaemon(true);
+        this.deliveryThread.start();
+    }
+
+    @Override
+    public void publishEvent(final Object event) {
+        Preconditions.checkNotNull(event, "event must not be null");
+        if (Thread.currentThread() == this.deliveryThread) {
+            this.published.increment();
+            this.deliver(event);
+            return;
+        }
+        final OverflowPolicy policy = this.policies.getOrDefault(event.getClass(), OverflowPolicy.BLOCK);
+        this.lock.lock();
+        try {
+            this.published.increment();
+            if (this.buffer.size() >= this.capacity) {
+                if (policy == OverflowPolicy.DROP_OLDEST) {
+                    this.dropped.increment();
+                    if (!this.removeOldestDroppable()) {
+                        log.debug("Event buffer is full of state events, dropped {}", event.getClass().getSimpleName());
+                        return;
+                    }
+                } else {
+                    this.blocked.increment();
+                    while (this.buffer.size() >= this.capacity) {
+                        this.notFull.awaitUninterruptibly();
+                    }
+                }
+            }
+            this.buffer.addLast(event);
+            this.maxDepth = Math.max(this.maxDepth, this.buffer.size());
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public EventPublisherStats getStats() {
+        this.lock.lock();
+        try {
+            return new EventPublisherStats(this.capacity, this.buffer.size(), this.maxDepth,
+                    this.published.sum(), this.delivered.sum(), this.dropped.sum(), this.blocked.sum());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private boolean removeOldestDroppable() {
+        for (final Iterator<Object> it = this.buffer.iterator(); it.hasNext(); ) {
+            final Object queued = it.next();
+            if (this.policies.get(queued.getClass()) == OverflowPolicy.DROP_OLDEST) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deliverForever() {
+        while (true) {
+            final Object event;
+            this.lock.lock();
+            try {
+                while (this.buffer.isEmpty()) {
+                    this.notEmpty.awaitUninterruptibly();
+                }
+                event = this.buffer.pollFirst();
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+            this.deliver(event);
+        }
+    }
+
+    private void deliver(final Object event) {
+        try {
+            this.delegate.publishEvent(event);
+        } catch (final RuntimeException e) {
+            log.warn("Listener failed to handle {}", event.getClass().getSimpleName(), e);
+        }
+        this.delivered.increment();
+    }
+}
@@ -0,0 +1,22 @@
+package org.araymond.joal.core.events;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Fill level of the {@link AsyncEventPublisher} buffer, and how many events went through it, were dropped because it
+ * was full, or had their publisher wait for some room.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class EventPublisherStats {
+    private final int capacity;
+    private final int depth;
+    private final int maxDepth;
+    private final long published;
+    private final long delivered;
+    private final long dropped;
+    private final long blocked;
+}
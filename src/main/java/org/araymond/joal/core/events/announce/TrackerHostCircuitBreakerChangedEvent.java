@@ -0,0 +1,11 @@
+package org.araymond.joal.core.events.announce;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakerState;
+
+@RequiredArgsConstructor
+@Getter
+public class TrackerHostCircuitBreakerChangedEvent {
+    private final TrackerHostCircuitBreakerState breakerState;
+}
@@ -18,28 +18,34 @@ import org.araymond.joal.core.ttorrent.client.announcer.AnnouncerFacade;
 import org.araymond.joal.core.ttorrent.client.announcer.AnnouncerFactory;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceRequest;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnouncerExecutor;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakerState;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostRateLimitStats;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostRateLimiter;
 import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toSet;
 
 /**
  * Classe principale qui simule le comportement d'un client BitTorrent.
- * - Gère la file d'attente des announces trackers via DelayQueue
- * - Lance un thread pour traiter périodiquement les announces
+ * - Gère la file d'attente des announces trackers via un DelayScheduler (DelayQueue ou TimingWheelDelayScheduler)
+ * - Lance un thread qui se réveille à l'échéance du prochain announce (pas de polling)
  * - Réagit aux changements de fichiers torrents sur le disque
- * Optimisation possible : remplacer le thread manuel par un scheduler (ex: ScheduledExecutorService).
  */
 @Slf4j
 // Implémente la logique de simulation du client BitTorrent et la gestion des torrents en cours de seed.
 public class Client implements TorrentFileChangeAware, ClientFacade {
+    // Délai avant de réessayer un announce refusé faute de place parmi les announces en cours
+    private static final long IN_FLIGHT_CAP_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
     // Configuration courante de l'application
     private final AppConfiguration appConfig;
     // Fournisseur de fichiers torrents
@@ -49,9 +55,15 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
     // Exécuteur des announces trackers
     private AnnouncerExecutor announcerExecutor;
     // File d'attente des announces trackers
-    private final DelayQueue<AnnounceRequest> delayQueue;
+    private final DelayScheduler<AnnounceRequest> delayQueue;
     // Fabrique d'announcers
     private final AnnouncerFactory announcerFactory;
+    // Limiteur de débit des announces par hôte de tracker
+    private final TrackerHostRateLimiter trackerRateLimiter;
+    // Disjoncteurs par hôte de tracker, partagés avec les announcers
+    private final TrackerHostCircuitBreakers circuitBreakers;
+    // Scrape périodique des trackers entre deux announces, null si désactivé
+    private final TrackerScraper trackerScraper;
     // Liste des announcers en cours de seed
     private final List<Announcer> currentlySeedingAnnouncers = new ArrayList<>();
     // Verrou pour la synchronisation des accès concurrents
@@ -62,17 +74,24 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
     private volatile boolean stop = true;
 
     Client(final AppConfiguration appConfig, final TorrentFileProvider torrentFileProvider, final AnnouncerExecutor announcerExecutor,
-           final DelayQueue<AnnounceRequest> delayQueue, final AnnouncerFactory announcerFactory, final ApplicationEventPublisher eventPublisher) {
+           final DelayScheduler<AnnounceRequest> delayQueue, final AnnouncerFactory announcerFactory, final ApplicationEventPublisher eventPublisher,
+           final TrackerHostRateLimiter trackerRateLimiter, final TrackerHostCircuitBreakers circuitBreakers,
+           final TrackerScraper trackerScraper) {
         Preconditions.checkNotNull(appConfig, "AppConfiguration must not be null");
         Preconditions.checkNotNull(torrentFileProvider, "TorrentFileProvider must not be null");
         Preconditions.checkNotNull(delayQueue, "DelayQueue must not be null");
         Preconditions.checkNotNull(announcerFactory, "AnnouncerFactory must not be null");
+        Preconditions.checkNotNull(trackerRateLimiter, "TrackerHostRateLimiter must not be null");
+        Preconditions.checkNotNull(circuitBreakers, "TrackerHostCircuitBreakers must not be null");
         this.eventPublisher = eventPublisher;
         this.appConfig = appConfig;
         this.torrentFileProvider = torrentFileProvider;
         this.announcerExecutor = announcerExecutor;
         this.delayQueue = delayQueue;
         this.announcerFactory = announcerFactory;
+        this.trackerRateLimiter = trackerRateLimiter;
+        this.circuitBreakers = circuitBreakers;
+        this.trackerScraper = trackerScraper;
     }
 
     @VisibleForTesting
@@ -87,11 +106,46 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
     public void start() {
         this.stop = false;
 
-        // TODO: use @Scheduled or something similar instead of looping manually over X period
+        // Le thread dort jusqu'à la prochaine échéance de la file (ou jusqu'à l'insertion d'un announce plus proche)
         this.thread = new Thread(() -> {
             while (!this.stop) {
-                this.delayQueue.getAvailables().forEach(req -> {
-                    this.announcerExecutor.execute(req);
+                final List<AnnounceRequest> availables;
+                try {
+                    availables = this.delayQueue.awaitAvailables();
+                } catch (final InterruptedException ignored) {
+                    continue;  // either stop() has been called, or a spurious interrupt: the loop condition decides
+                }
+
+                availables.forEach(req -> {
+                    // Les trackers sur un hôte injoignable (disjoncteur ouvert) sont sautés ; l'announce n'est replanifié
+                    // que si tous les trackers du torrent sont dans ce cas
+                    final long unreachableNanos = req.getAnnouncer().selectReachableTracker();
+                    if (unreachableNanos > 0) {
+                        this.reschedule(req, unreachableNanos);
+                        return;
+                    }
+                    // Trop d'announces en cours : on réessaie un peu plus tard plutôt que de bloquer ce thread.
+                    // Vérifié avant de consommer un jeton du limiteur de débit ou la sonde du disjoncteur
+                    if (!this.announcerExecutor.hasInFlightCapacity()) {
+                        this.reschedule(req, IN_FLIGHT_CAP_RETRY_NANOS);
+                        return;
+                    }
+                    // Hôte de tracker hors budget : on replanifie l'announce plutôt que de bloquer un thread
+                    final long waitNanos = this.trackerRateLimiter.reserve(req.getInfoHash(), req.getAnnouncer().getCurrentTrackerUri());
+                    if (waitNanos > 0) {
+                        this.reschedule(req, waitNanos);
+                        return;
+                    }
+                    // Réserve la sonde si l'hôte se rétablit ; ne refuse que si le disjoncteur s'est ouvert entre temps
+                    final long breakerWaitNanos = req.getAnnouncer().acquireCurrentTracker();
+                    if (breakerWaitNanos > 0) {
+                        this.reschedule(req, breakerWaitNanos);
+                        return;
+                    }
+                    if (!this.announcerExecutor.tryExecute(req)) {
+                        this.reschedule(req, IN_FLIGHT_CAP_RETRY_NANOS);
+                        return;
+                    }
                     try {
                         this.lock.writeLock().lock();
                         this.currentlySeedingAnnouncers.remove(req.getAnnouncer());
@@ -100,11 +154,6 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
                         this.lock.writeLock().unlock();
                     }
                 });
-
-                try {
-                    MILLISECONDS.sleep(1000); // TODO: move to config
-                } catch (final InterruptedException ignored) {
-                }
             }
         });
 
@@ -114,7 +163,7 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
             log.info("Simultaneous seed is set to -1, meaning unlimited torrents seeding. Will not pre-populate the queue.");
             try {
                 lock.lock();
-                this.addAllTorrentsFromDirectory();
+                this.addAllTorrentsFromDirectory(this.appConfig.getStartupAnnounceRampMs());
             } finally {
                 lock.unlock();
             }
@@ -122,7 +171,7 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
             for (int i = 0; i < this.appConfig.getSimultaneousSeed(); i++) {
                 try {
                     lock.lock();
-                    this.addTorrentFromDirectory();
+                    this.addTorrentFromDirectory(this.appConfig.getStartupAnnounceRampMs());
                 } catch (final NoMoreTorrentsFileAvailableException ignored) {
                     break;
                 } finally {
@@ -133,20 +182,29 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
 
         this.thread.setName("client-orchestrator-thread");
         this.thread.start();
+        if (this.trackerScraper != null) {
+            this.trackerScraper.start(this::getSeedingAnnouncersSnapshot);
+        }
 
         this.torrentFileProvider.registerListener(this);
     }
 
+    private void reschedule(final AnnounceRequest req, final long waitNanos) {
+        final long waitMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        this.delayQueue.addOrReplace(req, (int) Math.min(Integer.MAX_VALUE, waitMs), ChronoUnit.MILLIS);
+    }
+
     /**
      * Ajoute tous les torrents du dossier qui ne sont pas déjà en cours de seed.
+     * Les announces STARTED sont étalés aléatoirement sur {@code rampMs} millisecondes.
      */
-    private void addAllTorrentsFromDirectory() {
+    private void addAllTorrentsFromDirectory(final long rampMs) {
         
             Set<InfoHash> torrents = this.currentlySeedingAnnouncers.stream()
                             .map(Announcer::getTorrentInfoHash)
                             .collect(toSet());
 
-            this.torrentFileProvider.getAllTorrentsNotIn(torrents).forEach(this::addTorrent);
+            this.torrentFileProvider.getAllTorrentsNotIn(torrents).forEach(torrent -> this.addTorrent(torrent, rampMs));
     }
 
     
@@ -158,22 +216,35 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
      * Ajoute un nouveau torrent du dossier qui n'est pas déjà en cours de seed.
      */
     private void addTorrentFromDirectory() throws NoMoreTorrentsFileAvailableException {
+        this.addTorrentFromDirectory(0);
+    }
+
+    private void addTorrentFromDirectory(final long rampMs) throws NoMoreTorrentsFileAvailableException {
         final MockedTorrent torrent = this.torrentFileProvider.getTorrentNotIn(
                 this.currentlySeedingAnnouncers.stream()
                         .map(Announcer::getTorrentInfoHash)
                         .collect(toSet())
         );
 
-        addTorrent(torrent);
+        addTorrent(torrent, rampMs);
     }
 
     /**
      * Ajoute un torrent à la liste des torrents en cours de seed et démarre l'annonce.
      */
     private void addTorrent(MockedTorrent torrent) {
+        this.addTorrent(torrent, 0);
+    }
+
+    /**
+     * Ajoute un torrent et planifie son announce STARTED à un instant aléatoire dans [0, rampMs[,
+     * pour éviter que tous les torrents n'annoncent dans la même seconde au démarrage.
+     */
+    private void addTorrent(final MockedTorrent torrent, final long rampMs) {
         final Announcer announcer = this.announcerFactory.create(torrent);
         this.currentlySeedingAnnouncers.add(announcer);
-        this.delayQueue.addOrReplace(AnnounceRequest.createStart(announcer), 0, ChronoUnit.SECONDS);
+        final long startDelayMs = rampMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(rampMs);
+        this.delayQueue.addOrReplace(AnnounceRequest.createStart(announcer), (int) Math.min(Integer.MAX_VALUE, startDelayMs), ChronoUnit.MILLIS);
     }
 
     /**
@@ -181,6 +252,10 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
      */
     @Override
     public void stop() {
+        // Avant de prendre le verrou : le thread de scrape le prend en lecture pour lister les announcers
+        if (this.trackerScraper != null) {
+            this.trackerScraper.stop();
+        }
         Lock lock = this.lock.writeLock();
         try {
             lock.lock();
@@ -195,6 +270,7 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
                     this.thread = null;
                 }
             }
+            // Les announces STOPPED passent même si le plafond d'announces en cours est atteint : ils ne peuvent plus être replanifiés
             this.delayQueue.drainAll().stream()
                     .filter(req -> req.getEvent() != RequestEvent.STARTED)  // no need to generate 'stopped' request if the 'started' req was still waiting in queue
                     .map(AnnounceRequest::toStop)
@@ -249,6 +325,8 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
      * Appelé lorsqu'un torrent est stoppé. Archive et démarre un nouveau torrent si possible.
      */
     public void onTorrentHasStopped(final Announcer stoppedAnnouncer) {
+        this.trackerRateLimiter.release(stoppedAnnouncer.getTorrentInfoHash());
+        stoppedAnnouncer.onUnregistered();
         if (this.stop) {
             this.currentlySeedingAnnouncers.remove(stoppedAnnouncer);
             return;
@@ -305,6 +383,37 @@ public class Client implements TorrentFileChangeAware, ClientFacade {
         }
     }
 
+    /**
+     * Retourne le retard de dispatch des announces (heure effective - heure prévue).
+     */
+    @Override
+    public DispatchLag getDispatchLag() {
+        return this.delayQueue.getDispatchLag();
+    }
+
+    /**
+     * Retourne, par hôte de tracker, le nombre d'announces admis et retardés par le limiteur de débit.
+     */
+    @Override
+    public List<TrackerHostRateLimitStats> getTrackerRateLimitStats() {
+        return this.trackerRateLimiter.getStats();
+    }
+
+    @Override
+    public List<TrackerHostCircuitBreakerState> getTrackerCircuitBreakerStates() {
+        return this.circuitBreakers.getStates();
+    }
+
+    private List<Announcer> getSeedingAnnouncersSnapshot() {
+        Lock lock = this.lock.readLock();
+        try {
+            lock.lock();
+            return new ArrayList<>(this.currentlySeedingAnnouncers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Retourne la liste des announcers en cours de seed (thread-safe).
      */
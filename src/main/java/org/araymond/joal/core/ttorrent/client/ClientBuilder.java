@@ -9,6 +9,10 @@ import org.araymond.joal.core.ttorrent.client.announcer.AnnouncerFactory;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceRequest;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnouncerExecutor;
 import org.araymond.joal.core.ttorrent.client.announcer.response.*;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.HttpScrapeClient;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostRateLimiter;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpTrackerClient;
 import org.springframework.context.ApplicationEventPublisher;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -18,7 +22,10 @@ public final class ClientBuilder {
     private BandwidthDispatcher bandwidthDispatcher;
     private AnnouncerFactory announcerFactory;
     private ApplicationEventPublisher eventPublisher;
-    private DelayQueue<AnnounceRequest> delayQueue;
+    private DelayScheduler<AnnounceRequest> delayQueue;
+    private HttpScrapeClient httpScrapeClient;
+    private UdpTrackerClient udpScrapeClient;
+    private TrackerHostCircuitBreakers circuitBreakers;
 
     public static ClientBuilder builder() {
         return new ClientBuilder();
@@ -49,22 +56,56 @@ public final class ClientBuilder {
         return this;
     }
 
-    public ClientBuilder withDelayQueue(final DelayQueue<AnnounceRequest> delayQueue) {
+    public ClientBuilder withDelayQueue(final DelayScheduler<AnnounceRequest> delayQueue) {
         this.delayQueue = delayQueue;
         return this;
     }
 
+    public ClientBuilder withCircuitBreakers(final TrackerHostCircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+        return this;
+    }
+
+    /**
+     * @param udpTrackerClient null when udp trackers are disabled
+     */
+    public ClientBuilder withScrapeClients(final HttpScrapeClient httpScrapeClient, final UdpTrackerClient udpTrackerClient) {
+        this.httpScrapeClient = httpScrapeClient;
+        this.udpScrapeClient = udpTrackerClient;
+        return this;
+    }
+
     public ClientFacade build() {
         final AnnounceResponseHandlerChain announceResponseCallback = new AnnounceResponseHandlerChain();
         announceResponseCallback.appendHandler(new AnnounceEventPublisher(eventPublisher));
-        announceResponseCallback.appendHandler(new AnnounceReEnqueuer(delayQueue));
-        announceResponseCallback.appendHandler(new BandwidthDispatcherNotifier(bandwidthDispatcher));
+        announceResponseCallback.appendHandler(new AnnounceReEnqueuer(delayQueue, this.appConfiguration.getAnnounceJitterPercent()));
+        final BandwidthDispatcherNotifier bandwidthDispatcherNotifier = new BandwidthDispatcherNotifier(bandwidthDispatcher);
+        announceResponseCallback.appendHandler(bandwidthDispatcherNotifier);
+
+        final AnnouncerExecutor announcerExecutor = new AnnouncerExecutor(
+                announceResponseCallback,
+                this.appConfiguration.getAnnouncerExecutorMode(),
+                this.appConfiguration.getAnnouncerThreadPoolSize(),
+                this.appConfiguration.getMaxInFlightAnnounces()
+        );
 
-        final AnnouncerExecutor announcerExecutor = new AnnouncerExecutor(announceResponseCallback);
+        // shared by announces and scrapes, they draw from the same per tracker budget
+        final TrackerHostRateLimiter trackerRateLimiter = new TrackerHostRateLimiter(this.appConfiguration.getTrackerRateLimits());
+        TrackerScraper trackerScraper = null;
+        if (this.appConfiguration.getScrapeIntervalMs() > 0 && this.httpScrapeClient != null) {
+            trackerScraper = new TrackerScraper(this.httpScrapeClient, this.udpScrapeClient, trackerRateLimiter, this.circuitBreakers,
+                    this.appConfiguration.getScrapeIntervalMs(), this.appConfiguration.getScrapeBatchSize());
+            trackerScraper.appendHandler(bandwidthDispatcherNotifier);
+        }
 
         final Client client = new Client(this.appConfiguration, this.torrentFileProvider, announcerExecutor,
-                this.delayQueue, this.announcerFactory, this.eventPublisher);
-        announceResponseCallback.appendHandler(new ClientNotifier(client));
+                this.delayQueue, this.announcerFactory, this.eventPublisher,
+                trackerRateLimiter, this.circuitBreakers, trackerScraper);
+        final ClientNotifier clientNotifier = new ClientNotifier(client);
+        announceResponseCallback.appendHandler(clientNotifier);
+        if (trackerScraper != null) {
+            trackerScraper.appendHandler(clientNotifier);
+        }
 
         return client;
     }
@@ -1,6 +1,8 @@
 package org.araymond.joal.core.ttorrent.client;
 
 import org.araymond.joal.core.ttorrent.client.announcer.AnnouncerFacade;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakerState;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostRateLimitStats;
 
 import java.util.List;
 
@@ -8,4 +10,7 @@ public interface ClientFacade {
     void start();
     void stop();
     List<AnnouncerFacade> getCurrentlySeedingAnnouncers();
+    DispatchLag getDispatchLag();
+    List<TrackerHostRateLimitStats> getTrackerRateLimitStats();
+    List<TrackerHostCircuitBreakerState> getTrackerCircuitBreakerStates();
 }
@@ -1,21 +1,36 @@
 package org.araymond.joal.core.ttorrent.client;
 
-import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import com.google.common.annotations.VisibleForTesting;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
 import java.time.temporal.TemporalUnit;
 import java.util.*;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Predicate;
 
 import static java.util.Collections.emptyList;
 
-public class DelayQueue<T extends DelayQueue.InfoHashAble> {
+/**
+ * Delay queue that holds at most one item per {@link InfoHash}.
+ * <p/>
+ * Items are stored in a binary min-heap ordered by their release deadline, and the heap position of each item is
+ * indexed by info hash. Replacing or removing the item of a torrent is therefore O(log n) instead of a linear scan
+ * of the whole queue. Deadlines are based on the monotonic {@link System#nanoTime()} clock so that wall-clock
+ * adjustments cannot delay or fast-forward announces.
+ * <p/>
+ * Consumers can either poll with {@link #getAvailables()} or block in {@link #awaitAvailables()} until the earliest
+ * deadline is reached (or an earlier item gets inserted). The difference between the moment an item is handed to the
+ * consumer and its scheduled release is recorded in {@link #getDispatchLag()}.
+ */
+public class DelayQueue<T extends DelayScheduler.InfoHashAble> implements DelayScheduler<T> {
     private final Lock lock = new ReentrantLock();
-    private final Queue<IntervalAware<T>> queue = new PriorityQueue<>();
+    private final Condition headChanged = lock.newCondition();
+    private final DispatchLagRecorder dispatchLagRecorder = new DispatchLagRecorder();
+    private final Map<InfoHash, IntervalAware<T>> index = new HashMap<>();
+    private IntervalAware<T>[] heap = newHeap(16);
+    private int size;
 
     /**
      * Add to item to the queue, and ensure item uniqueness into the queue.
@@ -24,15 +39,35 @@ public class DelayQueue<T extends DelayQueue.InfoHashAble> {
      * @param interval
      * @param unit
      */
+    @Override
     public void addOrReplace(final T item, final int interval, final TemporalUnit unit) {
-        final IntervalAware<T> intervalAware = new IntervalAware<>(
-                item,
-                LocalDateTime.now().plus(interval, unit)
-        );
+        final long releaseAt = System.nanoTime() + Duration.of(interval, unit).toNanos();
         this.lock.lock();
         try {
-            this.queue.removeIf(infoHashEquals(item));  // Ensure no double will be present in the queue (don't want to have two announce type for a torrent)
-            this.queue.add(intervalAware);
+            // Ensure no double will be present in the queue (don't want to have two announce type for a torrent)
+            final IntervalAware<T> existing = this.index.get(item.getInfoHash());
+            if (existing != null) {
+                final long previousReleaseAt = existing.releaseAt;
+                existing.item = item;
+                existing.releaseAt = releaseAt;
+                if (releaseAt - previousReleaseAt < 0) {
+                    this.siftUp(existing.heapIndex);
+                } else {
+                    this.siftDown(existing.heapIndex);
+                }
+                this.signalIfHead(existing);
+                return;
+            }
+
+            final IntervalAware<T> intervalAware = new IntervalAware<>(item, releaseAt);
+            if (this.size == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap, this.size * 2);
+            }
+            intervalAware.heapIndex = this.size;
+            this.heap[this.size++] = intervalAware;
+            this.index.put(item.getInfoHash(), intervalAware);
+            this.siftUp(intervalAware.heapIndex);
+            this.signalIfHead(intervalAware);
         } finally {
             this.lock.unlock();
         }
@@ -41,45 +76,84 @@ public class DelayQueue<T extends DelayQueue.InfoHashAble> {
     /**
      * Get list of requests that are ready to be executed.
      */
+    @Override
     public List<T> getAvailables() {
         this.lock.lock();
         try {
-            final IntervalAware<T> first = queue.peek();
-            final LocalDateTime now = LocalDateTime.now();
-            if (first == null || first.releaseAt.isAfter(now)) {
-                return emptyList();
-            }
-
-            final List<T> timedOutItems = new ArrayList<>();
-            do {
-                timedOutItems.add(this.queue.poll().getItem());
-            } while (!this.queue.isEmpty() && !this.queue.peek().releaseAt.isAfter(now));
+            return this.pollAvailables(System.nanoTime());
+        } finally {
+            this.lock.unlock();
+        }
+    }
 
-            return timedOutItems;
+    /**
+     * Block until at least one request is ready to be executed, then return all the ready ones.
+     * The calling thread sleeps until the earliest deadline of the queue, and is woken up earlier if an item
+     * with a closer deadline gets inserted in the meantime.
+     *
+     * @throws InterruptedException if the waiting thread has been interrupted
+     */
+    @Override
+    public List<T> awaitAvailables() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (this.size == 0) {
+                    this.headChanged.await();
+                    continue;
+                }
+                final long now = System.nanoTime();
+                final long delay = this.heap[0].releaseAt - now;
+                if (delay <= 0) {
+                    return this.pollAvailables(now);
+                }
+                this.headChanged.awaitNanos(delay);
+            }
         } finally {
             this.lock.unlock();
         }
     }
 
-    private Predicate<IntervalAware<T>> infoHashEquals(T item) {
-        return i -> i.getItem().getInfoHash().equals(item.getInfoHash());
+    @Override
+    public DispatchLag getDispatchLag() {
+        return this.dispatchLagRecorder.snapshot();
     }
 
+    private List<T> pollAvailables(final long now) {
+        if (this.size == 0 || this.heap[0].releaseAt - now > 0) {
+            return emptyList();
+        }
+
+        final List<T> timedOutItems = new ArrayList<>();
+        do {
+            final IntervalAware<T> released = this.removeAt(0);
+            this.dispatchLagRecorder.record(now - released.releaseAt);
+            timedOutItems.add(released.item);
+        } while (this.size > 0 && this.heap[0].releaseAt - now <= 0);
+
+        return timedOutItems;
+    }
+
+    @Override
     public void remove(final T itemToRemove) {
         this.lock.lock();
         try {
-            this.queue.removeIf(infoHashEquals(itemToRemove));
+            final IntervalAware<T> intervalAware = this.index.get(itemToRemove.getInfoHash());
+            if (intervalAware != null) {
+                this.removeAt(intervalAware.heapIndex);
+            }
         } finally {
             this.lock.unlock();
         }
     }
 
+    @Override
     public List<T> drainAll() {
         this.lock.lock();
         try {
-            final List<T> items = new ArrayList<>(queue.size());
-            while (!queue.isEmpty()) {
-                items.add(queue.poll().getItem());
+            final List<T> items = new ArrayList<>(this.size);
+            while (this.size > 0) {
+                items.add(this.removeAt(0).item);
             }
             return items;
         } finally {
@@ -87,18 +161,94 @@ public class DelayQueue<T extends DelayQueue.InfoHashAble> {
         }
     }
 
-    @RequiredArgsConstructor
-    private static final class IntervalAware<T> implements Comparable<IntervalAware> {
-        @Getter private final T item;
-        private final LocalDateTime releaseAt;
+    @VisibleForTesting
+    int size() {
+        this.lock.lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void signalIfHead(final IntervalAware<T> intervalAware) {
+        if (intervalAware.heapIndex == 0) {
+            this.headChanged.signalAll();
+        }
+    }
+
+    private IntervalAware<T> removeAt(final int i) {
+        final IntervalAware<T> removed = this.heap[i];
+        this.index.remove(removed.item.getInfoHash());
+
+        final int last = --this.size;
+        final IntervalAware<T> moved = this.heap[last];
+        this.heap[last] = null;
+        if (i != last) {
+            this.heap[i] = moved;
+            moved.heapIndex = i;
+            this.siftDown(i);
+            if (this.heap[i] == moved) {
+                this.siftUp(i);
+            }
+        }
+        return removed;
+    }
 
-        @Override
-        public int compareTo(final IntervalAware o) {
-            return this.releaseAt.compareTo(o.releaseAt);
+    private void siftUp(int i) {
+        final IntervalAware<T> node = this.heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            final IntervalAware<T> parentNode = this.heap[parent];
+            if (node.releaseAt - parentNode.releaseAt >= 0) {
+                break;
+            }
+            this.heap[i] = parentNode;
+            parentNode.heapIndex = i;
+            i = parent;
         }
+        this.heap[i] = node;
+        node.heapIndex = i;
     }
 
-    public interface InfoHashAble {
-        InfoHash getInfoHash();
+    private void siftDown(int i) {
+        final IntervalAware<T> node = this.heap[i];
+        final int half = this.size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            final int right = child + 1;
+            if (right < this.size && this.heap[right].releaseAt - this.heap[child].releaseAt < 0) {
+                child = right;
+            }
+            final IntervalAware<T> childNode = this.heap[child];
+            if (node.releaseAt - childNode.releaseAt <= 0) {
+                break;
+            }
+            this.heap[i] = childNode;
+            childNode.heapIndex = i;
+            i = child;
+        }
+        this.heap[i] = node;
+        node.heapIndex = i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> IntervalAware<T>[] newHeap(final int capacity) {
+        return (IntervalAware<T>[]) new IntervalAware[capacity];
+    }
+
+    /**
+     * Mutable heap node: it is updated in place when the item of a torrent gets replaced, so that
+     * the info hash index never has to be touched on replace.
+     */
+    private static final class IntervalAware<T> {
+        private T item;
+        private long releaseAt;  // System.nanoTime() based, always compare with subtraction to be overflow-safe
+        private int heapIndex;
+
+        private IntervalAware(final T item, final long releaseAt) {
+            this.item = item;
+            this.releaseAt = releaseAt;
+        }
     }
 }
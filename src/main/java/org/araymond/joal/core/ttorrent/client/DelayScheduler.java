@@ -0,0 +1,49 @@
+package org.araymond.joal.core.ttorrent.client;
+
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.time.temporal.TemporalUnit;
+import java.util.List;
+
+/**
+ * Schedules items to be released after a delay, holding at most one item per {@link InfoHash}.
+ * <p/>
+ * Implementations:
+ * <ul>
+ *     <li>{@link DelayQueue}: indexed binary heap, O(log n) per reschedule, exact deadlines.</li>
+ *     <li>{@link TimingWheelDelayScheduler}: hierarchical timing wheel, O(1) per reschedule, deadlines rounded up to
+ *     the configured tick.</li>
+ * </ul>
+ */
+public interface DelayScheduler<T extends DelayScheduler.InfoHashAble> {
+
+    /**
+     * Add to item to the scheduler, replacing any item already scheduled for the same info hash.
+     */
+    void addOrReplace(T item, int interval, TemporalUnit unit);
+
+    /**
+     * Get list of items that are ready to be released, without blocking.
+     */
+    List<T> getAvailables();
+
+    /**
+     * Block until at least one item is ready to be released, then return all the ready ones.
+     *
+     * @throws InterruptedException if the waiting thread has been interrupted
+     */
+    List<T> awaitAvailables() throws InterruptedException;
+
+    void remove(T itemToRemove);
+
+    List<T> drainAll();
+
+    /**
+     * Statistics about the delay between the scheduled release of the items and the moment they were handed out.
+     */
+    DispatchLag getDispatchLag();
+
+    interface InfoHashAble {
+        InfoHash getInfoHash();
+    }
+}
@@ -0,0 +1,27 @@
+package org.araymond.joal.core.ttorrent.client;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Snapshot of the scheduler lag: how late (actual dispatch minus scheduled time) the announces were handed
+ * to the announcer executor.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class DispatchLag {
+    private final long dispatchedCount;
+    private final long lastLagNanos;
+    private final long maxLagNanos;
+    private final long totalLagNanos;
+
+    public long getAverageLagNanos() {
+        return this.dispatchedCount == 0 ? 0 : this.totalLagNanos / this.dispatchedCount;
+    }
+
+    public double getAverageLagMillis() {
+        return this.getAverageLagNanos() / 1_000_000d;
+    }
+}
@@ -0,0 +1,26 @@
+package org.araymond.joal.core.ttorrent.client;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free accumulator of {@link DispatchLag} samples, shared by the scheduler implementations.
+ */
+class DispatchLagRecorder {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+    private volatile long last;
+
+    void record(final long lagNanos) {
+        final long lag = Math.max(0L, lagNanos);
+        this.count.increment();
+        this.total.add(lag);
+        this.max.accumulate(lag);
+        this.last = lag;
+    }
+
+    DispatchLag snapshot() {
+        return new DispatchLag(this.count.sum(), this.last, this.max.get(), this.total.sum());
+    }
+}
@@ -0,0 +1,304 @@
+package org.araymond.joal.core.ttorrent.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.time.Duration;
+import java.time.temporal.TemporalUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Hashed hierarchical timing wheel, holding at most one item per {@link InfoHash}.
+ * <p/>
+ * Time is cut in ticks of a configurable duration. The wheel has {@value #LEVELS} levels of {@value #WHEEL_SIZE}
+ * slots: level 0 slots span one tick, level 1 slots span {@value #WHEEL_SIZE} ticks, and so on. An item lands in the
+ * lowest level able to hold its deadline, and is cascaded to the lower level when the wheel reaches its slot.
+ * Inserting, replacing and removing an item are O(1) (slots are intrusive doubly-linked lists, and each item is
+ * indexed by info hash), which makes it suitable for very large torrent sets where even a heap becomes noticeable.
+ * <p/>
+ * Deadlines are rounded up to the next tick, items are never released before their deadline, but may be released
+ * up to one tick late. With a tick of one second, the four levels cover about 194 days, deadlines further than that
+ * are parked in the last level and re-placed until they become reachable.
+ */
+public class TimingWheelDelayScheduler<T extends DelayScheduler.InfoHashAble> implements DelayScheduler<T> {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final DispatchLagRecorder dispatchLagRecorder = new DispatchLagRecorder();
+    private final Map<InfoHash, Node<T>> index = new HashMap<>();
+    private final Slot<T>[][] wheels;
+    private final Slot<T> due = new Slot<>();
+    private final long tickNanos;
+    private final long originNanos;
+    private long currentTick;
+
+    public TimingWheelDelayScheduler(final long tickDuration, final TimeUnit unit) {
+        Preconditions.checkArgument(tickDuration > 0, "tick duration must be greater than 0");
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.originNanos = System.nanoTime();
+        this.currentTick = 0;
+        this.wheels = newWheels();
+    }
+
+    @Override
+    public void addOrReplace(final T item, final int interval, final TemporalUnit unit) {
+        final long now = System.nanoTime();
+        final long releaseAt = now + Duration.of(interval, unit).toNanos();
+        this.lock.lock();
+        try {
+            // deadlines are placed relative to the current tick, which must not lag behind
+            this.advanceTo(now);
+            final boolean wasEmpty = this.index.isEmpty();
+            Node<T> node = this.index.get(item.getInfoHash());
+            if (node == null) {
+                node = new Node<>();
+                this.index.put(item.getInfoHash(), node);
+            } else {
+                node.slot.unlink(node);
+            }
+            node.item = item;
+            node.releaseAt = releaseAt;
+            node.deadlineTick = this.tickOf(releaseAt);
+            this.place(node);
+
+            // The consumer either waits without timeout (empty wheel) or until the next non-empty slot: wake it up
+            // if the new item may be due sooner than that.
+            if (wasEmpty || node.slot == this.due || node.deadlineTick - this.currentTick <= WHEEL_SIZE) {
+                this.changed.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> getAvailables() {
+        this.lock.lock();
+        try {
+            final long now = System.nanoTime();
+            this.advanceTo(now);
+            return this.drainDue(now);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> awaitAvailables() throws InterruptedException {
+        this.lock.lockInterruptibly();
+        try {
+            while (true) {
+                final long now = System.nanoTime();
+                this.advanceTo(now);
+                if (this.due.head != null) {
+                    return this.drainDue(now);
+                }
+                if (this.index.isEmpty()) {
+                    this.changed.await();
+                } else {
+                    this.changed.awaitNanos(this.nanosUntilNextWork(now));
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(final T itemToRemove) {
+        this.lock.lock();
+        try {
+            final Node<T> node = this.index.remove(itemToRemove.getInfoHash());
+            if (node != null) {
+                node.slot.unlink(node);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> drainAll() {
+        this.lock.lock();
+        try {
+            final List<T> items = new ArrayList<>(this.index.size());
+            this.index.values().forEach(node -> {
+                node.slot.unlink(node);
+                items.add(node.item);
+            });
+            this.index.clear();
+            return items;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public DispatchLag getDispatchLag() {
+        return this.dispatchLagRecorder.snapshot();
+    }
+
+    @VisibleForTesting
+    int size() {
+        this.lock.lock();
+        try {
+            return this.index.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Deadlines are rounded up, so that an item is never considered as due before its release time.
+     */
+    private long tickOf(final long nanos) {
+        final long elapsed = nanos - this.originNanos;
+        return elapsed <= 0 ? 0 : (elapsed + this.tickNanos - 1) / this.tickNanos;
+    }
+
+    private void place(final Node<T> node) {
+        final long delta = node.deadlineTick - this.currentTick;
+        if (delta <= 0) {
+            this.due.add(node);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            final int shift = WHEEL_BITS * level;
+            if (level == LEVELS - 1 || delta < 1L << (shift + WHEEL_BITS)) {
+                this.wheels[level][(int) ((node.deadlineTick >>> shift) & WHEEL_MASK)].add(node);
+                return;
+            }
+        }
+    }
+
+    private void advanceTo(final long now) {
+        final long nowTick = (now - this.originNanos) / this.tickNanos;
+        if (this.index.isEmpty()) {
+            this.currentTick = Math.max(this.currentTick, nowTick);
+            return;
+        }
+        while (this.currentTick < nowTick) {
+            this.currentTick++;
+            // cascade from the upper levels first, so an item can drop several levels in a single tick
+            for (int level = LEVELS - 1; level > 0; level--) {
+                final int shift = WHEEL_BITS * level;
+                if ((this.currentTick & ((1L << shift) - 1)) == 0) {
+                    this.replaceAll(this.wheels[level][(int) ((this.currentTick >>> shift) & WHEEL_MASK)]);
+                }
+            }
+            this.replaceAll(this.wheels[0][(int) (this.currentTick & WHEEL_MASK)]);
+        }
+    }
+
+    /**
+     * Detach every node of the slot and place them again relative to the current tick: due nodes go to the due list,
+     * the other ones move to a lower level (or stay parked in the last level when still out of reach).
+     */
+    private void replaceAll(final Slot<T> slot) {
+        Node<T> node = slot.detachAll();
+        while (node != null) {
+            final Node<T> next = node.next;
+            this.place(node);
+            node = next;
+        }
+    }
+
+    /**
+     * Time until the next tick that has something to do: either a non-empty level 0 slot, or a cascade.
+     */
+    private long nanosUntilNextWork(final long now) {
+        long tick = this.currentTick + 1;
+        while ((tick & WHEEL_MASK) != 0 && this.wheels[0][(int) (tick & WHEEL_MASK)].head == null) {
+            tick++;
+        }
+        return Math.max(1L, this.originNanos + tick * this.tickNanos - now);
+    }
+
+    private List<T> drainDue(final long now) {
+        if (this.due.head == null) {
+            return emptyList();
+        }
+        final List<T> items = new ArrayList<>();
+        Node<T> node = this.due.detachAll();
+        while (node != null) {
+            final Node<T> next = node.next;
+            this.index.remove(node.item.getInfoHash());
+            this.dispatchLagRecorder.record(now - node.releaseAt);
+            items.add(node.item);
+            node.slot = null;
+            node = next;
+        }
+        return items;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Slot<T>[][] newWheels() {
+        final Slot<T>[][] wheels = (Slot<T>[][]) new Slot[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheels[level][i] = new Slot<>();
+            }
+        }
+        return wheels;
+    }
+
+    private static final class Node<T> {
+        private T item;
+        private long releaseAt;
+        private long deadlineTick;
+        private Slot<T> slot;
+        private Node<T> prev;
+        private Node<T> next;
+    }
+
+    private static final class Slot<T> {
+        private Node<T> head;
+
+        private void add(final Node<T> node) {
+            node.slot = this;
+            node.prev = null;
+            node.next = this.head;
+            if (this.head != null) {
+                this.head.prev = node;
+            }
+            this.head = node;
+        }
+
+        private void unlink(final Node<T> node) {
+            if (node.prev == null) {
+                this.head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.slot = null;
+        }
+
+        /**
+         * Empty the slot and return its former head, nodes are still chained through {@code next}.
+         */
+        private Node<T> detachAll() {
+            final Node<T> first = this.head;
+            this.head = null;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.araymond.joal.core.ttorrent.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.araymond.joal.core.ttorrent.client.announcer.Announcer;
+import org.araymond.joal.core.ttorrent.client.announcer.response.ScrapeResponseHandler;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.HttpScrapeClient;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.ScrapeUris;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TorrentScrapeStats;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerClientUriProvider;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostRateLimiter;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpTrackerClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Periodically refresh the swarm counters of every seeding torrent with scrape requests, so that seeders and leechers
+ * stay accurate between two announces without asking each tracker once per torrent.
+ * <p/>
+ * Torrents are grouped by the scrape uri of their current tracker, and each group is scraped in batches: a single
+ * http request carries up to {@code batchSize} {@code info_hash} parameters, a single udp request carries up to
+ * {@value UdpTrackerClient#MAX_SCRAPE_INFO_HASHES} info hashes. Scraping is best effort, a tracker that does not
+ * support it, or fails to answer, is simply left to the regular announces.
+ * <p/>
+ * Scrapes go through the same per host guards as announces: hosts whose circuit breaker is not closed are not
+ * scraped, and each batch takes a token from the host rate limit. When the host is out of tokens its remaining batches
+ * wait for the next round.
+ */
+@Slf4j
+public class TrackerScraper {
+    private final HttpScrapeClient httpScrapeClient;
+    private final UdpTrackerClient udpTrackerClient;
+    private final TrackerHostRateLimiter rateLimiter;
+    private final TrackerHostCircuitBreakers circuitBreakers;
+    private final long intervalMs;
+    private final int batchSize;
+    private final List<ScrapeResponseHandler> handlers = new ArrayList<>();
+    private Thread thread;
+
+    /**
+     * @param udpTrackerClient null when udp trackers are disabled, udp trackers are then never scraped
+     */
+    public TrackerScraper(final HttpScrapeClient httpScrapeClient, final UdpTrackerClient udpTrackerClient,
+                          final TrackerHostRateLimiter rateLimiter, final TrackerHostCircuitBreakers circuitBreakers,
+                          final long intervalMs, final int batchSize) {
+        Preconditions.checkNotNull(httpScrapeClient, "HttpScrapeClient must not be null");
+        Preconditions.checkNotNull(rateLimiter, "TrackerHostRateLimiter must not be null");
+        Preconditions.checkNotNull(circuitBreakers, "TrackerHostCircuitBreakers must not be null");
+        Preconditions.checkArgument(intervalMs > 0, "intervalMs must be greater than 0");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be greater than 0");
+        this.httpScrapeClient = httpScrapeClient;
+        this.udpTrackerClient = udpTrackerClient;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreakers = circuitBreakers;
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+    }
+
+    public void appendHandler(final ScrapeResponseHandler handler) {
+        this.handlers.add(handler);
+    }
+
+    /**
+     * @param announcersSupplier returns a snapshot of the currently seeding announcers, called once per scrape round
+     */
+    public void start(final Supplier<List<Announcer>> announcersSupplier) {
+        this.thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(this.intervalMs);
+                    this.scrapeAll(announcersSupplier.get());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final RuntimeException e) {
+                    log.warn("Scrape round failed", e);
+                }
+            }
+        });
+        this.thread.setName("tracker-scraper");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void stop() {
+        if (this.thread == null) {
+            return;
+        }
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        } catch (final InterruptedException ignored) {
+        } finally {
+            this.thread = null;
+        }
+    }
+
+    private void scrapeAll(final List<Announcer> announcers) throws InterruptedException {
+        final Map<URI, List<Announcer>> byScrapeUri = new LinkedHashMap<>();
+        for (final Announcer announcer : announcers) {
+            if (announcer.getLastAnnouncedAt().isEmpty()) {
+                continue;  // not started yet, the tracker has not heard of us
+            }
+            final Optional<URI> scrapeUri = ScrapeUris.toScrapeUri(announcer.getCurrentTrackerUri());
+            if (scrapeUri.isEmpty() || (TrackerClientUriProvider.isUdp(scrapeUri.get()) && this.udpTrackerClient == null)) {
+                continue;
+            }
+            byScrapeUri.computeIfAbsent(scrapeUri.get(), k -> new ArrayList<>()).add(announcer);
+        }
+
+        for (final Map.Entry<URI, List<Announcer>> tracker : byScrapeUri.entrySet()) {
+            final URI scrapeUri = tracker.getKey();
+            if (this.circuitBreakers.getWaitNanos(scrapeUri) > 0) {
+                log.debug("Not scraping {}, its host circuit breaker is not closed", scrapeUri);
+                continue;
+            }
+            final boolean udp = TrackerClientUriProvider.isUdp(scrapeUri);
+            final int size = udp ? Math.min(this.batchSize, UdpTrackerClient.MAX_SCRAPE_INFO_HASHES) : this.batchSize;
+            final List<List<Announcer>> batches = Lists.partition(tracker.getValue(), size);
+            for (int i = 0; i < batches.size(); ++i) {
+                if (this.rateLimiter.tryAcquire(scrapeUri) > 0) {
+                    log.debug("Deferring {} scrape batches of {} to the next round, the host is over its rate limit", batches.size() - i, scrapeUri);
+                    break;
+                }
+                this.scrapeBatch(scrapeUri, udp, batches.get(i));
+            }
+        }
+    }
+
+    private void scrapeBatch(final URI scrapeUri, final boolean udp, final List<Announcer> batch) throws InterruptedException {
+        final List<InfoHash> infoHashes = new ArrayList<>(batch.size());
+        batch.forEach(announcer -> infoHashes.add(announcer.getTorrentInfoHash()));
+
+        final Map<InfoHash, TorrentScrapeStats> stats;
+        try {
+            stats = udp
+                    ? this.udpTrackerClient.scrape(scrapeUri, infoHashes).get(1, TimeUnit.MINUTES)
+                    : this.httpScrapeClient.scrape(scrapeUri, infoHashes);
+        } catch (final ExecutionException e) {
+            log.debug("Failed to scrape {} torrents from {}", batch.size(), scrapeUri, e.getCause());
+            return;
+        } catch (final TimeoutException | IOException e) {
+            log.debug("Failed to scrape {} torrents from {}", batch.size(), scrapeUri, e);
+            return;
+        }
+
+        log.debug("Scraped {}/{} torrents from {}", stats.size(), batch.size(), scrapeUri);
+        for (final Announcer announcer : batch) {
+            final TorrentScrapeStats torrentStats = stats.get(announcer.getTorrentInfoHash());
+            if (torrentStats == null) {
+                continue;
+            }
+            final int seeders = Math.max(0, torrentStats.getComplete() - 1);  // -1 since we are one of them
+            final int leechers = torrentStats.getIncomplete();
+            announcer.onScrapeSuccess(seeders, leechers);
+            this.handlers.forEach(handler -> handler.onScrapeSuccess(announcer, seeders, leechers));
+        }
+    }
+}
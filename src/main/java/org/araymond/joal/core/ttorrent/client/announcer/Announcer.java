@@ -14,16 +14,19 @@ import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceDataAcce
 import org.araymond.joal.core.ttorrent.client.announcer.request.SuccessAnnounceResponse;
 import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerClient;
 import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerClientUriProvider;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHealthRegistry;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
 import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerResponseHandler;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpTrackerClient;
 
 import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 import static java.util.Optional.ofNullable;
-import static java.util.stream.Collectors.toList;
 
 @Slf4j
 public class Announcer implements AnnouncerFacade {
@@ -35,22 +38,33 @@ public class Announcer implements AnnouncerFacade {
     @Getter private final MockedTorrent torrent;
     private TrackerClient trackerClient;
     private final AnnounceDataAccessor announceDataAccessor;
+    /**
+     * The info hash as sent in the announce queries, encoded once for all the announces.
+     */
+    private final String urlEncodedInfoHash;
     private long reportedUploadBytes = 0L;
     private final float uploadRatioTarget;
 
-    Announcer(final MockedTorrent torrent, final AnnounceDataAccessor announceDataAccessor, final HttpClient httpClient, final float uploadRatioTarget) {
+    Announcer(final MockedTorrent torrent, final AnnounceDataAccessor announceDataAccessor, final HttpClient httpClient,
+              final java.net.http.HttpClient asyncHttpClient, final UdpTrackerClient udpTrackerClient, final TrackerHealthRegistry trackerHealth,
+              final TrackerHostCircuitBreakers circuitBreakers, final TrackerResponseHandler trackerResponseHandler,
+              final float uploadRatioTarget) {
         this.torrent = torrent;
-        this.trackerClient = this.buildTrackerClient(torrent, httpClient);
+        this.trackerClient = this.buildTrackerClient(torrent, httpClient, asyncHttpClient, udpTrackerClient, trackerHealth, circuitBreakers,
+                trackerResponseHandler);
         this.announceDataAccessor = announceDataAccessor;
+        this.urlEncodedInfoHash = announceDataAccessor.urlEncodeInfoHash(torrent.getTorrentInfoHash());
         this.uploadRatioTarget = uploadRatioTarget;
     }
 
-    private TrackerClient buildTrackerClient(final MockedTorrent torrent, HttpClient httpClient) {
-        final List<URI> trackerURIs = torrent.getAnnounceList().stream()  // Use a list to keep it ordered
-                .sequential()
-                .flatMap(Collection::stream)
-                .collect(toList());
-        return new TrackerClient(new TrackerClientUriProvider(trackerURIs), new TrackerResponseHandler(), httpClient);
+    private TrackerClient buildTrackerClient(final MockedTorrent torrent, final HttpClient httpClient, final java.net.http.HttpClient asyncHttpClient,
+                                             final UdpTrackerClient udpTrackerClient, final TrackerHealthRegistry trackerHealth,
+                                             final TrackerHostCircuitBreakers circuitBreakers, final TrackerResponseHandler trackerResponseHandler) {
+        // tiers are kept as-is, the uri provider walks them as described in BEP 12
+        return new TrackerClient(
+                new TrackerClientUriProvider(torrent.getAnnounceList(), udpTrackerClient != null, trackerHealth),
+                trackerResponseHandler, httpClient, asyncHttpClient, udpTrackerClient, circuitBreakers
+        );
     }
 
     @VisibleForTesting
@@ -63,33 +77,121 @@ public class Announcer implements AnnouncerFacade {
 
         try {
             this.lastAnnouncedAt = LocalDateTime.now();
-            final SuccessAnnounceResponse responseMessage = this.trackerClient.announce(
-                    this.announceDataAccessor.getHttpRequestQueryForTorrent(this.torrent.getTorrentInfoHash(), event),
-                    this.announceDataAccessor.getHttpHeadersForTorrent()
-            );
-            log.info("{} has announced successfully. Response: {} seeders, {} leechers, {}s interval",
-                    this.torrent.getTorrentInfoHash().getHumanReadable(), responseMessage.getSeeders(), responseMessage.getLeechers(), responseMessage.getInterval());
-
-            this.reportedUploadBytes = announceDataAccessor.getUploaded(this.torrent.getTorrentInfoHash());
-            this.lastKnownInterval = responseMessage.getInterval();
-            this.lastKnownLeechers = responseMessage.getLeechers();
-            this.lastKnownSeeders = responseMessage.getSeeders();
-            this.consecutiveFails = 0;  // reset failure tally
-
+            final SuccessAnnounceResponse responseMessage = this.trackerClient.isCurrentTrackerUdp()
+                    ? this.awaitUdpAnnounce(event)
+                    : this.trackerClient.announce(
+                            this.announceDataAccessor.getHttpRequestQueryForTorrent(this.torrent.getTorrentInfoHash(), this.urlEncodedInfoHash, event),
+                            this.announceDataAccessor.getHttpHeadersForTorrent()
+                    );
+            this.onAnnounceSuccess(responseMessage);
             return responseMessage;
         } catch (final Exception e) {
-            this.consecutiveFails++;
-            if (this.consecutiveFails >= 5) {  // TODO: move to config
-                log.warn("[{}] has failed to announce {} times in a row", this.torrent.getTorrentInfoHash().getHumanReadable(), this.consecutiveFails);
-                throw new TooManyAnnouncesFailedInARowException(torrent);
-            } else {
-                log.info("[{}] has failed to announce {}. time", this.torrent.getTorrentInfoHash().getHumanReadable(), this.consecutiveFails);
+            this.onAnnounceFailure();
+            throw e;
+        }
+    }
+
+    public boolean isAsyncAnnounceSupported() {
+        return this.trackerClient.isAsyncAnnounceSupported();
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #announce(RequestEvent)}. The future completes exceptionally with the same
+     * exceptions {@link #announce(RequestEvent)} would have thrown.
+     */
+    public CompletableFuture<SuccessAnnounceResponse> announceAsync(final RequestEvent event) {
+        log.debug("Attempt to announce {} for {} (async)", event.getEventName(), this.torrent.getTorrentInfoHash().getHumanReadable());
+
+        this.lastAnnouncedAt = LocalDateTime.now();
+        final CompletableFuture<SuccessAnnounceResponse> response = this.trackerClient.isCurrentTrackerUdp()
+                ? this.trackerClient.announceUdp(this.announceDataAccessor.getUdpAnnounceRequestForTorrent(this.torrent.getTorrentInfoHash(), event))
+                : this.trackerClient.announceAsync(
+                        this.announceDataAccessor.getHttpRequestQueryForTorrent(this.torrent.getTorrentInfoHash(), this.urlEncodedInfoHash, event),
+                        this.announceDataAccessor.getHttpHeadersForTorrent()
+                );
+        return response.handle((responseMessage, throwable) -> {
+            if (throwable == null) {
+                this.onAnnounceSuccess(responseMessage);
+                return responseMessage;
+            }
+            try {
+                this.onAnnounceFailure();
+            } catch (final TooManyAnnouncesFailedInARowException e) {
+                throw new CompletionException(e);
             }
+            throw throwable instanceof CompletionException ? (CompletionException) throwable : new CompletionException(throwable);
+        });
+    }
 
-            throw e;
+    private SuccessAnnounceResponse awaitUdpAnnounce(final RequestEvent event) throws AnnounceException {
+        try {
+            return this.trackerClient.announceUdp(
+                    this.announceDataAccessor.getUdpAnnounceRequestForTorrent(this.torrent.getTorrentInfoHash(), event)
+            ).get();
+        } catch (final ExecutionException e) {
+            throw e.getCause() instanceof AnnounceException
+                    ? (AnnounceException) e.getCause()
+                    : new AnnounceException(e.getCause().getMessage(), e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnnounceException("Interrupted while waiting for udp tracker", e);
         }
     }
 
+    private void onAnnounceSuccess(final SuccessAnnounceResponse responseMessage) {
+        log.info("{} has announced successfully. Response: {} seeders, {} leechers, {}s interval",
+                this.torrent.getTorrentInfoHash().getHumanReadable(), responseMessage.getSeeders(), responseMessage.getLeechers(), responseMessage.getInterval());
+
+        this.reportedUploadBytes = announceDataAccessor.getUploaded(this.torrent.getTorrentInfoHash());
+        this.lastKnownInterval = responseMessage.getInterval();
+        this.lastKnownLeechers = responseMessage.getLeechers();
+        this.lastKnownSeeders = responseMessage.getSeeders();
+        this.consecutiveFails = 0;  // reset failure tally
+    }
+
+    /**
+     * Refresh the swarm counters from a scrape, the announce interval and the failure tally are left untouched.
+     */
+    public void onScrapeSuccess(final int seeders, final int leechers) {
+        this.lastKnownSeeders = seeders;
+        this.lastKnownLeechers = leechers;
+    }
+
+    /**
+     * The torrent has stopped and left the client, the peer id and key kept for it can be forgotten.
+     */
+    public void onUnregistered() {
+        this.announceDataAccessor.onTorrentUnregistered(this.torrent.getTorrentInfoHash());
+    }
+
+    private void onAnnounceFailure() throws TooManyAnnouncesFailedInARowException {
+        this.consecutiveFails++;
+        if (this.consecutiveFails >= 5) {  // TODO: move to config
+            log.warn("[{}] has failed to announce {} times in a row", this.torrent.getTorrentInfoHash().getHumanReadable(), this.consecutiveFails);
+            throw new TooManyAnnouncesFailedInARowException(torrent);
+        } else {
+            log.info("[{}] has failed to announce {}. time", this.torrent.getTorrentInfoHash().getHumanReadable(), this.consecutiveFails);
+        }
+    }
+
+    public URI getCurrentTrackerUri() {
+        return this.trackerClient.getCurrentTrackerUri();
+    }
+
+    /**
+     * @see TrackerClient#selectReachableTracker()
+     */
+    public long selectReachableTracker() {
+        return this.trackerClient.selectReachableTracker();
+    }
+
+    /**
+     * @see TrackerClient#acquireCurrentTracker()
+     */
+    public long acquireCurrentTracker() {
+        return this.trackerClient.acquireCurrentTracker();
+    }
+
     @Override
     public Optional<Integer> getLastKnownLeechers() {
         return ofNullable(lastKnownLeechers);
@@ -5,14 +5,36 @@ import org.apache.http.client.HttpClient;
 import org.araymond.joal.core.config.AppConfiguration;
 import org.araymond.joal.core.torrent.torrent.MockedTorrent;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceDataAccessor;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHealthRegistry;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerResponseHandler;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpTrackerClient;
 
 @RequiredArgsConstructor
 public class AnnouncerFactory {
     private final AnnounceDataAccessor announceDataAccessor;
     private final HttpClient httpClient;
     private final AppConfiguration appConfiguration;
+    /**
+     * Non-blocking client used for the announces when not null, see {@link AppConfiguration#isAsyncHttpAnnounce()}.
+     */
+    private final java.net.http.HttpClient asyncHttpClient;
+    /**
+     * Client used for the udp:// trackers, when null udp trackers are ignored, see {@link AppConfiguration#isUdpTrackerEnabled()}.
+     */
+    private final UdpTrackerClient udpTrackerClient;
+    /**
+     * Latency and failure scores of the trackers, shared by all the announcers to rank the trackers of each tier.
+     */
+    private final TrackerHealthRegistry trackerHealth;
+    /**
+     * Circuit breakers of the tracker hosts, shared by all the announcers.
+     */
+    private final TrackerHostCircuitBreakers circuitBreakers;
 
     public Announcer create(final MockedTorrent torrent) {
-        return new Announcer(torrent, this.announceDataAccessor, httpClient, appConfiguration.getUploadRatioTarget());
+        return new Announcer(torrent, this.announceDataAccessor, httpClient, asyncHttpClient, udpTrackerClient, trackerHealth, circuitBreakers,
+                new TrackerResponseHandler(appConfiguration.getMaxTrackerResponseBytes()),
+                appConfiguration.getUploadRatioTarget());
     }
 }
@@ -6,6 +6,7 @@ import org.araymond.joal.core.bandwith.BandwidthDispatcherFacade;
 import org.araymond.joal.core.client.emulated.BitTorrentClient;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 import org.araymond.joal.core.ttorrent.client.ConnectionHandler;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.UdpAnnounceRequest;
 
 import java.util.Map;
 import java.util.Set;
@@ -17,8 +18,23 @@ public class AnnounceDataAccessor {
     private final BandwidthDispatcherFacade bandwidthDispatcher;
     private final ConnectionHandler connectionHandler;
 
-    public String getHttpRequestQueryForTorrent(final InfoHash infoHash, final RequestEvent event) {
-        return this.bitTorrentClient.createRequestQuery(event, infoHash, this.bandwidthDispatcher.getSeedStatForTorrent(infoHash), this.connectionHandler);
+    /**
+     * @param urlEncodedInfoHash the info hash encoded by {@link #urlEncodeInfoHash(InfoHash)}, once per torrent
+     */
+    public String getHttpRequestQueryForTorrent(final InfoHash infoHash, final String urlEncodedInfoHash, final RequestEvent event) {
+        return this.bitTorrentClient.createRequestQuery(event, infoHash, urlEncodedInfoHash, this.bandwidthDispatcher.getSeedStatForTorrent(infoHash), this.connectionHandler);
+    }
+
+    public String urlEncodeInfoHash(final InfoHash infoHash) {
+        return this.bitTorrentClient.urlEncodeInfoHash(infoHash);
+    }
+
+    public UdpAnnounceRequest getUdpAnnounceRequestForTorrent(final InfoHash infoHash, final RequestEvent event) {
+        return this.bitTorrentClient.createUdpAnnounceRequest(event, infoHash, this.bandwidthDispatcher.getSeedStatForTorrent(infoHash), this.connectionHandler);
+    }
+
+    public void onTorrentUnregistered(final InfoHash infoHash) {
+        this.bitTorrentClient.onTorrentUnregistered(infoHash);
     }
 
     public Set<Map.Entry<String, String>> getHttpHeadersForTorrent() {
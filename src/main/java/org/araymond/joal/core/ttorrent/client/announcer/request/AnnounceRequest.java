@@ -4,12 +4,12 @@ import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.R
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
-import org.araymond.joal.core.ttorrent.client.DelayQueue;
+import org.araymond.joal.core.ttorrent.client.DelayScheduler;
 import org.araymond.joal.core.ttorrent.client.announcer.Announcer;
 
 @RequiredArgsConstructor
 @Getter
-public final class AnnounceRequest implements DelayQueue.InfoHashAble {
+public final class AnnounceRequest implements DelayScheduler.InfoHashAble {
 
     private final Announcer announcer;
     private final RequestEvent event;
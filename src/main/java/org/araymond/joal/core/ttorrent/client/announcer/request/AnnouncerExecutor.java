@@ -4,6 +4,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.araymond.joal.core.config.AnnouncerExecutorMode;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 import org.araymond.joal.core.ttorrent.client.announcer.Announcer;
 import org.araymond.joal.core.ttorrent.client.announcer.exceptions.TooManyAnnouncesFailedInARowException;
@@ -11,31 +12,106 @@ import org.araymond.joal.core.ttorrent.client.announcer.response.AnnounceRespons
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.Optional.ofNullable;
 import static java.util.stream.Collectors.toSet;
 
 @Slf4j
 public class AnnouncerExecutor {
+    /**
+     * In-flight cap applied to the virtual threads when none is configured: the connections per tracker of the http
+     * client pool. A virtual thread waiting for a pooled connection pins its carrier thread (httpcore 4 waits inside a
+     * synchronized block), once all the carriers are pinned the announces holding the connections never complete.
+     */
+    static final int DEFAULT_VIRTUAL_MAX_IN_FLIGHT_ANNOUNCES = 100;
 
     private final AnnounceResponseCallback announceResponseCallback;
-    private final ThreadPoolExecutor executorService;
+    private final ExecutorService executorService;
     private final Map<InfoHash, AnnouncerWithFuture> currentlyRunning;
+    /**
+     * Global cap on in-flight announces (blocking and asynchronous), null when unlimited. Permits are only taken by
+     * {@link #tryExecute(AnnounceRequest)}, never waited for.
+     */
+    private final Semaphore inFlightPermits;
 
-    public AnnouncerExecutor(final AnnounceResponseCallback announceResponseCallback) {
+    /**
+     * @param mode                 {@link AnnouncerExecutorMode#VIRTUAL} runs each announce on its own virtual thread when the
+     *                             JVM supports it, and falls back to the platform pool otherwise
+     * @param platformPoolSize     number of threads of the platform pool
+     * @param maxInFlightAnnounces maximum number of announces started and not completed at the same time, 0 for unlimited
+     *                             on the platform pool and {@link #DEFAULT_VIRTUAL_MAX_IN_FLIGHT_ANNOUNCES} on virtual threads
+     */
+    public AnnouncerExecutor(final AnnounceResponseCallback announceResponseCallback, final AnnouncerExecutorMode mode,
+                             final int platformPoolSize, final int maxInFlightAnnounces) {
         this.announceResponseCallback = announceResponseCallback;
+        final Optional<ExecutorService> virtualExecutor = mode == AnnouncerExecutorMode.VIRTUAL
+                ? VirtualThreads.newThreadPerTaskExecutor("announcer-virtual-")
+                : Optional.empty();
+        if (mode == AnnouncerExecutorMode.VIRTUAL && virtualExecutor.isEmpty()) {
+            log.warn("Virtual threads are not available on this JVM (requires Java 21+), falling back to a pool of {} platform threads", platformPoolSize);
+        }
+        this.executorService = virtualExecutor.orElseGet(() -> newPlatformExecutor(platformPoolSize));
+        this.currentlyRunning = new ConcurrentHashMap<>();
+        final int inFlightCap = virtualExecutor.isPresent() && maxInFlightAnnounces == 0 ? DEFAULT_VIRTUAL_MAX_IN_FLIGHT_ANNOUNCES : maxInFlightAnnounces;
+        this.inFlightPermits = inFlightCap > 0 ? new Semaphore(inFlightCap) : null;
+    }
+
+    private static ExecutorService newPlatformExecutor(final int poolSize) {
         // From javadoc :
         //   Unbounded queues. Using an unbounded queue (for example a LinkedBlockingQueue without a predefined capacity) will cause new tasks to wait in
         //   the queue when all corePoolSize threads are busy. Thus, no more than corePoolSize threads will ever be created. (And the value of the
         //   maximumPoolSize therefore doesn't have any effect.) This may be appropriate when each task is completely independent of others, so tasks
         //   cannot affect each others execution
-        final int corePoolSize = 3;
         final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("annnouncer-%d").build();
-        this.executorService = new ThreadPoolExecutor(corePoolSize, 3, 40, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), threadFactory);
-        this.currentlyRunning = new ConcurrentHashMap<>();
+        return new ThreadPoolExecutor(poolSize, poolSize, 40, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), threadFactory);
+    }
+
+    /**
+     * Whether {@link #tryExecute(AnnounceRequest)} would start an announce now. Only {@link #tryExecute(AnnounceRequest)}
+     * takes the permits, so the answer holds until the caller thread calls it.
+     */
+    public boolean hasInFlightCapacity() {
+        return this.inFlightPermits == null || this.inFlightPermits.availablePermits() > 0;
+    }
+
+    /**
+     * Start the announce, unless the in-flight cap is reached. Never blocks.
+     *
+     * @return false if the announce has not been started, the caller is expected to try again a bit later
+     * @see #execute(AnnounceRequest)
+     */
+    public boolean tryExecute(final AnnounceRequest request) {
+        final InFlightPermit permit;
+        if (this.inFlightPermits == null) {
+            permit = InFlightPermit.UNCOUNTED;
+        } else if (this.inFlightPermits.tryAcquire()) {
+            permit = new InFlightPermit(this.inFlightPermits);
+        } else {
+            return false;
+        }
+        this.execute(request, permit);
+        return true;
     }
 
+    /**
+     * Start the announce even if the in-flight cap is reached, for the announces that can not be postponed (the stop
+     * announces sent while the client shuts down).
+     * <p/>
+     * Announce on the executor threads, or through the non-blocking http client when the announcer supports it:
+     * in that case nothing waits for the tracker, the callback is invoked by the http client once the response
+     * (or the failure) arrives.
+     */
     public void execute(final AnnounceRequest request) {
+        this.execute(request, InFlightPermit.UNCOUNTED);
+    }
+
+    private void execute(final AnnounceRequest request, final InFlightPermit permit) {
+        if (request.getAnnouncer().isAsyncAnnounceSupported()) {
+            this.executeAsync(request, permit);
+            return;
+        }
+
         final Runnable task = () -> {
             try {
                 announceResponseCallback.onAnnounceWillAnnounce(request.getEvent(), request.getAnnouncer());
@@ -46,6 +122,7 @@ public class AnnouncerExecutor {
             } catch (final Throwable throwable) {
                 announceResponseCallback.onAnnounceFailure(request.getEvent(), request.getAnnouncer(), throwable);
             } finally {
+                permit.release();
                 this.currentlyRunning.remove(request.getAnnouncer().getTorrentInfoHash());
             }
         };
@@ -53,13 +130,46 @@ public class AnnouncerExecutor {
         final Future<?> taskFuture = this.executorService.submit(task);
         this.currentlyRunning.put(
                 request.getAnnouncer().getTorrentInfoHash(),
-                new AnnouncerWithFuture(request.getAnnouncer(), taskFuture)
+                new AnnouncerWithFuture(request.getAnnouncer(), taskFuture, permit)
         );
     }
 
+    private void executeAsync(final AnnounceRequest request, final InFlightPermit permit) {
+        final Announcer announcer = request.getAnnouncer();
+        final CompletableFuture<SuccessAnnounceResponse> future;
+        try {
+            announceResponseCallback.onAnnounceWillAnnounce(request.getEvent(), announcer);
+            future = announcer.announceAsync(request.getEvent());
+        } catch (final Throwable throwable) {
+            permit.release();
+            announceResponseCallback.onAnnounceFailure(request.getEvent(), announcer, throwable);
+            return;
+        }
+
+        // register before attaching the completion stage: if the future is already done, the stage runs right away
+        this.currentlyRunning.put(announcer.getTorrentInfoHash(), new AnnouncerWithFuture(announcer, future, permit));
+        future.whenComplete((result, throwable) -> {
+            permit.release();
+            this.currentlyRunning.remove(announcer.getTorrentInfoHash());
+            if (future.isCancelled()) {
+                return;  // denied, the caller took over this announcer
+            }
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if (cause == null) {
+                announceResponseCallback.onAnnounceSuccess(request.getEvent(), announcer, result);
+            } else if (cause instanceof TooManyAnnouncesFailedInARowException) {
+                announceResponseCallback.onTooManyAnnounceFailedInARow(request.getEvent(), announcer, (TooManyAnnouncesFailedInARowException) cause);
+            } else {
+                announceResponseCallback.onAnnounceFailure(request.getEvent(), announcer, cause);
+            }
+        });
+    }
+
     public Optional<Announcer> deny(final InfoHash infoHash) {
         return ofNullable(this.currentlyRunning.remove(infoHash)).map(announcerFuture -> {
             announcerFuture.getFuture().cancel(true);
+            // a task cancelled before it started never releases its permit
+            announcerFuture.getPermit().release();
             return announcerFuture.getAnnouncer();
         });
     }
@@ -72,11 +182,21 @@ public class AnnouncerExecutor {
     }
 
     public void awaitForRunningTasks() {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
         this.executorService.shutdown();
         try {
             if (!this.executorService.awaitTermination(10, TimeUnit.SECONDS)) {
                 log.warn("AnnouncerExecutor timed out after 10s");
             }
+            // asynchronous announces are not tracked by the executor service
+            for (final AnnouncerWithFuture running : new ArrayList<>(this.currentlyRunning.values())) {
+                try {
+                    running.getFuture().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (final ExecutionException | CancellationException ignored) {
+                }
+            }
+        } catch (final TimeoutException e) {
+            log.warn("AnnouncerExecutor timed out after 10s waiting for asynchronous announces");
         } catch (final InterruptedException e) {
             log.warn("AnnouncerExecutor interrupt", e);
         }
@@ -87,5 +207,26 @@ public class AnnouncerExecutor {
     private static final class AnnouncerWithFuture {
         private final Announcer announcer;
         private final Future<?> future;
+        private final InFlightPermit permit;
+    }
+
+    /**
+     * Released once, whichever of the completion of the announce or its denial comes first.
+     */
+    private static final class InFlightPermit {
+        private static final InFlightPermit UNCOUNTED = new InFlightPermit(null);
+
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private InFlightPermit(final Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        private void release() {
+            if (this.semaphore != null && this.released.compareAndSet(false, true)) {
+                this.semaphore.release();
+            }
+        }
     }
 }
@@ -0,0 +1,38 @@
+package org.araymond.joal.core.ttorrent.client.announcer.request;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads API (Java 21+) through reflection, the project still targets Java 11.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+final class VirtualThreads {
+
+    /**
+     * Equivalent of {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())}.
+     *
+     * @return an empty optional if the running JVM has no virtual threads
+     */
+    static Optional<ExecutorService> newThreadPerTaskExecutor(final String namePrefix) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            final ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+            final Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return Optional.of((ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory));
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            log.debug("Virtual threads are not available", e);
+            return Optional.empty();
+        }
+    }
+}
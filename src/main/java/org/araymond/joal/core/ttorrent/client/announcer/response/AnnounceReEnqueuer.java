@@ -3,20 +3,29 @@ package org.araymond.joal.core.ttorrent.client.announcer.response;
 import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.araymond.joal.core.ttorrent.client.DelayQueue;
+import org.araymond.joal.core.ttorrent.client.DelayScheduler;
 import org.araymond.joal.core.ttorrent.client.announcer.Announcer;
 import org.araymond.joal.core.ttorrent.client.announcer.exceptions.TooManyAnnouncesFailedInARowException;
 import org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceRequest;
 import org.araymond.joal.core.ttorrent.client.announcer.request.SuccessAnnounceResponse;
 
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static org.araymond.joal.core.ttorrent.client.announcer.request.AnnounceRequest.*;
 
+/**
+ * Re-enqueue the announcers after each announce, according to the interval given by the tracker.
+ * <p/>
+ * A random positive jitter of at most {@code jitterPercent} of the interval is added to each re-enqueue, so that
+ * torrents started at the same time do not keep re-announcing in lockstep. The jitter only ever delays the announce,
+ * the tracker interval is always honored.
+ */
 @RequiredArgsConstructor
 @Slf4j
 public class AnnounceReEnqueuer implements AnnounceResponseHandler {
-    private final DelayQueue<AnnounceRequest> delayQueue;
+    private final DelayScheduler<AnnounceRequest> delayQueue;
+    private final int jitterPercent;
 
     @Override
     public void onAnnouncerWillAnnounce(final Announcer announcer, final RequestEvent event) {
@@ -26,25 +35,25 @@ public class AnnounceReEnqueuer implements AnnounceResponseHandler {
     @Override
     public void onAnnounceStartSuccess(final Announcer announcer, final SuccessAnnounceResponse result) {
         log.debug("Enqueue torrent {} in regular queue", announcer.getTorrentInfoHash().getHumanReadable());
-        this.delayQueue.addOrReplace(createRegular(announcer), result.getInterval(), ChronoUnit.SECONDS);
+        this.enqueueWithJitter(createRegular(announcer), result.getInterval());
     }
 
     @Override
     public void onAnnounceStartFails(final Announcer announcer, final Throwable throwable) {
         log.debug("Enqueue torrent {} in start queue once again (because it failed)", announcer.getTorrentInfoHash().getHumanReadable());
-        this.delayQueue.addOrReplace(createStart(announcer), announcer.getLastKnownInterval(), ChronoUnit.SECONDS);
+        this.enqueueWithJitter(createStart(announcer), announcer.getLastKnownInterval());
     }
 
     @Override
     public void onAnnounceRegularSuccess(final Announcer announcer, final SuccessAnnounceResponse result) {
         log.debug("Enqueue torrent {} in regular queue", announcer.getTorrentInfoHash().getHumanReadable());
-        this.delayQueue.addOrReplace(createRegular(announcer), result.getInterval(), ChronoUnit.SECONDS);
+        this.enqueueWithJitter(createRegular(announcer), result.getInterval());
     }
 
     @Override
     public void onAnnounceRegularFails(final Announcer announcer, final Throwable throwable) {
         log.debug("Enqueue torrent {} in regular queue once again (because it failed)", announcer.getTorrentInfoHash().getHumanReadable());
-        this.delayQueue.addOrReplace(createRegular(announcer), announcer.getLastKnownInterval(), ChronoUnit.SECONDS);
+        this.enqueueWithJitter(createRegular(announcer), announcer.getLastKnownInterval());
     }
 
     @Override
@@ -62,4 +71,11 @@ public class AnnounceReEnqueuer implements AnnounceResponseHandler {
     public void onTooManyAnnounceFailedInARow(final Announcer announcer, final TooManyAnnouncesFailedInARowException e) {
         // noop
     }
+
+    private void enqueueWithJitter(final AnnounceRequest request, final int intervalInSeconds) {
+        final long intervalMs = intervalInSeconds * 1000L;
+        final long maxJitterMs = intervalMs * this.jitterPercent / 100;
+        final long jitterMs = maxJitterMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(maxJitterMs + 1);
+        this.delayQueue.addOrReplace(request, (int) Math.min(Integer.MAX_VALUE, intervalMs + jitterMs), ChronoUnit.MILLIS);
+    }
 }
@@ -11,7 +11,7 @@ import org.araymond.joal.core.ttorrent.client.announcer.request.SuccessAnnounceR
 
 @RequiredArgsConstructor
 @Slf4j
-public class BandwidthDispatcherNotifier implements AnnounceResponseHandler {
+public class BandwidthDispatcherNotifier implements AnnounceResponseHandler, ScrapeResponseHandler {
     private final BandwidthDispatcher bandwidthDispatcher;
 
     @Override
@@ -60,4 +60,10 @@ public class BandwidthDispatcherNotifier implements AnnounceResponseHandler {
         log.debug("Unregister [{}] from bandwidth dispatcher", announcer.getTorrentInfoHash().getHumanReadable());
         this.bandwidthDispatcher.unregisterTorrent(announcer.getTorrentInfoHash());
     }
+
+    @Override
+    public void onScrapeSuccess(final Announcer announcer, final int seeders, final int leechers) {
+        log.debug("Update [{}] stats in bandwidth dispatcher from scrape", announcer.getTorrentInfoHash().getHumanReadable());
+        this.bandwidthDispatcher.updateTorrentPeers(announcer.getTorrentInfoHash(), seeders, leechers);
+    }
 }
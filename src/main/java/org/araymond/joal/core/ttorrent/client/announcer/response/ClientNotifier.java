@@ -15,7 +15,7 @@ import org.araymond.joal.core.ttorrent.client.announcer.request.SuccessAnnounceR
  */
 @Slf4j
 @RequiredArgsConstructor
-public class ClientNotifier implements AnnounceResponseHandler {
+public class ClientNotifier implements AnnounceResponseHandler, ScrapeResponseHandler {
     private final Client client;
 
     /**
@@ -92,4 +92,15 @@ public class ClientNotifier implements AnnounceResponseHandler {
         log.debug("Notify client that a torrent has failed too many times");
         this.client.onTooManyFailedInARow(announcer);
     }
+
+    /**
+     * Appelé quand un scrape entre deux announces a réussi. Archive si plus de seeders/leechers, sans attendre
+     * le prochain announce.
+     */
+    @Override
+    public void onScrapeSuccess(final Announcer announcer, final int seeders, final int leechers) {
+        if (seeders < 1 || leechers < 1) {
+            this.client.onNoMorePeers(announcer.getTorrentInfoHash());
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package org.araymond.joal.core.ttorrent.client.announcer.response;
+
+import org.araymond.joal.core.ttorrent.client.announcer.Announcer;
+
+/**
+ * Notified with the swarm counters gathered by a scrape between two announces of a torrent.
+ */
+public interface ScrapeResponseHandler {
+    /**
+     * @param seeders  number of seeders, not counting us
+     * @param leechers number of leechers
+     */
+    void onScrapeSuccess(Announcer announcer, int seeders, int leechers);
+}
@@ -0,0 +1,146 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal pull parser over a bencoded buffer. Values are read in document order, and the caller can skip the ones it
+ * does not care about without materializing them.
+ * <p/>
+ * Unlike {@link com.turn.ttorrent.bcodec.BDecoder}, dictionary keys are exposed as raw bytes: scrape responses are
+ * keyed by binary info hashes, which do not survive a round trip through an UTF-8 string.
+ */
+class BencodeReader {
+    private final ByteBuffer buffer;
+
+    BencodeReader(final ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    boolean isDictionary() throws IOException {
+        return this.peek() == 'd';
+    }
+
+    boolean isInteger() throws IOException {
+        return this.peek() == 'i';
+    }
+
+    boolean isString() throws IOException {
+        final byte b = this.peek();
+        return b >= '0' && b <= '9';
+    }
+
+    void beginDictionary() throws IOException {
+        this.expect('d');
+    }
+
+    void beginList() throws IOException {
+        this.expect('l');
+    }
+
+    /**
+     * @return true if the current dictionary or list has more entries, consumes the end marker otherwise
+     */
+    boolean hasNext() throws IOException {
+        if (this.peek() == 'e') {
+            this.buffer.get();
+            return false;
+        }
+        return true;
+    }
+
+    long readLong() throws IOException {
+        this.expect('i');
+        final long value = this.readDecimal('e');
+        this.buffer.get();
+        return value;
+    }
+
+    byte[] readBytes() throws IOException {
+        final int length = this.readStringLength();
+        final byte[] bytes = new byte[length];
+        this.buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read a string that is expected to be a short ascii key, such as a dictionary key.
+     */
+    String readAsciiString() throws IOException {
+        return new String(this.readBytes(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Read a free text string, such as a tracker failure reason.
+     */
+    String readUtf8String() throws IOException {
+        final int length = this.readStringLength();
+        final String value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(), length, StandardCharsets.UTF_8);
+        this.buffer.position(this.buffer.position() + length);
+        return value;
+    }
+
+    void skipValue() throws IOException {
+        final byte type = this.peek();
+        if (type == 'i') {
+            this.readLong();
+        } else if (type == 'l' || type == 'd') {
+            this.buffer.get();
+            while (this.hasNext()) {
+                this.skipValue();
+            }
+        } else {
+            final int length = this.readStringLength();
+            this.buffer.position(this.buffer.position() + length);
+        }
+    }
+
+    private int readStringLength() throws IOException {
+        final long length = this.readDecimal(':');
+        this.buffer.get();
+        if (length < 0 || length > this.buffer.remaining()) {
+            throw new IOException("Invalid bencoded string length " + length);
+        }
+        return (int) length;
+    }
+
+    private long readDecimal(final char terminator) throws IOException {
+        boolean negative = false;
+        long value = 0;
+        int digits = 0;
+        while (true) {
+            final byte b = this.peek();
+            if (b == terminator) {
+                break;
+            }
+            this.buffer.get();
+            if (b == '-' && digits == 0 && !negative) {
+                negative = true;
+            } else if (b >= '0' && b <= '9' && digits < 19) {
+                value = value * 10 + (b - '0');
+                digits++;
+            } else {
+                throw new IOException("Invalid bencoded number near position " + this.buffer.position());
+            }
+        }
+        if (digits == 0) {
+            throw new IOException("Empty bencoded number near position " + this.buffer.position());
+        }
+        return negative ? -value : value;
+    }
+
+    private byte peek() throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            throw new IOException("Unexpected end of bencoded data");
+        }
+        return this.buffer.get(this.buffer.position());
+    }
+
+    private void expect(final char expected) throws IOException {
+        if (this.peek() != expected) {
+            throw new IOException("Expected '" + expected + "' near position " + this.buffer.position());
+        }
+        this.buffer.get();
+    }
+}
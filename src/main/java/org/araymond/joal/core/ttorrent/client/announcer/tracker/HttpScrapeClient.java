@@ -0,0 +1,135 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.araymond.joal.core.torrent.torrent.MockedTorrent;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Scrape many torrents of a tracker in a single http request, by repeating the {@code info_hash} parameter.
+ * <p/>
+ * Responses larger than {@code maxResponseBytes} are rejected, like announce responses.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class HttpScrapeClient {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final HttpClient httpClient;
+    private final Iterable<Map.Entry<String, String>> headers;
+    private final int maxResponseBytes;
+
+    /**
+     * @return the stats of the torrents the tracker knows about, torrents it does not know are simply absent
+     */
+    public Map<InfoHash, TorrentScrapeStats> scrape(final URI scrapeUri, final Collection<InfoHash> infoHashes) throws IOException {
+        final StringBuilder url = new StringBuilder(scrapeUri.toString());
+        char separator = scrapeUri.getRawQuery() == null ? '?' : '&';
+        for (final InfoHash infoHash : infoHashes) {
+            url.append(separator).append("info_hash=");
+            appendPercentEncoded(url, infoHash.value().getBytes(MockedTorrent.BYTE_ENCODING));
+            separator = '&';
+        }
+
+        final HttpGet request = new HttpGet(url.toString());
+        String host = scrapeUri.getHost();
+        if (scrapeUri.getPort() != -1) {
+            host += ":" + scrapeUri.getPort();
+        }
+        request.addHeader(HttpHeaders.HOST, host);
+        this.headers.forEach(hdrEntry -> request.addHeader(hdrEntry.getKey(), hdrEntry.getValue()));
+
+        final HttpResponse response = this.httpClient.execute(request);
+        final HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new IOException("No response from tracker " + scrapeUri);
+        }
+        if (entity.getContentLength() > this.maxResponseBytes) {
+            throw new IOException("Scrape response of " + scrapeUri + " is too large (" + entity.getContentLength() + " bytes)");
+        }
+        final byte[] body;
+        try (final InputStream content = entity.getContent()) {
+            // one byte past the cap is enough to tell an oversized response
+            body = content.readNBytes((int) Math.min(this.maxResponseBytes + 1L, Integer.MAX_VALUE));
+        }
+        if (body.length > this.maxResponseBytes) {
+            throw new IOException("Scrape response of " + scrapeUri + " is larger than " + this.maxResponseBytes + " bytes");
+        }
+        if (response.getStatusLine().getStatusCode() >= 300) {
+            throw new IOException("Tracker " + scrapeUri + " answered status " + response.getStatusLine().getStatusCode() + " to scrape");
+        }
+        return parse(body);
+    }
+
+    /**
+     * Read {@code d5:filesd<20 bytes hash>d8:completei..e10:downloadedi..e10:incompletei..eeee}, a failure reason is
+     * reported as an {@link IOException}.
+     */
+    static Map<InfoHash, TorrentScrapeStats> parse(final byte[] body) throws IOException {
+        final BencodeReader reader = new BencodeReader(ByteBuffer.wrap(body));
+        final Map<InfoHash, TorrentScrapeStats> stats = new HashMap<>();
+        reader.beginDictionary();
+        while (reader.hasNext()) {
+            final String key = reader.readAsciiString();
+            if ("failure reason".equals(key)) {
+                throw new IOException("Tracker refused scrape: " + new String(reader.readBytes(), MockedTorrent.BYTE_ENCODING));
+            }
+            if (!"files".equals(key) || !reader.isDictionary()) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginDictionary();
+            while (reader.hasNext()) {
+                final byte[] infoHash = reader.readBytes();
+                int complete = 0;
+                int incomplete = 0;
+                int downloaded = 0;
+                reader.beginDictionary();
+                while (reader.hasNext()) {
+                    final String field = reader.readAsciiString();
+                    if (!reader.isInteger()) {
+                        reader.skipValue();
+                    } else if ("complete".equals(field)) {
+                        complete = (int) reader.readLong();
+                    } else if ("incomplete".equals(field)) {
+                        incomplete = (int) reader.readLong();
+                    } else if ("downloaded".equals(field)) {
+                        downloaded = (int) reader.readLong();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                if (infoHash.length == 20) {
+                    stats.put(new InfoHash(infoHash), new TorrentScrapeStats(complete, incomplete, downloaded));
+                } else {
+                    log.debug("Ignoring scrape entry with a {} bytes info hash", infoHash.length);
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static void appendPercentEncoded(final StringBuilder sb, final byte[] bytes) {
+        for (final byte b : bytes) {
+            final int c = b & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~') {
+                sb.append((char) c);
+            } else {
+                sb.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+    }
+}
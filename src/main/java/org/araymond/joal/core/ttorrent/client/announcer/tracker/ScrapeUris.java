@@ -0,0 +1,46 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ScrapeUris {
+
+    /**
+     * Derive the scrape uri of a tracker from its announce uri, using the convention every tracker follows: the last
+     * path segment must start with {@code announce}, which is replaced by {@code scrape}
+     * (ie: {@code http://t.org/x/announce.php?k=v} becomes {@code http://t.org/x/scrape.php?k=v}).
+     * UDP trackers scrape on the same address they announce on.
+     *
+     * @return an empty optional if the tracker does not support scraping
+     */
+    public static Optional<URI> toScrapeUri(final URI announceUri) {
+        if (announceUri == null || announceUri.getScheme() == null) {
+            return Optional.empty();
+        }
+        if (TrackerClientUriProvider.isUdp(announceUri)) {
+            return Optional.of(announceUri);
+        }
+        final String path = announceUri.getRawPath();
+        if (path == null) {
+            return Optional.empty();
+        }
+        final int lastSlash = path.lastIndexOf('/');
+        if (!path.startsWith("announce", lastSlash + 1)) {
+            return Optional.empty();
+        }
+        final String scrapePath = path.substring(0, lastSlash + 1) + "scrape" + path.substring(lastSlash + 1 + "announce".length());
+        try {
+            return Optional.of(new URI(
+                    announceUri.getScheme() + "://" + announceUri.getRawAuthority() + scrapePath
+                            + (announceUri.getRawQuery() == null ? "" : "?" + announceUri.getRawQuery())
+            ));
+        } catch (final URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket refilled at a constant rate, based on the monotonic {@link System#nanoTime()} clock.
+ * <p/>
+ * A request that finds no token still takes one in advance (the balance goes negative) and is told how long to wait
+ * for it. Requests delayed together are therefore spread at the bucket rate instead of all coming back at once.
+ * Requests that are dropped rather than delayed use {@link #tryTake(long)}, which never goes into debt.
+ * A rate of 0 or less means unlimited.
+ */
+class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder delayed = new LongAdder();
+
+    TokenBucket(final double requestsPerSecond, final long now) {
+        this.tokensPerNano = requestsPerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1d, requestsPerSecond);
+        this.tokens = this.capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Take a token.
+     *
+     * @return 0 if the request is admitted right away, otherwise the number of nanoseconds after which the token
+     * taken in advance becomes available.
+     */
+    synchronized long reserve(final long now) {
+        if (this.tokensPerNano <= 0) {
+            this.admitted.increment();
+            return 0;
+        }
+        this.refill(now);
+        this.tokens -= 1;
+        if (this.tokens >= 0) {
+            this.admitted.increment();
+            return 0;
+        }
+        this.delayed.increment();
+        return (long) Math.ceil(-this.tokens / this.tokensPerNano);
+    }
+
+    /**
+     * Take a token only if one is available.
+     *
+     * @return 0 if a token was taken, otherwise the number of nanoseconds after which one becomes available. Nothing
+     * is taken in that case.
+     */
+    synchronized long tryTake(final long now) {
+        if (this.tokensPerNano <= 0) {
+            this.admitted.increment();
+            return 0;
+        }
+        this.refill(now);
+        if (this.tokens >= 1) {
+            this.tokens -= 1;
+            this.admitted.increment();
+            return 0;
+        }
+        this.delayed.increment();
+        return (long) Math.ceil((1 - this.tokens) / this.tokensPerNano);
+    }
+
+    private void refill(final long now) {
+        final long elapsed = now - this.lastRefill;
+        if (elapsed > 0) {
+            this.tokens = Math.min(this.capacity, this.tokens + elapsed * this.tokensPerNano);
+            this.lastRefill = now;
+        }
+    }
+
+    /**
+     * Count a request that was delayed earlier and comes back with the token it reserved.
+     */
+    void countAdmitted() {
+        this.admitted.increment();
+    }
+
+    long getAdmitted() {
+        return this.admitted.sum();
+    }
+
+    long getDelayed() {
+        return this.delayed.sum();
+    }
+}
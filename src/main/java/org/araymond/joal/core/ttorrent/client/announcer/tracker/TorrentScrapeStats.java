@@ -0,0 +1,20 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Swarm counters of a torrent, as returned by a tracker scrape.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class TorrentScrapeStats {
+    /**
+     * Number of seeders, including us.
+     */
+    private final int complete;
+    private final int incomplete;
+    private final int downloaded;
+}
@@ -0,0 +1,33 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The few fields of an http announce response that are of any use to us, the peer lists are never decoded.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class TrackerAnnounceResponse {
+    /**
+     * Reason given by the tracker to refuse the announce, null for a successful announce.
+     */
+    private final String failureReason;
+    private final int interval;
+    /**
+     * 0 when the tracker did not send any.
+     */
+    private final int minInterval;
+    private final int complete;
+    private final int incomplete;
+
+    static TrackerAnnounceResponse failure(final String failureReason) {
+        return new TrackerAnnounceResponse(failureReason, 0, 0, 0, 0);
+    }
+
+    public boolean isFailure() {
+        return this.failureReason != null;
+    }
+}
@@ -1,11 +1,9 @@
 package org.araymond.joal.core.ttorrent.client.announcer.tracker;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
 import com.turn.ttorrent.client.announce.AnnounceException;
-import com.turn.ttorrent.common.protocol.TrackerMessage;
-import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceResponseMessage;
-import com.turn.ttorrent.common.protocol.TrackerMessage.ErrorMessage;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
@@ -16,61 +14,245 @@ import org.apache.http.client.methods.HttpUriRequest;
 import org.araymond.joal.core.ttorrent.client.announcer.request.SuccessAnnounceResponse;
 import org.springframework.http.HttpHeaders;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
 
-@RequiredArgsConstructor
+@Slf4j
 public class TrackerClient {
+    /**
+     * Headers that {@link java.net.http.HttpClient} refuses to let the caller set, it manages them itself.
+     */
+    private static final Set<String> ASYNC_RESTRICTED_HEADERS = ImmutableSet.of("connection", "content-length", "expect", "host", "upgrade");
+    private static final Duration ASYNC_REQUEST_TIMEOUT = Duration.ofSeconds(15);
+
     private final TrackerClientUriProvider trackerClientUriProvider;
-    private final ResponseHandler<TrackerMessage> trackerResponseHandler;
+    private final TrackerResponseHandler trackerResponseHandler;
     private final HttpClient httpClient;
+    private final java.net.http.HttpClient asyncHttpClient;
+    private final UdpTrackerClient udpTrackerClient;
+    private final TrackerHostCircuitBreakers circuitBreakers;
+    private final Map<URI, AnnounceTarget> announceTargets = new ConcurrentHashMap<>();
+
+    /**
+     * @param asyncHttpClient  client used by {@link #announceAsync(String, Iterable)}, may be null to only allow
+     *                         blocking http announces
+     * @param udpTrackerClient client used for the udp:// trackers, may be null if the uri provider only holds http
+     *                         trackers
+     * @param circuitBreakers  breakers of the tracker hosts, shared by all the tracker clients
+     */
+    public TrackerClient(final TrackerClientUriProvider trackerClientUriProvider, final TrackerResponseHandler trackerResponseHandler,
+                         final HttpClient httpClient, final java.net.http.HttpClient asyncHttpClient, final UdpTrackerClient udpTrackerClient,
+                         final TrackerHostCircuitBreakers circuitBreakers) {
+        this.trackerClientUriProvider = trackerClientUriProvider;
+        this.trackerResponseHandler = trackerResponseHandler;
+        this.httpClient = httpClient;
+        this.asyncHttpClient = asyncHttpClient;
+        this.udpTrackerClient = udpTrackerClient;
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * The tracker the next announce will be sent to.
+     */
+    public URI getCurrentTrackerUri() {
+        return this.trackerClientUriProvider.get();
+    }
+
+    /**
+     * Make the first tracker of the announce-list, starting from the current one, whose host circuit breaker lets
+     * announces through the current tracker. Trackers on an unreachable host are skipped like BEP 12 skips the
+     * trackers that fail, but without waiting for their timeouts nor counting them as failed.
+     *
+     * @return 0 if the current tracker can be announced to, otherwise every tracker of the torrent is on an
+     * unreachable host and this is the delay in nanoseconds after which one of them may be tried again
+     */
+    public long selectReachableTracker() {
+        return this.trackerClientUriProvider.moveToFirstAvailable(this.circuitBreakers::getWaitNanos);
+    }
+
+    /**
+     * Claim the right to announce to the current tracker, see {@link TrackerHostCircuitBreakers#tryAcquire(URI)}.
+     *
+     * @return 0 if the announce can be sent now, otherwise the delay in nanoseconds after which it can be tried again
+     */
+    public long acquireCurrentTracker() {
+        return this.circuitBreakers.tryAcquire(this.trackerClientUriProvider.get());
+    }
+
+    /**
+     * UDP announces are always asynchronous, http ones only when a non-blocking http client is available.
+     */
+    public boolean isAsyncAnnounceSupported() {
+        return this.asyncHttpClient != null || this.isCurrentTrackerUdp();
+    }
+
+    public boolean isCurrentTrackerUdp() {
+        return TrackerClientUriProvider.isUdp(this.trackerClientUriProvider.get());
+    }
+
+    /**
+     * Announce to the current tracker, which must be an udp:// one (see {@link #isCurrentTrackerUdp()}).
+     * The returned future completes exceptionally with an {@link AnnounceException} when the announce fails.
+     */
+    public CompletableFuture<SuccessAnnounceResponse> announceUdp(final UdpAnnounceRequest request) {
+        if (this.udpTrackerClient == null) {
+            throw new IllegalStateException("No udp tracker client configured");
+        }
+        final URI baseUri = this.trackerClientUriProvider.get();
+        final long startedAt = System.nanoTime();
+        return this.udpTrackerClient.announce(baseUri, request)
+                .handle((response, throwable) -> {
+                    if (throwable == null) {
+                        this.circuitBreakers.recordSuccess(baseUri);
+                        this.trackerClientUriProvider.onSuccess(baseUri, System.nanoTime() - startedAt);
+                        final int seeders = Math.max(0, response.getSeeders() - 1);  // -1 seeders since we are one of them
+                        return new SuccessAnnounceResponse(response.getInterval(), seeders, response.getLeechers());
+                    }
+                    final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    final AnnounceException e;
+                    if (cause instanceof AnnounceException) {
+                        this.circuitBreakers.recordSuccess(baseUri);  // the tracker answered, to refuse the announce
+                        e = (AnnounceException) cause;
+                    } else {
+                        this.circuitBreakers.recordFailure(baseUri);
+                        e = new AnnounceException("Failed to announce: " + cause.getMessage(), cause);
+                    }
+                    throw new CompletionException(this.moveToNextTracker(baseUri, e));
+                });
+    }
 
     public SuccessAnnounceResponse announce(final String requestQuery, final Iterable<Map.Entry<String, String>> headers) throws AnnounceException {
         final URI baseUri = this.trackerClientUriProvider.get();
-        final TrackerMessage responseMessage;
+        final long startedAt = System.nanoTime();
+        final TrackerAnnounceResponse responseMessage;
 
         try {
             responseMessage = this.makeCallAndGetResponseAsByteBuffer(baseUri, requestQuery, headers);
+        } catch (final AnnounceException e) {
+            this.circuitBreakers.recordFailure(baseUri);
+            throw this.moveToNextTracker(baseUri, e);
+        }
+        // the host is reachable, even if it answers with an error
+        this.circuitBreakers.recordSuccess(baseUri);
+        try {
+            this.ensureIsNotAnError(baseUri, responseMessage);
+        } catch (final AnnounceException e) {
+            throw this.moveToNextTracker(baseUri, e);
+        }
+
+        final SuccessAnnounceResponse successResponse = this.toSuccessResponse(responseMessage);
+        this.trackerClientUriProvider.onSuccess(baseUri, System.nanoTime() - startedAt);
+        return successResponse;
+    }
 
-            if (responseMessage instanceof ErrorMessage) {
-                final ErrorMessage error = (ErrorMessage) responseMessage;
-                throw new AnnounceException(baseUri + ": " + error.getReason());
+    /**
+     * Non-blocking counterpart of {@link #announce(String, Iterable)}: the request is sent through the NIO based
+     * {@link java.net.http.HttpClient}, no thread waits for the tracker to answer. The returned future completes
+     * exceptionally with an {@link AnnounceException} when the announce fails.
+     */
+    public CompletableFuture<SuccessAnnounceResponse> announceAsync(final String requestQuery, final Iterable<Map.Entry<String, String>> headers) {
+        if (this.asyncHttpClient == null) {
+            throw new IllegalStateException("No asynchronous http client configured");
+        }
+        final URI baseUri = this.trackerClientUriProvider.get();
+        final long startedAt = System.nanoTime();
+        final HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(this.announceTargetOf(baseUri).requestUri(requestQuery)))
+                .GET()
+                .version(java.net.http.HttpClient.Version.HTTP_1_1)
+                .timeout(ASYNC_REQUEST_TIMEOUT);
+        headers.forEach(hdrEntry -> {
+            if (!ASYNC_RESTRICTED_HEADERS.contains(hdrEntry.getKey().toLowerCase())) {
+                request.header(hdrEntry.getKey(), hdrEntry.getValue());
             }
-        } catch (final AnnounceException e) {
-            // If the request has failed we need to move to the next tracker.
-            try {
-                this.trackerClientUriProvider.moveToNext();
-            } catch (final NoMoreUriAvailableException e1) {
-                throw new AnnounceException("No more valid tracker for torrent", e1);
+        });
+
+        return this.asyncHttpClient.sendAsync(request.build(), BodyHandlers.ofByteArray())
+                .handle((response, throwable) -> {
+                    final TrackerAnnounceResponse responseMessage;
+                    try {
+                        if (throwable != null) {
+                            throw new AnnounceException("Failed to announce: error or connection aborted", throwable);
+                        }
+                        responseMessage = this.parseAsyncResponse(response);
+                    } catch (final AnnounceException e) {
+                        this.circuitBreakers.recordFailure(baseUri);
+                        throw new CompletionException(this.moveToNextTracker(baseUri, e));
+                    }
+                    // the host is reachable, even if it answers with an error
+                    this.circuitBreakers.recordSuccess(baseUri);
+                    try {
+                        this.ensureIsNotAnError(baseUri, responseMessage);
+                    } catch (final AnnounceException e) {
+                        throw new CompletionException(this.moveToNextTracker(baseUri, e));
+                    }
+                    final SuccessAnnounceResponse successResponse = this.toSuccessResponse(responseMessage);
+                    this.trackerClientUriProvider.onSuccess(baseUri, System.nanoTime() - startedAt);
+                    return successResponse;
+                });
+    }
+
+    private TrackerAnnounceResponse parseAsyncResponse(final java.net.http.HttpResponse<byte[]> response) throws AnnounceException {
+        if (response.statusCode() >= 300) {
+            log.warn("Tracker response is an error: status {}", response.statusCode());
+        }
+        try {
+            byte[] body = response.body();
+            // unlike the blocking client, java.net.http does not transparently decompress the body
+            if (response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).map("gzip"::equalsIgnoreCase).orElse(false)) {
+                try (final InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = gzip.readAllBytes();
+                }
             }
-            throw new AnnounceException(e.getMessage(), e);
+            return this.trackerResponseHandler.parse(body);
+        } catch (final IOException e) {
+            throw new AnnounceException("Failed to handle tracker response: " + e.getMessage(), e);
         }
+    }
 
-        if (!(responseMessage instanceof AnnounceResponseMessage)) {
-            throw new AnnounceException("Unexpected tracker message type [" + responseMessage.getType().name() + "]!");
+    private void ensureIsNotAnError(final URI baseUri, final TrackerAnnounceResponse responseMessage) throws AnnounceException {
+        if (responseMessage.isFailure()) {
+            throw new AnnounceException(baseUri + ": " + responseMessage.getFailureReason());
         }
+    }
 
-        final AnnounceResponseMessage announceResponseMessage = (AnnounceResponseMessage) responseMessage;
+    /**
+     * If the request has failed we need to move to the next tracker.
+     */
+    private AnnounceException moveToNextTracker(final URI baseUri, final AnnounceException e) {
+        try {
+            this.trackerClientUriProvider.onFailure(baseUri);
+        } catch (final NoMoreUriAvailableException e1) {
+            return new AnnounceException("No more valid tracker for torrent", e1);
+        }
+        return new AnnounceException(e.getMessage(), e);
+    }
 
-        final int interval = announceResponseMessage.getInterval();
+    private SuccessAnnounceResponse toSuccessResponse(final TrackerAnnounceResponse announceResponseMessage) {
+        // never announce more often than the tracker allows
+        final int interval = Math.max(announceResponseMessage.getInterval(), announceResponseMessage.getMinInterval());
         final int seeders = Math.max(0, announceResponseMessage.getComplete() - 1);  // -1 seeders since we are one of them; TODO: not the case while we're downloading though, right? not too sure about that..
         final int leechers = announceResponseMessage.getIncomplete();
         return new SuccessAnnounceResponse(interval, seeders, leechers);
     }
 
     @VisibleForTesting
-    TrackerMessage makeCallAndGetResponseAsByteBuffer(final URI announceUri, final String requestQuery,
-                                                      final Iterable<Map.Entry<String, String>> headers) throws AnnounceException {
-        final String base = announceUri + (announceUri.toString().contains("?") ? "&" : "?");
-        final HttpUriRequest request = new HttpGet(base + requestQuery);
-
-        String host = announceUri.getHost();
-        if (announceUri.getPort() != -1) {
-            host += ":" + announceUri.getPort();
-        }
-        request.addHeader(HttpHeaders.HOST, host);
+    TrackerAnnounceResponse makeCallAndGetResponseAsByteBuffer(final URI announceUri, final String requestQuery,
+                                                               final Iterable<Map.Entry<String, String>> headers) throws AnnounceException {
+        final AnnounceTarget target = this.announceTargetOf(announceUri);
+        final HttpUriRequest request = new HttpGet(target.requestUri(requestQuery));
+
+        request.addHeader(HttpHeaders.HOST, target.hostHeader);
         headers.forEach(hdrEntry -> request.addHeader(hdrEntry.getKey(), hdrEntry.getValue()));
 
         final HttpResponse response;
@@ -89,6 +271,10 @@ public class TrackerClient {
         }
     }
 
+    private AnnounceTarget announceTargetOf(final URI announceUri) {
+        return this.announceTargets.computeIfAbsent(announceUri, AnnounceTarget::new);
+    }
+
     private <T> T handleResponse(final HttpResponse response, final ResponseHandler<T> handler) throws ClientProtocolException, IOException {
         try {
             return handler.handleResponse(response);
@@ -103,4 +289,26 @@ public class TrackerClient {
             }
         }
     }
+
+    /**
+     * The parts of an announce request that only depend on the tracker uri, built once per tracker: only the query is
+     * appended for each announce.
+     */
+    private static final class AnnounceTarget {
+        /**
+         * The announce uri, followed by the separator of the announce query.
+         */
+        private final String base;
+        private final String hostHeader;
+
+        private AnnounceTarget(final URI announceUri) {
+            final String uri = announceUri.toString();
+            this.base = uri + (uri.contains("?") ? "&" : "?");
+            this.hostHeader = announceUri.getPort() == -1 ? announceUri.getHost() : announceUri.getHost() + ":" + announceUri.getPort();
+        }
+
+        private String requestUri(final String requestQuery) {
+            return this.base.concat(requestQuery);
+        }
+    }
 }
@@ -1,47 +1,186 @@
 package org.araymond.joal.core.ttorrent.client.announcer.tracker;
 
-import com.google.common.collect.Iterators;
 import lombok.SneakyThrows;
 
 import java.net.URI;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
 
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toCollection;
 
+/**
+ * Tracker selection following BEP 12 (multitracker metadata extension): trackers are grouped in tiers, tiers are
+ * tried in order, and within a tier the tracker that answered successfully is moved to the front.
+ * <p/>
+ * Instead of the random shuffle suggested by BEP 12, the trackers of a tier are ordered by their score in the shared
+ * {@link TrackerHealthRegistry} (moving average of latency and failure rate), so the fastest healthy tracker is tried
+ * first. After a successful announce the next one goes to the first healthy tracker in tier order, which brings the
+ * torrent back to an upper tier once it recovers. After a failure the next tracker in tier order is tried, all the
+ * tiers are ranked again once every tracker has been tried.
+ */
 public class TrackerClientUriProvider {
-    private final Iterator<URI> addressIterator;
-    private URI currentURI = null;
+    private final List<List<URI>> tiers;
+    private final TrackerHealthRegistry trackerHealth;
+    private int tierIndex;
+    private int uriIndex;
+    private volatile URI currentURI = null;
 
-    @SneakyThrows
     public TrackerClientUriProvider(@SuppressWarnings("TypeMayBeWeakened") final List<URI> trackersURI) {
-        List<URI> trackers = trackersURI.stream()
-                .filter(uri -> uri.getScheme().startsWith("http"))
-                .collect(toList());
+        this(singletonList(trackersURI), false, new TrackerHealthRegistry());
+    }
 
-        if (trackers.isEmpty()) {
-            throw new NoMoreUriAvailableException("No valid http trackers provided");
+    /**
+     * @param tiers     the announce-list of the torrent
+     * @param acceptUdp keep the udp:// trackers, otherwise only http(s) trackers are used
+     */
+    @SneakyThrows
+    public TrackerClientUriProvider(final List<List<URI>> tiers, final boolean acceptUdp, final TrackerHealthRegistry trackerHealth) {
+        this.trackerHealth = trackerHealth;
+        this.tiers = new ArrayList<>();
+        for (final List<URI> tier : tiers) {
+            final List<URI> trackers = tier.stream()
+                    .filter(uri -> uri.getScheme() != null)
+                    .filter(uri -> uri.getScheme().startsWith("http") || (acceptUdp && isUdp(uri)))
+                    .distinct()
+                    .collect(toCollection(ArrayList::new));
+            if (!trackers.isEmpty()) {
+                this.tiers.add(trackers);
+            }
+        }
+
+        if (this.tiers.isEmpty()) {
+            throw new NoMoreUriAvailableException(acceptUdp ? "No valid http or udp trackers provided" : "No valid http trackers provided");
         }
 
         // TODO: sorted(new PreferHTTPSComparator())
-        this.addressIterator = Iterators.cycle(trackers);
-        this.currentURI = this.addressIterator.next(); // initialize state
+        this.rankTiers();
+        this.moveTo(0, 0); // initialize state
+    }
+
+    static boolean isUdp(final URI uri) {
+        return "udp".equalsIgnoreCase(uri.getScheme());
     }
 
     URI get() {
         return this.currentURI;
     }
 
-    void deleteCurrentAndMoveToNext() throws NoMoreUriAvailableException {
-        this.addressIterator.remove();
+    /**
+     * Record the successful announce, move the tracker to the front of its tier and select the tracker of the next
+     * announce: the first healthy one in tier order, or this one if none is.
+     */
+    synchronized void onSuccess(final URI uri, final long latencyNanos) {
+        this.trackerHealth.recordSuccess(uri, latencyNanos);
+        for (final List<URI> tier : this.tiers) {
+            final int index = tier.indexOf(uri);
+            if (index > 0) {
+                tier.remove(index);
+                tier.add(0, uri);
+            }
+        }
+        for (int t = 0; t < this.tiers.size(); t++) {
+            final List<URI> tier = this.tiers.get(t);
+            for (int u = 0; u < tier.size(); u++) {
+                if (tier.get(u).equals(uri) || this.trackerHealth.isHealthy(tier.get(u))) {
+                    this.moveTo(t, u);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the failed announce, and move to the next tracker if the failed one is still the current one.
+     */
+    synchronized void onFailure(final URI uri) throws NoMoreUriAvailableException {
+        this.trackerHealth.recordFailure(uri);
+        if (uri.equals(this.currentURI)) {
+            this.moveToNext();
+        }
+    }
+
+    /**
+     * Move to the first tracker, in tier order starting from the current one, that can be announced to right now.
+     * The skipped trackers are not recorded as failed: they have not been tried.
+     *
+     * @param waitNanosOf how long the announces to a tracker have to wait, 0 if it can be announced to now
+     * @return 0 if such a tracker was found, otherwise the current tracker is left unchanged and this is the shortest
+     * wait among all the trackers
+     */
+    synchronized long moveToFirstAvailable(final ToLongFunction<URI> waitNanosOf) {
+        long shortestWait = Long.MAX_VALUE;
+        int t = this.tierIndex;
+        int u = this.uriIndex;
+        final int trackerCount = this.tiers.stream().mapToInt(List::size).sum();
+        for (int i = 0; i < trackerCount; i++) {
+            final long wait = waitNanosOf.applyAsLong(this.tiers.get(t).get(u));
+            if (wait <= 0) {
+                this.moveTo(t, u);
+                return 0;
+            }
+            shortestWait = Math.min(shortestWait, wait);
+            if (++u == this.tiers.get(t).size()) {
+                u = 0;
+                t = (t + 1) % this.tiers.size();
+            }
+        }
+        return shortestWait;
+    }
+
+    synchronized void deleteCurrentAndMoveToNext() throws NoMoreUriAvailableException {
+        final List<URI> tier = this.tiers.get(this.tierIndex);
+        tier.remove(this.uriIndex);
+        if (tier.isEmpty()) {
+            this.tiers.remove(this.tierIndex);
+        }
+        if (this.tiers.isEmpty()) {
+            throw new NoMoreUriAvailableException("No more valid tracker URIs left");
+        }
+        // the next tracker took the place of the deleted one
+        this.uriIndex--;
+        if (tier.isEmpty()) {
+            this.tierIndex--;
+            this.uriIndex = this.tierIndex < 0 ? -1 : this.tiers.get(this.tierIndex).size() - 1;
+        }
         this.moveToNext();
     }
 
-    void moveToNext() throws NoMoreUriAvailableException {
-        if (!this.addressIterator.hasNext()) {
+    synchronized void moveToNext() throws NoMoreUriAvailableException {
+        if (this.tiers.isEmpty()) {
             throw new NoMoreUriAvailableException("No more valid tracker URIs left");
         }
-        this.currentURI = this.addressIterator.next();
+        if (this.tierIndex >= 0 && this.uriIndex + 1 < this.tiers.get(this.tierIndex).size()) {
+            this.moveTo(this.tierIndex, this.uriIndex + 1);
+        } else if (this.tierIndex + 1 < this.tiers.size()) {
+            this.moveTo(this.tierIndex + 1, 0);
+        } else {
+            // every tracker has been tried, start over with fresh rankings
+            this.rankTiers();
+            this.moveTo(0, 0);
+        }
+    }
+
+    /**
+     * Scores are read once before sorting: other announcers keep updating the shared registry, and a comparator whose
+     * results change during the sort breaks its contract.
+     */
+    private void rankTiers() {
+        for (final List<URI> tier : this.tiers) {
+            final Map<URI, Double> scores = new HashMap<>(tier.size() * 2);
+            tier.forEach(uri -> scores.put(uri, this.trackerHealth.getScore(uri)));
+            tier.sort(Comparator.comparingDouble(scores::get));
+        }
+    }
+
+    private void moveTo(final int tierIndex, final int uriIndex) {
+        this.tierIndex = tierIndex;
+        this.uriIndex = uriIndex;
+        this.currentURI = this.tiers.get(tierIndex).get(uriIndex);
     }
 
 }
@@ -0,0 +1,84 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health of every tracker uri, shared by all the torrents: a dead mirror discovered by one torrent is avoided by
+ * the others too.
+ * <p/>
+ * Each uri keeps an exponentially weighted moving average of its announce latency and of its failure rate (1 for a
+ * failed announce, 0 for a successful one). Both are combined into a single score, lower is better, used by
+ * {@link TrackerClientUriProvider} to order the trackers of a tier.
+ */
+public class TrackerHealthRegistry {
+    /**
+     * Weight of the latest sample in the moving averages.
+     */
+    private static final double ALPHA = 0.3;
+    /**
+     * Cost of a failure in the score, in milliseconds: an always failing tracker ranks like a tracker answering in
+     * 15 seconds, the time an announce waits before giving up.
+     */
+    private static final double FAILURE_PENALTY_MS = 15_000;
+    /**
+     * Above this failure rate a tracker is considered unhealthy, one failure of a fresh tracker is enough.
+     */
+    private static final double UNHEALTHY_FAILURE_RATE = 0.25;
+    /**
+     * Unhealthy trackers get another chance once their last failure is that old.
+     */
+    private static final long RETRY_UNHEALTHY_AFTER_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    private final Map<URI, TrackerHealth> healthByUri = new ConcurrentHashMap<>();
+
+    public void recordSuccess(final URI uri, final long latencyNanos) {
+        this.healthByUri.computeIfAbsent(uri, k -> new TrackerHealth()).recordSuccess(latencyNanos);
+    }
+
+    public void recordFailure(final URI uri) {
+        this.healthByUri.computeIfAbsent(uri, k -> new TrackerHealth()).recordFailure(System.nanoTime());
+    }
+
+    /**
+     * Trackers never used yet score 0, so that they are tried before the known ones.
+     */
+    public double getScore(final URI uri) {
+        final TrackerHealth health = this.healthByUri.get(uri);
+        return health == null ? 0 : health.score();
+    }
+
+    public boolean isHealthy(final URI uri) {
+        final TrackerHealth health = this.healthByUri.get(uri);
+        return health == null || health.isHealthy(System.nanoTime());
+    }
+
+    private static final class TrackerHealth {
+        private double latencyMs;
+        private double failureRate;
+        private boolean hasLatency;
+        private long lastFailureAt;
+
+        private synchronized void recordSuccess(final long latencyNanos) {
+            final double sample = latencyNanos / 1_000_000D;
+            this.latencyMs = this.hasLatency ? ALPHA * sample + (1 - ALPHA) * this.latencyMs : sample;
+            this.hasLatency = true;
+            this.failureRate = (1 - ALPHA) * this.failureRate;
+        }
+
+        private synchronized void recordFailure(final long now) {
+            this.failureRate = ALPHA + (1 - ALPHA) * this.failureRate;
+            this.lastFailureAt = now;
+        }
+
+        private synchronized double score() {
+            return this.latencyMs + this.failureRate * FAILURE_PENALTY_MS;
+        }
+
+        private synchronized boolean isHealthy(final long now) {
+            return this.failureRate < UNHEALTHY_FAILURE_RATE || now - this.lastFailureAt > RETRY_UNHEALTHY_AFTER_NANOS;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * State of the circuit breaker of a tracker host.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class TrackerHostCircuitBreakerState {
+    private final String host;
+    private final TrackerHostCircuitBreakers.State state;
+    private final int consecutiveFailures;
+    /**
+     * Time left before the next probe is let through, 0 when closed.
+     */
+    private final long retryInMs;
+}
@@ -0,0 +1,178 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import com.google.common.base.Preconditions;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * One circuit breaker per tracker host, shared by all the {@link TrackerClient}s: when a tracker host goes down, the
+ * torrents it serves stop hitting it together instead of each one burning its own failures and timeouts.
+ * <ul>
+ *     <li>CLOSED: announces go through, {@code failureThreshold} consecutive transport failures open the breaker.</li>
+ *     <li>OPEN: announces are not sent, {@link #tryAcquire(URI)} tells the caller how long to wait.</li>
+ *     <li>HALF_OPEN: once the open duration has elapsed, a single announce is let through as a probe. Its success
+ *     closes the breaker, its failure opens it again. If the probe never reports back, another one is let through
+ *     after the open duration. Meanwhile the other announces are told to come back shortly, to go through as soon as
+ *     the probe has closed the breaker rather than a whole open duration later.</li>
+ * </ul>
+ * Only transport failures count: a tracker answering with a failure reason is reachable.
+ * <p/>
+ * Announcers use {@link #getWaitNanos(URI)} to skip the trackers of their announce-list that are on an unreachable
+ * host, and only call {@link #tryAcquire(URI)} for the tracker they are about to announce to.
+ */
+public class TrackerHostCircuitBreakers {
+    private static final long PROBE_OUTCOME_POLL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final Consumer<TrackerHostCircuitBreakerState> stateListener;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold consecutive failures opening a breaker, 0 disables the breakers
+     * @param stateListener    notified of every state transition
+     */
+    public TrackerHostCircuitBreakers(final int failureThreshold, final long openDurationMillis,
+                                      final Consumer<TrackerHostCircuitBreakerState> stateListener) {
+        Preconditions.checkArgument(failureThreshold >= 0, "failureThreshold must be at least 0");
+        Preconditions.checkArgument(openDurationMillis > 0, "openDurationMillis must be greater than 0");
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Ask to announce to the given tracker.
+     *
+     * @return 0 if the announce can be sent now, otherwise the delay in nanoseconds after which it can be tried again
+     */
+    public long tryAcquire(final URI trackerUri) {
+        final CircuitBreaker breaker = this.breakerOf(trackerUri);
+        return breaker == null ? 0 : breaker.tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Same answer as {@link #tryAcquire(URI)}, without letting the caller through as the probe of an open host.
+     *
+     * @return 0 if an announce to the given tracker would be let through now, otherwise the delay in nanoseconds
+     * after which it can be tried again
+     */
+    public long getWaitNanos(final URI trackerUri) {
+        final CircuitBreaker breaker = this.breakerOf(trackerUri);
+        return breaker == null ? 0 : breaker.getWaitNanos(System.nanoTime());
+    }
+
+    public void recordSuccess(final URI trackerUri) {
+        final CircuitBreaker breaker = this.breakerOf(trackerUri);
+        if (breaker != null) {
+            breaker.recordSuccess();
+        }
+    }
+
+    public void recordFailure(final URI trackerUri) {
+        final CircuitBreaker breaker = this.breakerOf(trackerUri);
+        if (breaker != null) {
+            breaker.recordFailure(System.nanoTime());
+        }
+    }
+
+    public List<TrackerHostCircuitBreakerState> getStates() {
+        return this.breakers.values().stream()
+                .map(CircuitBreaker::snapshot)
+                .collect(toList());
+    }
+
+    private CircuitBreaker breakerOf(final URI trackerUri) {
+        final String host = trackerUri == null ? null : trackerUri.getHost();
+        if (this.failureThreshold == 0 || host == null) {
+            return null;
+        }
+        return this.breakers.computeIfAbsent(host.toLowerCase(), CircuitBreaker::new);
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final class CircuitBreaker {
+        private final String host;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long retryAt;  // System.nanoTime() based, compare with subtraction
+
+        private CircuitBreaker(final String host) {
+            this.host = host;
+        }
+
+        private long tryAcquire(final long now) {
+            final TrackerHostCircuitBreakerState transition;
+            synchronized (this) {
+                final long wait = this.getWaitNanos(now);
+                if (this.state == State.CLOSED || wait > 0) {
+                    return wait;
+                }
+                // the caller is the probe, everybody else waits for its outcome
+                this.retryAt = now + openDurationNanos;
+                if (this.state == State.HALF_OPEN) {
+                    return 0;  // the previous probe never reported back
+                }
+                transition = this.transitionTo(State.HALF_OPEN);
+            }
+            stateListener.accept(transition);
+            return 0;
+        }
+
+        private synchronized long getWaitNanos(final long now) {
+            if (this.state == State.CLOSED) {
+                return 0;
+            }
+            final long wait = Math.max(0, this.retryAt - now);
+            // the probe in flight may close the breaker at any time
+            return this.state == State.HALF_OPEN ? Math.min(wait, PROBE_OUTCOME_POLL_NANOS) : wait;
+        }
+
+        private void recordSuccess() {
+            final TrackerHostCircuitBreakerState transition;
+            synchronized (this) {
+                this.consecutiveFailures = 0;
+                if (this.state == State.CLOSED) {
+                    return;
+                }
+                transition = this.transitionTo(State.CLOSED);
+            }
+            stateListener.accept(transition);
+        }
+
+        private void recordFailure(final long now) {
+            final TrackerHostCircuitBreakerState transition;
+            synchronized (this) {
+                this.consecutiveFailures++;
+                if (this.state == State.OPEN || (this.state == State.CLOSED && this.consecutiveFailures < failureThreshold)) {
+                    return;
+                }
+                this.retryAt = now + openDurationNanos;
+                transition = this.transitionTo(State.OPEN);
+            }
+            stateListener.accept(transition);
+        }
+
+        private TrackerHostCircuitBreakerState transitionTo(final State state) {
+            this.state = state;
+            return this.snapshot();
+        }
+
+        private synchronized TrackerHostCircuitBreakerState snapshot() {
+            final long retryInMs = this.state == State.CLOSED ? 0 : Math.max(0, TimeUnit.NANOSECONDS.toMillis(this.retryAt - System.nanoTime()));
+            return new TrackerHostCircuitBreakerState(this.host, this.state, this.consecutiveFailures, retryInMs);
+        }
+    }
+}
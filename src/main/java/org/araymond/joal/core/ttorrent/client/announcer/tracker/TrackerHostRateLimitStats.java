@@ -0,0 +1,18 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Number of announces admitted and delayed by the rate limiter of a tracker host.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class TrackerHostRateLimitStats {
+    private final String host;
+    private final double requestsPerSecond;
+    private final long admittedCount;
+    private final long delayedCount;
+}
@@ -0,0 +1,101 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import com.google.common.base.Preconditions;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Per tracker host token bucket, checked before an announce is handed to the executor.
+ * <p/>
+ * Rates are configured in requests per second per hostname, the {@value #ANY_HOST} entry applies to every host
+ * that has no rate of its own. Hosts without any rate are never limited, but their announces are still counted.
+ * <p/>
+ * This class does not block: when a host is over budget {@link #reserve(InfoHash, URI)} returns the delay after which
+ * the announce may be sent, and the caller is expected to re-schedule it. The token is taken in advance, so the
+ * announce is admitted without being counted twice when it comes back.
+ * <p/>
+ * Scrapes are charged to the same buckets through {@link #tryAcquire(URI)}, which takes nothing when the host is over
+ * budget: the scrape is simply left for a later round.
+ */
+public class TrackerHostRateLimiter {
+    public static final String ANY_HOST = "*";
+
+    private final Map<String, Double> requestsPerSecondByHost;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Set<InfoHash> reservations = ConcurrentHashMap.newKeySet();
+
+    public TrackerHostRateLimiter(final Map<String, Double> requestsPerSecondByHost) {
+        Preconditions.checkNotNull(requestsPerSecondByHost, "requestsPerSecondByHost must not be null");
+        this.requestsPerSecondByHost = new ConcurrentHashMap<>();
+        requestsPerSecondByHost.forEach((host, rate) -> this.requestsPerSecondByHost.put(host.toLowerCase(), rate));
+    }
+
+    /**
+     * Take a token for an announce of the torrent to the given tracker.
+     *
+     * @return 0 if the announce can be sent now, otherwise the delay in nanoseconds before it can be sent
+     */
+    public long reserve(final InfoHash infoHash, final URI trackerUri) {
+        final String host = trackerUri == null ? null : trackerUri.getHost();
+        if (host == null) {
+            return 0;
+        }
+        final TokenBucket bucket = this.bucketOf(host);
+        if (this.reservations.remove(infoHash)) {
+            bucket.countAdmitted();
+            return 0;
+        }
+        final long waitNanos = bucket.reserve(System.nanoTime());
+        if (waitNanos > 0) {
+            this.reservations.add(infoHash);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Take a token for a request to the given tracker only if one is available now.
+     *
+     * @return 0 if the request can be sent now, otherwise the delay in nanoseconds before a token is available
+     */
+    public long tryAcquire(final URI trackerUri) {
+        final String host = trackerUri == null ? null : trackerUri.getHost();
+        if (host == null) {
+            return 0;
+        }
+        return this.bucketOf(host).tryTake(System.nanoTime());
+    }
+
+    /**
+     * Forget the token taken in advance for a torrent, if any (the torrent has been removed meanwhile).
+     */
+    public void release(final InfoHash infoHash) {
+        this.reservations.remove(infoHash);
+    }
+
+    public List<TrackerHostRateLimitStats> getStats() {
+        return this.buckets.entrySet().stream()
+                .map(e -> new TrackerHostRateLimitStats(
+                        e.getKey(), this.getRequestsPerSecond(e.getKey()), e.getValue().getAdmitted(), e.getValue().getDelayed()
+                ))
+                .collect(toList());
+    }
+
+    private TokenBucket bucketOf(final String host) {
+        return this.buckets.computeIfAbsent(
+                host.toLowerCase(),
+                h -> new TokenBucket(this.getRequestsPerSecond(h), System.nanoTime())
+        );
+    }
+
+    private double getRequestsPerSecond(final String host) {
+        final Double rate = this.requestsPerSecondByHost.getOrDefault(host, this.requestsPerSecondByHost.get(ANY_HOST));
+        return rate == null ? 0 : rate;
+    }
+}
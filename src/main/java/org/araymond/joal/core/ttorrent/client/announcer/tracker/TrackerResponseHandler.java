@@ -1,50 +1,156 @@
 package org.araymond.joal.core.ttorrent.client.announcer.tracker;
 
+import com.google.common.base.Preconditions;
 import com.turn.ttorrent.client.announce.AnnounceException;
-import com.turn.ttorrent.common.protocol.TrackerMessage;
-import com.turn.ttorrent.common.protocol.http.HTTPTrackerMessage;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ResponseHandler;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * Read the announce responses of http trackers.
+ * <p/>
+ * The body is streamed into a buffer taken from a small shared pool, reused from one announce to the other, then a
+ * {@link BencodeReader} pulls {@code interval}, {@code min interval}, {@code complete}, {@code incomplete} and
+ * {@code failure reason} out of it. Every other entry, {@code peers} and {@code peers6} included, is skipped without
+ * being decoded. Responses larger than the configured cap are rejected.
+ */
 @Slf4j
-public class TrackerResponseHandler implements ResponseHandler<TrackerMessage> {
+public class TrackerResponseHandler implements ResponseHandler<TrackerAnnounceResponse> {
+    private static final int DEFAULT_BUFFER_SIZE = 4 * 1024;
+    /**
+     * Buffers grown above this size for an unusually large response are not kept for the next announce.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Shared by all the announcer threads rather than kept per thread: on the virtual-thread executor each announce
+     * runs on a new thread, which would never reuse its buffer. Concurrent announces beyond the pool size allocate their
+     * own buffer, and only as many as the pool can hold are kept afterward.
+     */
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private final int maxResponseBytes;
+
+    public TrackerResponseHandler(final int maxResponseBytes) {
+        Preconditions.checkArgument(maxResponseBytes > 0, "maxResponseBytes must be greater than 0");
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
     @Override
-    public TrackerMessage handleResponse(final HttpResponse response) throws IOException {
+    public TrackerAnnounceResponse handleResponse(final HttpResponse response) throws IOException {
         final HttpEntity entity = response.getEntity();
         if (entity == null) {
             final String message = "No response from tracker";
             throw new IOException(message, new AnnounceException(message));
         }
 
-        final int contentLength = entity.getContentLength() < 1 ? 1024 : (int) entity.getContentLength();
-        try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(contentLength)) {
-            if (response.getStatusLine().getStatusCode() >= 300) {
-                log.warn("Tracker response is an error: status {}", response.getStatusLine().getStatusCode());
-            }
+        if (response.getStatusLine().getStatusCode() >= 300) {
+            log.warn("Tracker response is an error: status {}", response.getStatusLine().getStatusCode());
+        }
+        if (entity.getContentLength() > this.maxResponseBytes) {
+            final String message = "Tracker response is too large (" + entity.getContentLength() + " bytes)";
+            throw new IOException(message, new AnnounceException(message));
+        }
 
-            try {
-                entity.writeTo(outputStream);
+        final byte[] pooled = BUFFERS.poll();
+        byte[] buffer = pooled == null ? new byte[DEFAULT_BUFFER_SIZE] : pooled;
+        try {
+            int length = 0;
+            try (final InputStream content = entity.getContent()) {
+                int read;
+                while ((read = content.read(buffer, length, buffer.length - length)) != -1) {
+                    length += read;
+                    if (length > this.maxResponseBytes) {
+                        final String message = "Tracker response is larger than " + this.maxResponseBytes + " bytes";
+                        throw new IOException(message, new AnnounceException(message));
+                    }
+                    if (length == buffer.length) {
+                        // one byte past the cap is enough to tell an oversized response
+                        buffer = Arrays.copyOf(buffer, (int) Math.min(this.maxResponseBytes + 1L, buffer.length * 2L));
+                    }
+                }
             } catch (final IOException e) {
+                if (e.getCause() instanceof AnnounceException) {
+                    throw e;
+                }
                 final String message = "Failed to read tracker http response";
                 throw new IOException(message, new AnnounceException(message, e));
             }
 
-            try {
-                // Parse and handle the response
-                return HTTPTrackerMessage.parse(ByteBuffer.wrap(outputStream.toByteArray()));
-            } catch (final IOException ioe) {
-                final String message = "Error reading tracker response!";
-                throw new IOException(message, new AnnounceException(message, ioe));
-            } catch (final TrackerMessage.MessageValidationException mve) {
-                final String message = "Tracker message violates expected protocol (" + mve.getMessage() + ")";
-                throw new IOException(message, new AnnounceException(message, mve));
+            // the buffer goes back to the pool only once parsed, another announce may take it right away
+            return parse(ByteBuffer.wrap(buffer, 0, length));
+        } finally {
+            if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+                BUFFERS.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * Parse a raw tracker response body, shared by the blocking and the asynchronous announce paths.
+     */
+    TrackerAnnounceResponse parse(final byte[] body) throws IOException {
+        if (body.length > this.maxResponseBytes) {
+            final String message = "Tracker response is larger than " + this.maxResponseBytes + " bytes";
+            throw new IOException(message, new AnnounceException(message));
+        }
+        return parse(ByteBuffer.wrap(body));
+    }
+
+    private static TrackerAnnounceResponse parse(final ByteBuffer body) throws IOException {
+        try {
+            final BencodeReader reader = new BencodeReader(body);
+            String failureReason = null;
+            long interval = -1;
+            long minInterval = 0;
+            long complete = 0;
+            long incomplete = 0;
+            reader.beginDictionary();
+            while (reader.hasNext()) {
+                final String key = reader.readAsciiString();
+                if ("failure reason".equals(key) && reader.isString()) {
+                    failureReason = reader.readUtf8String();
+                } else if (!reader.isInteger()) {
+                    reader.skipValue();  // peers, peers6, warning message, tracker id...
+                } else if ("interval".equals(key)) {
+                    interval = reader.readLong();
+                } else if ("min interval".equals(key)) {
+                    minInterval = reader.readLong();
+                } else if ("complete".equals(key)) {
+                    complete = reader.readLong();
+                } else if ("incomplete".equals(key)) {
+                    incomplete = reader.readLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            if (failureReason != null) {
+                return TrackerAnnounceResponse.failure(failureReason);
+            }
+            if (interval < 0) {
+                final String message = "Tracker message violates expected protocol (no interval)";
+                throw new IOException(message, new AnnounceException(message));
+            }
+            return new TrackerAnnounceResponse(null, toInt(interval), toInt(minInterval), toInt(complete), toInt(incomplete));
+        } catch (final IOException e) {
+            if (e.getCause() instanceof AnnounceException) {
+                throw e;
             }
+            final String message = "Error reading tracker response!";
+            throw new IOException(message, new AnnounceException(message, e));
         }
     }
+
+    private static int toInt(final long value) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, value));
+    }
 }
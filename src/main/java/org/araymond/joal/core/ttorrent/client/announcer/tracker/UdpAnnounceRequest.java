@@ -0,0 +1,23 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Values of a BEP 15 announce request. Unlike the http query, the UDP packet has a fixed layout: the emulated client
+ * only contributes its peer_id, key and numwant.
+ */
+@RequiredArgsConstructor
+@Getter
+public class UdpAnnounceRequest {
+    private final byte[] infoHash;
+    private final byte[] peerId;
+    private final long downloaded;
+    private final long left;
+    private final long uploaded;
+    private final RequestEvent event;
+    private final int key;
+    private final int numWant;
+    private final int port;
+}
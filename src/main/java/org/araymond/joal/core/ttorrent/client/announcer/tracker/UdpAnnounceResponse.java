@@ -0,0 +1,17 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Raw counters of a BEP 15 announce response, the peer list is ignored.
+ */
+@RequiredArgsConstructor
+@Getter
+@ToString
+public class UdpAnnounceResponse {
+    private final int interval;
+    private final int leechers;
+    private final int seeders;
+}
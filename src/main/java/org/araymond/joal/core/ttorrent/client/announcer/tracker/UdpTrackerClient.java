@@ -0,0 +1,426 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.turn.ttorrent.client.announce.AnnounceException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.araymond.joal.core.torrent.torrent.MockedTorrent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UDP tracker protocol client (BEP 15).
+ * <p/>
+ * Every announce of every torrent goes through a single non-blocking {@link DatagramChannel}, driven by one selector
+ * thread. Requests are matched to their response by transaction id, so thousands of announces can be in flight at
+ * the same time without holding any thread.
+ * <ul>
+ *     <li>Tracker host names are resolved by a dedicated thread, never by the caller, and the addresses are cached for
+ *     five minutes.</li>
+ *     <li>Connection ids are cached per tracker address for one minute, as allowed by the specification.
+ *     Concurrent announces to the same tracker share the same pending connect.</li>
+ *     <li>A request without answer is sent again after {@code baseTimeout * 2^n}, n being the number of
+ *     retransmissions so far (15 seconds * 2^n in the specification), up to {@code maxRetransmissions} times.</li>
+ * </ul>
+ * The base timeout can be shortened to test against an in-process tracker stub.
+ */
+@Slf4j
+public class UdpTrackerClient implements Closeable {
+    private static final long PROTOCOL_ID = 0x41727101980L;
+    private static final int ACTION_CONNECT = 0;
+    private static final int ACTION_ANNOUNCE = 1;
+    private static final int ACTION_SCRAPE = 2;
+    private static final int ACTION_ERROR = 3;
+    /**
+     * Most trackers do not answer to scrape requests of more than 74 info hashes, as stated in BEP 15.
+     */
+    public static final int MAX_SCRAPE_INFO_HASHES = 74;
+    private static final long CONNECTION_ID_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long ADDRESS_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final int MAX_PACKET_SIZE = 65_507;
+
+    private final long baseTimeoutNanos;
+    @Getter private volatile int maxRetransmissions;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Transaction> outbox = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Transaction> pending = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, ConnectionId> connectionIds = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, CompletableFuture<Long>> pendingConnects = new ConcurrentHashMap<>();
+    private final Map<URI, ResolvedAddress> addresses = new ConcurrentHashMap<>();
+    private final ExecutorService resolver = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("udp-tracker-resolver").setDaemon(true).build()
+    );
+    private volatile boolean closed;
+
+    public UdpTrackerClient(final Duration baseTimeout, final int maxRetransmissions) throws IOException {
+        Preconditions.checkArgument(!baseTimeout.isNegative() && !baseTimeout.isZero(), "baseTimeout must be positive");
+        this.baseTimeoutNanos = baseTimeout.toNanos();
+        this.setMaxRetransmissions(maxRetransmissions);
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.bind(null);
+        this.selector = Selector.open();
+        this.channel.register(this.selector, SelectionKey.OP_READ);
+
+        this.thread = new Thread(this::loop, "udp-tracker-client");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Applies to the requests sent from now on, the ones already in flight keep their retransmission count.
+     */
+    public void setMaxRetransmissions(final int maxRetransmissions) {
+        Preconditions.checkArgument(maxRetransmissions >= 0 && maxRetransmissions <= 8, "maxRetransmissions must be between 0 and 8");
+        this.maxRetransmissions = maxRetransmissions;
+    }
+
+    /**
+     * Announce to the tracker, the returned future completes exceptionally with an {@link AnnounceException} on
+     * tracker error, or with a {@link SocketTimeoutException} once all the retransmissions went unanswered.
+     */
+    public CompletableFuture<UdpAnnounceResponse> announce(final URI trackerUri, final UdpAnnounceRequest request) {
+        return this.resolve(trackerUri).thenCompose(address -> this.getConnectionId(address)
+                .thenCompose(connectionId -> this.send(address, ACTION_ANNOUNCE, txId -> announcePacket(connectionId, txId, request)))
+                .thenApply(response -> new UdpAnnounceResponse(response.getInt(8), response.getInt(12), response.getInt(16)))
+                .whenComplete((response, throwable) -> {
+                    if (throwable != null) {
+                        // the connection id may have been rejected, never reuse it after a failure
+                        this.connectionIds.remove(address);
+                    }
+                }));
+    }
+
+    /**
+     * Scrape up to {@value #MAX_SCRAPE_INFO_HASHES} torrents of a tracker in a single request.
+     */
+    public CompletableFuture<Map<InfoHash, TorrentScrapeStats>> scrape(final URI trackerUri, final List<InfoHash> infoHashes) {
+        Preconditions.checkArgument(!infoHashes.isEmpty() && infoHashes.size() <= MAX_SCRAPE_INFO_HASHES,
+                "can scrape from 1 to " + MAX_SCRAPE_INFO_HASHES + " torrents at once");
+        return this.resolve(trackerUri).thenCompose(address -> this.getConnectionId(address)
+                .thenCompose(connectionId -> this.send(address, ACTION_SCRAPE, txId -> scrapePacket(connectionId, txId, infoHashes)))
+                .thenApply(response -> {
+                    // the response holds one (seeders, completed, leechers) triplet per info hash, in request order
+                    final Map<InfoHash, TorrentScrapeStats> stats = new HashMap<>();
+                    for (int i = 0; i < infoHashes.size() && 8 + (i + 1) * 12 <= response.limit(); i++) {
+                        final int offset = 8 + i * 12;
+                        stats.put(infoHashes.get(i), new TorrentScrapeStats(
+                                response.getInt(offset), response.getInt(offset + 8), response.getInt(offset + 4)
+                        ));
+                    }
+                    return stats;
+                })
+                .whenComplete((stats, throwable) -> {
+                    if (throwable != null) {
+                        this.connectionIds.remove(address);
+                    }
+                }));
+    }
+
+    /**
+     * The DNS lookup blocks, it is left to the resolver thread. Failed lookups are not cached.
+     */
+    private CompletableFuture<InetSocketAddress> resolve(final URI trackerUri) {
+        if (trackerUri.getHost() == null || trackerUri.getPort() == -1) {
+            return CompletableFuture.failedFuture(new IOException("Invalid udp tracker address: " + trackerUri));
+        }
+        final ResolvedAddress cached = this.addresses.get(trackerUri);
+        if (cached != null && System.nanoTime() - cached.expiresAt < 0) {
+            return cached.address;
+        }
+        final ResolvedAddress resolved = this.addresses.compute(trackerUri, (uri, current) ->
+                current != null && current != cached ? current : new ResolvedAddress(this.lookup(uri), System.nanoTime() + ADDRESS_TTL_NANOS)
+        );
+        resolved.address.whenComplete((address, throwable) -> {
+            if (throwable != null) {
+                this.addresses.remove(trackerUri, resolved);
+            }
+        });
+        return resolved.address;
+    }
+
+    private CompletableFuture<InetSocketAddress> lookup(final URI trackerUri) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                final InetSocketAddress address = new InetSocketAddress(trackerUri.getHost(), trackerUri.getPort());
+                if (address.isUnresolved()) {
+                    throw new CompletionException(new IOException("Failed to resolve udp tracker host: " + trackerUri.getHost()));
+                }
+                return address;
+            }, this.resolver);
+        } catch (final RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new ClosedChannelException());
+        }
+    }
+
+    private CompletableFuture<Long> getConnectionId(final InetSocketAddress address) {
+        final ConnectionId cached = this.connectionIds.get(address);
+        if (cached != null && System.nanoTime() - cached.expiresAt < 0) {
+            return CompletableFuture.completedFuture(cached.id);
+        }
+        final CompletableFuture<Long> connect = this.pendingConnects.computeIfAbsent(address, addr ->
+                this.send(addr, ACTION_CONNECT, UdpTrackerClient::connectPacket)
+                        .thenApply(response -> {
+                            final long id = response.getLong(8);
+                            this.connectionIds.put(addr, new ConnectionId(id, System.nanoTime() + CONNECTION_ID_TTL_NANOS));
+                            return id;
+                        })
+        );
+        // outside of computeIfAbsent: an already failed connect runs its completion stages right away
+        connect.whenComplete((id, throwable) -> this.pendingConnects.remove(address, connect));
+        return connect;
+    }
+
+    private static ByteBuffer connectPacket(final int transactionId) {
+        final ByteBuffer packet = ByteBuffer.allocate(16);
+        packet.putLong(PROTOCOL_ID).putInt(ACTION_CONNECT).putInt(transactionId);
+        return packet.flip();
+    }
+
+    private static ByteBuffer announcePacket(final long connectionId, final int transactionId, final UdpAnnounceRequest request) {
+        final ByteBuffer packet = ByteBuffer.allocate(98);
+        packet.putLong(connectionId)
+                .putInt(ACTION_ANNOUNCE)
+                .putInt(transactionId)
+                .put(request.getInfoHash(), 0, 20)
+                .put(request.getPeerId(), 0, 20)
+                .putLong(request.getDownloaded())
+                .putLong(request.getLeft())
+                .putLong(request.getUploaded())
+                .putInt(toUdpEvent(request))
+                .putInt(0)  // ip: let the tracker use the sender address
+                .putInt(request.getKey())
+                .putInt(request.getNumWant())
+                .putShort((short) request.getPort());
+        return packet.flip();
+    }
+
+    private static ByteBuffer scrapePacket(final long connectionId, final int transactionId, final List<InfoHash> infoHashes) {
+        final ByteBuffer packet = ByteBuffer.allocate(16 + 20 * infoHashes.size());
+        packet.putLong(connectionId).putInt(ACTION_SCRAPE).putInt(transactionId);
+        infoHashes.forEach(infoHash -> packet.put(infoHash.value().getBytes(MockedTorrent.BYTE_ENCODING), 0, 20));
+        return packet.flip();
+    }
+
+    private static int toUdpEvent(final UdpAnnounceRequest request) {
+        if (request.getEvent() == null) {
+            return 0;
+        }
+        switch (request.getEvent()) {
+            case COMPLETED:
+                return 1;
+            case STARTED:
+                return 2;
+            case STOPPED:
+                return 3;
+            case NONE:
+            default:
+                return 0;
+        }
+    }
+
+    private CompletableFuture<ByteBuffer> send(final InetSocketAddress address, final int action, final PacketFactory packetFactory) {
+        if (this.closed) {
+            return CompletableFuture.failedFuture(new ClosedChannelException());
+        }
+        final CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        int transactionId;
+        Transaction transaction;
+        do {
+            transactionId = ThreadLocalRandom.current().nextInt();
+            transaction = new Transaction(transactionId, address, action, packetFactory.create(transactionId), future);
+        } while (this.pending.putIfAbsent(transactionId, transaction) != null);
+        this.outbox.add(transaction);
+        this.selector.wakeup();
+        return future;
+    }
+
+    private void loop() {
+        final ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+        while (!this.closed) {
+            try {
+                Transaction transaction;
+                while ((transaction = this.outbox.poll()) != null) {
+                    this.transmit(transaction, System.nanoTime());
+                }
+
+                this.selector.select(this.millisUntilNextTimeout());
+                this.selector.selectedKeys().clear();
+
+                SocketAddress from;
+                while ((from = this.channel.receive(receiveBuffer.clear())) != null) {
+                    this.onDatagram(from, receiveBuffer.flip());
+                }
+
+                this.checkTimeouts(System.nanoTime());
+            } catch (final ClosedChannelException e) {
+                break;
+            } catch (final IOException | RuntimeException e) {
+                log.warn("Udp tracker client loop error", e);
+            }
+        }
+    }
+
+    private void transmit(final Transaction transaction, final long now) throws IOException {
+        if (transaction.future.isDone()) {
+            this.pending.remove(transaction.id);
+            return;
+        }
+        transaction.deadline = now + (this.baseTimeoutNanos << transaction.retransmissions);
+        this.channel.send(transaction.packet.duplicate(), transaction.address);
+    }
+
+    private long millisUntilNextTimeout() {
+        final long now = System.nanoTime();
+        long min = TimeUnit.SECONDS.toNanos(1);
+        for (final Transaction transaction : this.pending.values()) {
+            if (transaction.deadline != 0) {
+                min = Math.min(min, transaction.deadline - now);
+            }
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(min));
+    }
+
+    private void checkTimeouts(final long now) throws IOException {
+        final Iterator<Transaction> it = this.pending.values().iterator();
+        while (it.hasNext()) {
+            final Transaction transaction = it.next();
+            if (transaction.deadline == 0 || transaction.deadline - now > 0) {
+                continue;  // not sent yet, or still waiting
+            }
+            if (transaction.retransmissions >= this.maxRetransmissions) {
+                it.remove();
+                transaction.future.completeExceptionally(new SocketTimeoutException(
+                        "Udp tracker " + transaction.address + " did not answer after " + (transaction.retransmissions + 1) + " attempts"
+                ));
+                continue;
+            }
+            transaction.retransmissions++;
+            this.transmit(transaction, now);
+        }
+    }
+
+    private void onDatagram(final SocketAddress from, final ByteBuffer datagram) {
+        if (datagram.remaining() < 8) {
+            return;
+        }
+        final int action = datagram.getInt(0);
+        final int transactionId = datagram.getInt(4);
+        final Transaction transaction = this.pending.get(transactionId);
+        if (transaction == null || !transaction.address.equals(from)) {
+            return;  // late answer to a transaction that already completed, or spoofed packet
+        }
+        this.pending.remove(transactionId);
+
+        if (action == ACTION_ERROR) {
+            final byte[] message = new byte[datagram.remaining() - 8];
+            datagram.position(8);
+            datagram.get(message);
+            transaction.future.completeExceptionally(new AnnounceException(
+                    transaction.address + ": " + new String(message, StandardCharsets.UTF_8)
+            ));
+            return;
+        }
+        final int minimumSize = transaction.action == ACTION_CONNECT ? 16 : transaction.action == ACTION_ANNOUNCE ? 20 : 8;
+        if (action != transaction.action || datagram.remaining() < minimumSize) {
+            transaction.future.completeExceptionally(new AnnounceException(
+                    "Unexpected udp tracker response from " + transaction.address + " (action " + action + ", " + datagram.remaining() + " bytes)"
+            ));
+            return;
+        }
+        final ByteBuffer copy = ByteBuffer.allocate(datagram.remaining());
+        copy.put(datagram).flip();
+        transaction.future.complete(copy);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.resolver.shutdownNow();
+        this.selector.wakeup();
+        try {
+            this.thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.selector.close();
+        this.channel.close();
+        final ClosedChannelException closedException = new ClosedChannelException();
+        this.pending.values().forEach(transaction -> transaction.future.completeExceptionally(closedException));
+        this.pending.clear();
+    }
+
+    @FunctionalInterface
+    private interface PacketFactory {
+        ByteBuffer create(int transactionId);
+    }
+
+    private static final class ConnectionId {
+        private final long id;
+        private final long expiresAt;
+
+        private ConnectionId(final long id, final long expiresAt) {
+            this.id = id;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class ResolvedAddress {
+        private final CompletableFuture<InetSocketAddress> address;
+        private final long expiresAt;
+
+        private ResolvedAddress(final CompletableFuture<InetSocketAddress> address, final long expiresAt) {
+            this.address = address;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Transaction {
+        private final int id;
+        private final InetSocketAddress address;
+        private final int action;
+        private final ByteBuffer packet;
+        private final CompletableFuture<ByteBuffer> future;
+        private int retransmissions;
+        private volatile long deadline;  // 0 until first sent, written by the selector thread only
+
+        private Transaction(final int id, final InetSocketAddress address, final int action, final ByteBuffer packet,
+                            final CompletableFuture<ByteBuffer> future) {
+            this.id = id;
+            this.address = address;
+            this.action = action;
+            this.packet = packet;
+            this.future = future;
+        }
+    }
+}
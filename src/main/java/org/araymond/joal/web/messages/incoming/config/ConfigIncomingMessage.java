@@ -43,7 +43,10 @@ public class ConfigIncomingMessage {
         this.requiredSeedingTimeMs = requiredSeedingTimeMs;
     }
 
-    public AppConfiguration toAppConfiguration() throws AppConfigurationIntegrityException {
-        return new AppConfiguration(this.minUploadRate, this.maxUploadRate, this.simultaneousSeed, this.client, keepTorrentWithZeroLeechers, this.uploadRatioTarget, maxNonSeedingTimeMs, requiredSeedingTimeMs);
+    /**
+     * The web UI only edits the seed settings, advanced settings are carried over from the current configuration.
+     */
+    public AppConfiguration toAppConfiguration(final AppConfiguration currentConfig) throws AppConfigurationIntegrityException {
+        return currentConfig.withSeedSettings(this.minUploadRate, this.maxUploadRate, this.simultaneousSeed, this.client, keepTorrentWithZeroLeechers, this.uploadRatioTarget, maxNonSeedingTimeMs, requiredSeedingTimeMs);
     }
 }
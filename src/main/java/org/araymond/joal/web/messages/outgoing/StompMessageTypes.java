@@ -3,6 +3,7 @@ package org.araymond.joal.web.messages.outgoing;
 import org.araymond.joal.web.messages.outgoing.impl.announce.FailedToAnnouncePayload;
 import org.araymond.joal.web.messages.outgoing.impl.announce.SuccessfullyAnnouncePayload;
 import org.araymond.joal.web.messages.outgoing.impl.announce.TooManyAnnouncesFailedPayload;
+import org.araymond.joal.web.messages.outgoing.impl.announce.TrackerHostCircuitBreakerChangedPayload;
 import org.araymond.joal.web.messages.outgoing.impl.announce.WillAnnouncePayload;
 import org.araymond.joal.web.messages.outgoing.impl.config.ConfigHasBeenLoadedPayload;
 import org.araymond.joal.web.messages.outgoing.impl.config.ConfigIsInDirtyStatePayload;
@@ -27,6 +28,7 @@ public enum StompMessageTypes {
     SUCCESSFULLY_ANNOUNCE(SuccessfullyAnnouncePayload.class),
     TOO_MANY_ANNOUNCES_FAILED(TooManyAnnouncesFailedPayload.class),
     WILL_ANNOUNCE(WillAnnouncePayload.class),
+    TRACKER_HOST_CIRCUIT_BREAKER_CHANGED(TrackerHostCircuitBreakerChangedPayload.class),
 
     //config
     CONFIG_HAS_BEEN_LOADED(ConfigHasBeenLoadedPayload.class),
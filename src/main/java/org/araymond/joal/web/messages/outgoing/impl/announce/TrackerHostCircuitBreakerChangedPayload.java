@@ -0,0 +1,20 @@
+package org.araymond.joal.web.messages.outgoing.impl.announce;
+
+import lombok.Getter;
+import org.araymond.joal.core.events.announce.TrackerHostCircuitBreakerChangedEvent;
+import org.araymond.joal.web.messages.outgoing.MessagePayload;
+
+@Getter
+public class TrackerHostCircuitBreakerChangedPayload implements MessagePayload {
+    private final String host;
+    private final String state;
+    private final int consecutiveFailures;
+    private final long retryInMs;
+
+    public TrackerHostCircuitBreakerChangedPayload(final TrackerHostCircuitBreakerChangedEvent event) {
+        this.host = event.getBreakerState().getHost();
+        this.state = event.getBreakerState().getState().name();
+        this.consecutiveFailures = event.getBreakerState().getConsecutiveFailures();
+        this.retryInMs = event.getBreakerState().getRetryInMs();
+    }
+}
@@ -3,26 +3,42 @@ package org.araymond.joal.web.messages.outgoing.impl.speed;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.araymond.joal.core.SeedManager;
+import org.araymond.joal.core.bandwith.Speed;
 import org.araymond.joal.core.events.speed.SeedingSpeedsHasChangedEvent;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 import org.araymond.joal.web.messages.outgoing.MessagePayload;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Either a keyframe, holding the speeds of all the torrents, or a delta holding only the speeds that changed since the
+ * previous frame and the torrents that are not seeded anymore.
+ */
 @Getter
 public class SeedingSpeedHasChangedPayload implements MessagePayload {
+    private final boolean keyframe;
     private final List<SpeedPayload> speeds;
+    private final Collection<InfoHash> removed;
 
     public SeedingSpeedHasChangedPayload(final SeedingSpeedsHasChangedEvent event, final SeedManager seedManager) {
-        this.speeds = event.getSpeeds().entrySet().stream()
+        this(true, event.getSpeeds(), Collections.emptyList(), seedManager);
+    }
+
+    public SeedingSpeedHasChangedPayload(final boolean keyframe, final Map<InfoHash, Speed> speeds, final Collection<InfoHash> removed, final SeedManager seedManager) {
+        this.keyframe = keyframe;
+        this.speeds = speeds.entrySet().stream()
                 .map(entry -> new SpeedPayload(
                         entry.getKey(),
                         entry.getValue().getBytesPerSecond(),
                         seedManager.getSeedingTimeMsForTorrent(entry.getKey().getHumanReadable())
                 ))
                 .collect(toList());
+        this.removed = removed;
     }
 
     @Getter
@@ -6,17 +6,20 @@ import org.apache.commons.codec.binary.Base64;
 import org.araymond.joal.core.SeedManager;
 import org.araymond.joal.core.bandwith.Speed;
 import org.araymond.joal.core.events.announce.SuccessfullyAnnounceEvent;
+import org.araymond.joal.core.events.announce.TrackerHostCircuitBreakerChangedEvent;
 import org.araymond.joal.core.events.config.ConfigHasBeenLoadedEvent;
 import org.araymond.joal.core.events.config.ListOfClientFilesEvent;
 import org.araymond.joal.core.events.speed.SeedingSpeedsHasChangedEvent;
 import org.araymond.joal.core.events.torrent.files.TorrentFileAddedEvent;
 import org.araymond.joal.core.torrent.torrent.InfoHash;
 import org.araymond.joal.core.torrent.torrent.MockedTorrent;
+import org.araymond.joal.core.ttorrent.client.announcer.tracker.TrackerHostCircuitBreakers;
 import org.araymond.joal.web.annotations.ConditionalOnWebUi;
 import org.araymond.joal.web.messages.incoming.config.Base64TorrentIncomingMessage;
 import org.araymond.joal.web.messages.incoming.config.ConfigIncomingMessage;
 import org.araymond.joal.web.messages.outgoing.StompMessage;
 import org.araymond.joal.web.messages.outgoing.impl.announce.SuccessfullyAnnouncePayload;
+import org.araymond.joal.web.messages.outgoing.impl.announce.TrackerHostCircuitBreakerChangedPayload;
 import org.araymond.joal.web.messages.outgoing.impl.config.ConfigHasBeenLoadedPayload;
 import org.araymond.joal.web.messages.outgoing.impl.config.InvalidConfigPayload;
 import org.araymond.joal.web.messages.outgoing.impl.config.ListOfClientFilesPayload;
@@ -67,7 +70,7 @@ public class WebSocketController {
         }
 
         try {
-            seedManager.saveNewConfiguration(message.toAppConfiguration());
+            seedManager.saveNewConfiguration(message.toAppConfiguration(seedManager.getCurrentConfig()));
         } catch (final Exception e) {
             log.warn("Failed to save conf {}", message.toString(), e);
             messageSendingTemplate.convertAndSend("/config", new InvalidConfigPayload(e));
@@ -142,6 +145,13 @@ public class WebSocketController {
             events.addFirst(StompMessage.wrap(new SeedingSpeedHasChangedPayload(new SeedingSpeedsHasChangedEvent(speedMap), this.seedManager)));
         }
 
+        // tracker hosts currently unreachable
+        this.seedManager.getTrackerCircuitBreakerStates().stream()
+                .filter(state -> state.getState() != TrackerHostCircuitBreakers.State.CLOSED)
+                .forEach(state -> events.addFirst(
+                        StompMessage.wrap(new TrackerHostCircuitBreakerChangedPayload(new TrackerHostCircuitBreakerChangedEvent(state)))
+                ));
+
         // Announcers are the most likely to change due to a concurrent access,
         // so we gather them as late as possible, and we put them at the top of the list.
         this.seedManager.getCurrentlySeedingAnnouncers().forEach(a -> events.addFirst(
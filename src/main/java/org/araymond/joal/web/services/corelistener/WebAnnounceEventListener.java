@@ -4,11 +4,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.araymond.joal.core.events.announce.FailedToAnnounceEvent;
 import org.araymond.joal.core.events.announce.SuccessfullyAnnounceEvent;
 import org.araymond.joal.core.events.announce.TooManyAnnouncesFailedEvent;
+import org.araymond.joal.core.events.announce.TrackerHostCircuitBreakerChangedEvent;
 import org.araymond.joal.core.events.announce.WillAnnounceEvent;
 import org.araymond.joal.web.annotations.ConditionalOnWebUi;
 import org.araymond.joal.web.messages.outgoing.impl.announce.FailedToAnnouncePayload;
 import org.araymond.joal.web.messages.outgoing.impl.announce.SuccessfullyAnnouncePayload;
 import org.araymond.joal.web.messages.outgoing.impl.announce.TooManyAnnouncesFailedPayload;
+import org.araymond.joal.web.messages.outgoing.impl.announce.TrackerHostCircuitBreakerChangedPayload;
 import org.araymond.joal.web.messages.outgoing.impl.announce.WillAnnouncePayload;
 import org.araymond.joal.web.services.JoalMessageSendingTemplate;
 import org.springframework.context.event.EventListener;
@@ -62,4 +64,12 @@ public class WebAnnounceEventListener extends WebEventListener {
         this.messagingTemplate.convertAndSend("/announce", new WillAnnouncePayload(event));
     }
 
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener
+    public void trackerHostCircuitBreakerChanged(final TrackerHostCircuitBreakerChangedEvent event) {
+        log.debug("Send TrackerHostCircuitBreakerChangedPayload to clients.");
+
+        this.messagingTemplate.convertAndSend("/announce", new TrackerHostCircuitBreakerChangedPayload(event));
+    }
+
 }
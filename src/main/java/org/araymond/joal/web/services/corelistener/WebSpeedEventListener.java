@@ -1,34 +1,142 @@
 package org.araymond.joal.web.services.corelistener;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import lombok.extern.slf4j.Slf4j;
+import org.araymond.joal.core.bandwith.Speed;
 import org.araymond.joal.core.events.speed.SeedingSpeedsHasChangedEvent;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
 import org.araymond.joal.web.annotations.ConditionalOnWebUi;
 import org.araymond.joal.web.messages.outgoing.impl.speed.SeedingSpeedHasChangedPayload;
 import org.araymond.joal.web.services.JoalMessageSendingTemplate;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Created by raymo on 25/06/2017.
+ * <p/>
+ * Pushes the seeding speeds to the web clients on {@code /speed}. The speeds received from the core are not sent
+ * right away: only the latest ones are kept, and at most one frame is sent every {@code joal.ui.speed-push-interval-ms}.
+ * A frame only holds the speeds that changed since the previous one, except for a full keyframe sent every {@code
+ * joal.ui.speed-keyframe-interval-ms} so that the clients that missed some frames get back in sync.
  */
 @ConditionalOnWebUi
 @Service
 @Slf4j
-public class WebSpeedEventListener extends WebEventListener {
+public class WebSpeedEventListener extends WebEventListener implements DisposableBean {
+    private final AtomicReference<Map<InfoHash, Speed>> pendingSpeeds = new AtomicReference<>();
+    private final ScheduledExecutorService pushExecutor;
+    private final long keyframeIntervalNanos;
+    /**
+     * Speeds sent so far, only accessed by the push thread.
+     */
+    private final Map<InfoHash, Long> sentSpeeds = new HashMap<>();
+    private long lastKeyframeNanos;
+
     @Inject
-    public WebSpeedEventListener(final JoalMessageSendingTemplate messagingTemplate) {
+    public WebSpeedEventListener(
+            final JoalMessageSendingTemplate messagingTemplate,
+            @Value("${joal.ui.speed-push-interval-ms:1000}") final long pushIntervalMs,
+            @Value("${joal.ui.speed-keyframe-interval-ms:30000}") final long keyframeIntervalMs
+    ) {
         super(messagingTemplate);
+        Preconditions.checkArgument(pushIntervalMs > 0, "joal.ui.speed-push-interval-ms must be greater than 0");
+        Preconditions.checkArgument(keyframeIntervalMs >= pushIntervalMs, "joal.ui.speed-keyframe-interval-ms must be greater or equal to joal.ui.speed-push-interval-ms");
+        this.keyframeIntervalNanos = MILLISECONDS.toNanos(keyframeIntervalMs);
+        this.lastKeyframeNanos = System.nanoTime() - this.keyframeIntervalNanos;
+        this.pushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "web-speed-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pushExecutor.scheduleWithFixedDelay(this::pushSpeedsSafely, pushIntervalMs, pushIntervalMs, MILLISECONDS);
     }
 
     @Order(Ordered.LOWEST_PRECEDENCE)
     @EventListener
-    public void failedToAnnounce(final SeedingSpeedsHasChangedEvent event) {
-    log.debug("Send SeedingSpeedHasChangedPayload to clients.");
-    this.messagingTemplate.convertAndSend("/speed", new SeedingSpeedHasChangedPayload(event, this.messagingTemplate.getSeedManager()));
+    public void speedsHasChanged(final SeedingSpeedsHasChangedEvent event) {
+        // only the latest speeds matter, the previous ones are replaced if they have not been pushed yet
+        this.pendingSpeeds.set(event.getSpeeds());
+    }
+
+    private void pushSpeedsSafely() {
+        try {
+            this.pushSpeeds();
+        } catch (final RuntimeException e) {
+            log.warn("Failed to push the seeding speeds to the clients", e);
+        }
+    }
+
+    @VisibleForTesting
+    void pushSpeeds() {
+        final Map<InfoHash, Speed> speeds = this.pendingSpeeds.getAndSet(null);
+        final long now = System.nanoTime();
+        if (now - this.lastKeyframeNanos >= this.keyframeIntervalNanos) {
+            this.pushKeyframe(speeds, now);
+            return;
+        }
+        if (speeds == null) {
+            return;
+        }
+
+        final Map<InfoHash, Speed> changed = new HashMap<>();
+        speeds.forEach((infoHash, speed) -> {
+            final Long sent = this.sentSpeeds.get(infoHash);
+            if (sent == null || sent != speed.getBytesPerSecond()) {
+                changed.put(infoHash, speed);
+            }
+        });
+        final List<InfoHash> removed = new ArrayList<>();
+        this.sentSpeeds.keySet().forEach(infoHash -> {
+            if (!speeds.containsKey(infoHash)) {
+                removed.add(infoHash);
+            }
+        });
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        removed.forEach(this.sentSpeeds::remove);
+        changed.forEach((infoHash, speed) -> this.sentSpeeds.put(infoHash, speed.getBytesPerSecond()));
+        log.debug("Send SeedingSpeedHasChangedPayload delta to clients ({} changed, {} removed).", changed.size(), removed.size());
+        this.messagingTemplate.convertAndSend("/speed", new SeedingSpeedHasChangedPayload(false, changed, removed, this.messagingTemplate.getSeedManager()));
     }
 
+    private void pushKeyframe(final Map<InfoHash, Speed> pendingSpeeds, final long now) {
+        final Map<InfoHash, Speed> speeds;
+        if (pendingSpeeds != null) {
+            speeds = pendingSpeeds;
+        } else {
+            speeds = new HashMap<>();
+            this.sentSpeeds.forEach((infoHash, bytesPerSecond) -> speeds.put(infoHash, new Speed(bytesPerSecond)));
+        }
+        this.lastKeyframeNanos = now;
+        if (speeds.isEmpty() && this.sentSpeeds.isEmpty()) {
+            return;
+        }
+        this.sentSpeeds.clear();
+        speeds.forEach((infoHash, speed) -> this.sentSpeeds.put(infoHash, speed.getBytesPerSecond()));
+        log.debug("Send SeedingSpeedHasChangedPayload keyframe to clients.");
+        this.messagingTemplate.convertAndSend("/speed", new SeedingSpeedHasChangedPayload(true, speeds, Collections.emptyList(), this.messagingTemplate.getSeedManager()));
+    }
+
+    @Override
+    public void destroy() {
+        this.pushExecutor.shutdownNow();
+    }
 }
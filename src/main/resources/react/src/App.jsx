@@ -14,6 +14,7 @@ import {
 import SettingsIcon from '@mui/icons-material/Settings';
 import DashboardIcon from '@mui/icons-material/Dashboard';
 import InfoPrincipal from './components/InfoPrincipal';
+import TrackerHosts from './components/TrackerHosts';
 
 /**
  * Composant principal de l'application JOAL.
@@ -40,6 +41,8 @@ function App() {
   const [clientWebSocket, setClientWebSocket] = useState(null);
   // Statut de la sauvegarde de la config
   const [configSaveStatus, setConfigSaveStatus] = useState({ saving: false, error: null, success: false });
+  // État des disjoncteurs des hôtes de trackers, par hôte
+  const [trackerHosts, setTrackerHosts] = useState({});
 
   // --- FONCTIONS DE FUSION PAR TYPE D'ÉVÉNEMENT ---
   // Fusionne les infos d'un torrent ajouté
@@ -75,18 +78,31 @@ function App() {
     return [...prev, { ...payload }];
   }
 
-  // Met à jour la vitesse d'upload et le temps seedé
-  function mergeSeedingSpeedHasChanged(prev, speedsArr) {
-    if (!Array.isArray(speedsArr)) return prev;
+  // Met à jour l'état du disjoncteur d'un hôte de tracker
+  function mergeTrackerHostCircuitBreaker(prev, payload) {
+    if (!payload || !payload.host) return prev;
+    const { host, state, consecutiveFailures, retryInMs } = payload;
+    return { ...prev, [host]: { host, state, consecutiveFailures, retryInMs } };
+  }
+
+  // Met à jour la vitesse d'upload et le temps seedé.
+  // Keyframe : les torrents absents n'ont plus de vitesse ; delta : seuls les torrents retirés perdent leur vitesse
+  function mergeSeedingSpeedHasChanged(prev, speedsArr, keyframe, removed) {
+    const found = {};
+    speedsArr.forEach(s => { if (s && s.infoHash) found[s.infoHash] = s; });
+    const removedSet = new Set(removed);
     return prev.map(t => {
-      const found = speedsArr.find(s => s && s.infoHash === t.infoHash);
-      if (found) {
+      const s = found[t.infoHash];
+      if (s) {
         return {
           ...t,
-          antiHnRElapsedMs: typeof found.antiHnRElapsedMs === 'number' ? found.antiHnRElapsedMs : t.antiHnRElapsedMs,
-          bytesPerSecond: found.bytesPerSecond !== undefined ? found.bytesPerSecond : t.bytesPerSecond
+          antiHnRElapsedMs: typeof s.antiHnRElapsedMs === 'number' ? s.antiHnRElapsedMs : t.antiHnRElapsedMs,
+          bytesPerSecond: s.bytesPerSecond !== undefined ? s.bytesPerSecond : t.bytesPerSecond
         };
       }
+      if (keyframe || removedSet.has(t.infoHash)) {
+        return { ...t, bytesPerSecond: 0 };
+      }
       return t;
     });
   }
@@ -122,19 +138,30 @@ function App() {
         setConfigSaveStatus({ saving: false, error: null, success: true });
         setConfigOpen(false);
       },
-      onSpeed: (speedsArr) => {
-        // Réception des vitesses d'upload
-        console.debug('Received speeds:', speedsArr);
+      onSpeed: (speedPayload) => {
+        // Réception des vitesses d'upload : une keyframe remplace toutes les vitesses, un delta ne contient que
+        // les vitesses qui ont changé et les torrents retirés
+        console.debug('Received speeds:', speedPayload);
+        const speedsArr = (speedPayload && Array.isArray(speedPayload.speeds)) ? speedPayload.speeds : [];
+        const removed = (speedPayload && Array.isArray(speedPayload.removed)) ? speedPayload.removed : [];
+        const keyframe = !!(speedPayload && speedPayload.keyframe);
         const speedMap = {};
-        setTorrents(prevTorrents => mergeSeedingSpeedHasChanged(prevTorrents, speedsArr));
-        if (Array.isArray(speedsArr)) {
-          speedsArr.forEach(s => { if (s && s.infoHash) speedMap[s.infoHash] = s.bytesPerSecond; });
-        }
-        setSpeeds(speedMap);
+        speedsArr.forEach(s => { if (s && s.infoHash) speedMap[s.infoHash] = s.bytesPerSecond; });
+        setTorrents(prevTorrents => mergeSeedingSpeedHasChanged(prevTorrents, speedsArr, keyframe, removed));
+        setSpeeds(prev => {
+          if (keyframe) return speedMap;
+          const next = { ...prev };
+          removed.forEach(infoHash => { delete next[infoHash]; });
+          return { ...next, ...speedMap };
+        });
       },
-      onTorrent: (payload) => {
+      onTorrent: (payload, type) => {
         // Réception d'une mise à jour torrent
         console.debug('Received torrent update:', payload);
+        if (type === 'TRACKER_HOST_CIRCUIT_BREAKER_CHANGED') {
+          setTrackerHosts(prev => mergeTrackerHostCircuitBreaker(prev, payload));
+          return;
+        }
         setTorrents(prev => {
           let next = mergeTorrentFileAdded(prev, payload);
           next = mergeSuccessfullyAnnounce(next, payload);
@@ -150,6 +177,7 @@ function App() {
         let global = {};
         let conf = {};
         let clientList = [];
+        let hosts = {};
         // On fusionne toutes les infos par infoHash
         const torrentMap = {};
         events.forEach(ev => {
@@ -185,6 +213,9 @@ function App() {
           if (ev.type === 'LIST_OF_CLIENT_FILES' && ev.payload) {
             clientList = ev.payload.clients;
           }
+          if (ev.type === 'TRACKER_HOST_CIRCUIT_BREAKER_CHANGED') {
+            hosts = mergeTrackerHostCircuitBreaker(hosts, ev.payload);
+          }
         });
         torrentsList = Object.values(torrentMap);
         setTorrents(torrentsList);
@@ -192,6 +223,7 @@ function App() {
         setGlobalInfo(global);
         setConfig(conf);
         setClients(clientList);
+        setTrackerHosts(hosts);
       }
     }));
   }, []);
@@ -235,6 +267,8 @@ function App() {
         <Container maxWidth="lg" sx={{ mt: 4 }}>
           {/* Affichage des infos globales et de la config */}
           <InfoPrincipal globalInfo={globalInfo} config={config} clients={clients} torrents={torrents} clientWebSocket={clientWebSocket} />
+          {/* État des disjoncteurs des hôtes de trackers */}
+          <TrackerHosts trackerHosts={Object.values(trackerHosts)} />
           {/* Tableau des torrents */}
           <TorrentsTable onSnackbar={handleSnackbar} torrents={torrents} speeds={speeds} globalInfo={globalInfo} config={config} clients={clients} />
         </Container>
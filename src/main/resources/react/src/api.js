@@ -88,7 +88,8 @@ export function connectWebSocket({ onSpeed, onTorrent, onInit, onGlobal, onConfi
       message.ack && message.ack();
       try {
         const payload = JSON.parse(message.body);
-        onTorrentUpdate(payload.payload || payload); // supporte {type, payload} ou direct
+        // supporte {type, payload} ou direct ; le type distingue les événements sans infoHash (disjoncteurs)
+        onTorrentUpdate(payload.payload || payload, payload.type);
       } catch (e) {
         console.error('Erreur parsing /announce', e, message.body);
       }
@@ -116,7 +117,8 @@ export function connectWebSocket({ onSpeed, onTorrent, onInit, onGlobal, onConfi
       message.ack && message.ack();
       try {
         const payload = JSON.parse(message.body);
-        onSpeedUpdate((payload.payload && payload.payload.speeds) || payload.speeds || payload);
+        // payload complet : keyframe, speeds et removed
+        onSpeedUpdate(payload.payload || payload);
       } catch (e) {
         console.error('Erreur parsing /speed', e, message.body);
       }
@@ -0,0 +1,41 @@
+// Composant React listant l'état des disjoncteurs des hôtes de trackers.
+// Un hôte n'apparaît qu'après un premier changement d'état de son disjoncteur.
+import React from 'react';
+import { Card, CardContent, Typography, Table, TableHead, TableBody, TableRow, TableCell } from '@mui/material';
+
+/**
+ * Tableau des hôtes de trackers avec l'état de leur disjoncteur et le délai avant le prochain essai.
+ * @param trackerHosts Liste de { host, state, consecutiveFailures, retryInMs }
+ */
+export default function TrackerHosts({ trackerHosts }) {
+  if (!trackerHosts || trackerHosts.length === 0) {
+    return null;
+  }
+  return (
+    <Card sx={{ mb: 2 }}>
+      <CardContent>
+        <Typography variant="h6" gutterBottom>Hôtes de trackers</Typography>
+        <Table size="small">
+          <TableHead>
+            <TableRow>
+              <TableCell>Hôte</TableCell>
+              <TableCell>État</TableCell>
+              <TableCell>Échecs consécutifs</TableCell>
+              <TableCell>Prochain essai</TableCell>
+            </TableRow>
+          </TableHead>
+          <TableBody>
+            {trackerHosts.map(h => (
+              <TableRow key={h.host}>
+                <TableCell>{h.host}</TableCell>
+                <TableCell>{h.state}</TableCell>
+                <TableCell>{h.consecutiveFailures}</TableCell>
+                <TableCell>{h.retryInMs > 0 ? Math.ceil(h.retryInMs / 1000) + ' s' : '-'}</TableCell>
+              </TableRow>
+            ))}
+          </TableBody>
+        </Table>
+      </CardContent>
+    </Card>
+  );
+}
@@ -0,0 +1,77 @@
+package org.araymond.joal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * Minimal timing loop shared by the {@code *Benchmark} mains of the test sources.
+ * <p/>
+ * Those mains are not tests, surefire does not pick them up. Run them from the IDE, or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=<benchmark class>}.
+ * Numbers are indicative only: there is no fork and no JIT isolation, compare implementations within the same run.
+ * <p/>
+ * Next to the time, it prints the bytes allocated per op by the benchmark thread, when the JVM supports
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}.
+ */
+public final class MicroBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationsBean();
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Run {@code op} for {@code opsPerRound} iterations per round and print the best round, in nanoseconds per op, and
+     * the lowest allocation of the measured rounds, in bytes per op.
+     *
+     * @param op receives the iteration index, from 0 to {@code opsPerRound - 1}
+     * @return the best nanoseconds per op
+     */
+    public static double run(final String label, final int opsPerRound, final IntConsumer op) {
+        for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+            runRound(opsPerRound, op);
+        }
+        double best = Double.MAX_VALUE;
+        double allocated = Double.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; ++round) {
+            final long allocatedBefore = allocatedBytes();
+            best = Math.min(best, runRound(opsPerRound, op));
+            allocated = Math.min(allocated, (double) (allocatedBytes() - allocatedBefore) / opsPerRound);
+        }
+        System.out.println(ALLOCATIONS == null
+                ? String.format(Locale.ROOT, "%-50s %,14.1f ns/op", label, best)
+                : String.format(Locale.ROOT, "%-50s %,14.1f ns/op %,12.1f B/op", label, best, allocated));
+        return best;
+    }
+
+    private static double runRound(final int opsPerRound, final IntConsumer op) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < opsPerRound; ++i) {
+            op.accept(i);
+        }
+        return (double) (System.nanoTime() - start) / opsPerRound;
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATIONS == null ? 0L : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return null when the JVM cannot count the bytes allocated by a thread
+     */
+    private static com.sun.management.ThreadMXBean allocationsBean() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocations.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        return allocations;
+    }
+}
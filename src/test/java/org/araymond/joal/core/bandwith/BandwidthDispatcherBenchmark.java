@@ -0,0 +1,131 @@
+package org.araymond.joal.core.bandwith;
+
+import org.araymond.joal.MicroBenchmark;
+import org.araymond.joal.core.bandwith.weight.PeersAwareWeightCalculator;
+import org.araymond.joal.core.config.AppConfiguration;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Cost of a peers update in {@link BandwidthDispatcher}, where speeds are derived from the weights on read, against
+ * the former recomputation of every torrent speed followed by a copy of the speed map, for 1k, 10k and 50k torrents
+ * (or the sizes given as arguments). It also checks that the uploads summed over all torrents match the global speed
+ * times the elapsed time after thousands of weight changes. See {@link MicroBenchmark} to run it.
+ */
+public class BandwidthDispatcherBenchmark {
+    private static final long GLOBAL_SPEED_KB = 1000;
+    private static final int OPS_PER_ROUND = 200_000;
+    /**
+     * The former recomputation is measured on fewer ops, so that 50k torrents still completes in a few seconds.
+     */
+    private static final int RECOMPUTE_OPS_BUDGET = 2_000_000;
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int[] sizes = args.length == 0
+                ? new int[]{1_000, 10_000, 50_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        final AppConfiguration conf = mock(AppConfiguration.class);
+        doReturn(GLOBAL_SPEED_KB).when(conf).getMinUploadRate();
+        doReturn(GLOBAL_SPEED_KB).when(conf).getMaxUploadRate();
+
+        for (final int size : sizes) {
+            final InfoHash[] infoHashes = infoHashes(size);
+            final int[] leechers = new Random(size).ints(OPS_PER_ROUND, 1, 100).toArray();
+
+            final RecomputeAll recomputeAll = new RecomputeAll(GLOBAL_SPEED_KB * 1000);
+            final BandwidthDispatcher dispatcher = new BandwidthDispatcher(new RandomSpeedProvider(conf), 0, Integer.MAX_VALUE);
+            for (final InfoHash infoHash : infoHashes) {
+                recomputeAll.add(infoHash, new Peers(10, 10));
+                dispatcher.registerTorrent(infoHash);
+                dispatcher.updateTorrentPeers(infoHash, 10, 10);
+            }
+
+            MicroBenchmark.run("recompute all speeds (" + size + " torrents)", Math.max(20, RECOMPUTE_OPS_BUDGET / size),
+                    i -> recomputeAll.update(infoHashes[i * 7919 % size], new Peers(10, leechers[i])));
+            MicroBenchmark.run("weight only          (" + size + " torrents)", OPS_PER_ROUND,
+                    i -> dispatcher.updateTorrentPeers(infoHashes[i * 7919 % size], 10, leechers[i]));
+        }
+
+        checkUploadTotal(conf);
+    }
+
+    /**
+     * Change the weight of random torrents 2000 times over about two seconds, then compare the sum of their uploads
+     * with the global speed times the elapsed time.
+     */
+    private static void checkUploadTotal(final AppConfiguration conf) throws InterruptedException {
+        final InfoHash[] infoHashes = infoHashes(100);
+        final Random random = new Random(42);
+        final BandwidthDispatcher dispatcher = new BandwidthDispatcher(new RandomSpeedProvider(conf), 0, Integer.MAX_VALUE);
+        for (final InfoHash infoHash : infoHashes) {
+            dispatcher.registerTorrent(infoHash);
+        }
+        final long start = System.nanoTime();
+        for (final InfoHash infoHash : infoHashes) {
+            dispatcher.updateTorrentPeers(infoHash, 10, 10);
+        }
+        for (int i = 0; i < 2000; ++i) {
+            dispatcher.updateTorrentPeers(infoHashes[random.nextInt(infoHashes.length)], 10, 1 + random.nextInt(100));
+            if (i % 20 == 0) {
+                Thread.sleep(20);
+            }
+        }
+
+        long uploaded = 0;
+        for (final InfoHash infoHash : infoHashes) {
+            uploaded += dispatcher.getSeedStatForTorrent(infoHash).getUploaded();
+        }
+        final double expected = GLOBAL_SPEED_KB * 1000 * (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format(Locale.ROOT, "uploaded after 2000 weight changes: %,d bytes, global speed x elapsed: %,.0f bytes (%.4f%%)",
+                uploaded, expected, uploaded * 100 / expected));
+    }
+
+    private static InfoHash[] infoHashes(final int size) {
+        final InfoHash[] infoHashes = new InfoHash[size];
+        for (int i = 0; i < size; ++i) {
+            infoHashes[i] = new InfoHash(ByteBuffer.allocate(20).putInt(i).array());
+        }
+        return infoHashes;
+    }
+
+    /**
+     * The former update path: every speed is recomputed from its weight, then the speed map is copied for the listener.
+     */
+    private static final class RecomputeAll {
+        private final PeersAwareWeightCalculator weightCalculator = new PeersAwareWeightCalculator();
+        private final Map<InfoHash, Double> weights = new HashMap<>();
+        private final Map<InfoHash, Speed> speeds = new HashMap<>();
+        private final long globalSpeed;
+        private double totalWeight;
+        private Map<InfoHash, Speed> lastNotified;
+
+        private RecomputeAll(final long globalSpeed) {
+            this.globalSpeed = globalSpeed;
+        }
+
+        /**
+         * Set the weight of a torrent without recomputing the speeds, to fill the benchmark.
+         */
+        void add(final InfoHash infoHash, final Peers peers) {
+            final double weight = this.weightCalculator.calculate(peers);
+            final Double previous = this.weights.put(infoHash, weight);
+            this.totalWeight += weight - (previous == null ? 0.0 : previous);
+        }
+
+        void update(final InfoHash infoHash, final Peers peers) {
+            this.add(infoHash, peers);
+            this.weights.forEach((hash, w) -> this.speeds.computeIfAbsent(hash, h -> new Speed(0))
+                    .setBytesPerSecond(this.totalWeight == 0.0 ? 0L : (long) (this.globalSpeed * w / this.totalWeight)));
+            this.lastNotified = new HashMap<>(this.speeds);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.araymond.joal.core.client.emulated;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
+import org.araymond.joal.MicroBenchmark;
+import org.araymond.joal.core.bandwith.TorrentSeedStats;
+import org.araymond.joal.core.client.emulated.generator.UrlEncoder;
+import org.araymond.joal.core.client.emulated.generator.numwant.NumwantProvider;
+import org.araymond.joal.core.exception.UnrecognizedClientPlaceholder;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.araymond.joal.core.ttorrent.client.ConnectionHandler;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.valueOf;
+import static org.apache.commons.lang3.StringUtils.EMPTY;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@link BitTorrentClient#createRequestQuery} rendering the compiled {@link AnnounceQueryTemplate}, against the chain
+ * of regex replacements it replaced, for a few bundled clients (or the .client files given as arguments). Both build
+ * the full query, peer id and key generation included, and the bytes allocated per query are printed next to the time:
+ * each regex replacement copies the whole query. See {@link MicroBenchmark} to run it.
+ */
+public class BitTorrentClientBenchmark {
+    private static final int OPS_PER_ROUND = 100_000;
+
+    private static final Pattern INFOHASH_PTRN = Pattern.compile("\\{infohash}");
+    private static final Pattern UPLOADED_PTRN = Pattern.compile("\\{uploaded}");
+    private static final Pattern DOWNLOADED_PTRN = Pattern.compile("\\{downloaded}");
+    private static final Pattern LEFT_PTRN = Pattern.compile("\\{left}");
+    private static final Pattern PORT_PTRN = Pattern.compile("\\{port}");
+    private static final Pattern NUMWANT_PTRN = Pattern.compile("\\{numwant}");
+    private static final Pattern PEER_ID_PTRN = Pattern.compile("\\{peerid}");
+    private static final Pattern EVENT_PTRN = Pattern.compile("\\{event}");
+    private static final Pattern KEY_PTRN = Pattern.compile("\\{key}");
+    private static final Pattern IP_PTRN = Pattern.compile("\\{ip}");
+    private static final Pattern IPV6_PTRN = Pattern.compile("\\{ipv6}");
+    private static final Pattern IP_Q_PTRN = Pattern.compile("&*\\w+=\\{ip(?:v6)?}");
+    private static final Pattern EVENT_Q_PTRN = Pattern.compile("&*\\w+=\\{event}");
+    private static final Pattern PLACEHOLDER_PTRN = Pattern.compile("\\{.*?}");
+
+    public static void main(final String[] args) throws IOException {
+        final String[] clientFiles = args.length == 0
+                ? new String[]{"qbittorrent-4.4.5.client", "deluge-2.0.3.client", "bittorrent-7.10.3_44429.client"}
+                : args;
+        final ObjectMapper mapper = new ObjectMapper();
+        final InfoHash infoHash = new InfoHash("abcdefghij0123456789".getBytes());
+        final TorrentSeedStats stats = new TorrentSeedStats();
+        final ConnectionHandler connectionHandler = mock(ConnectionHandler.class);
+        doReturn(49152).when(connectionHandler).getPort();
+        doReturn(InetAddress.getByName("203.0.113.7")).when(connectionHandler).getIpAddress();
+        final RequestEvent[] events = {RequestEvent.NONE, RequestEvent.STARTED};
+
+        for (final String clientFile : clientFiles) {
+            final BitTorrentClientConfig config = mapper.readValue(Paths.get("resources", "clients", clientFile).toFile(), BitTorrentClientConfig.class);
+            final BitTorrentClient client = new BitTorrentClient(
+                    config.getPeerIdGenerator(),
+                    config.getKeyGenerator(),
+                    config.getUrlEncoder(),
+                    config.getQuery(),
+                    ImmutableList.copyOf(config.getRequestHeaders()),
+                    new NumwantProvider(config.getNumwant(), config.getNumwantOnStop())
+            );
+
+            MicroBenchmark.run("regex replacements (" + clientFile + ")", OPS_PER_ROUND,
+                    i -> regexRequestQuery(client, config, events[i & 1], infoHash, stats, connectionHandler));
+            MicroBenchmark.run("query template     (" + clientFile + ")", OPS_PER_ROUND,
+                    i -> client.createRequestQuery(events[i & 1], infoHash, stats, connectionHandler));
+        }
+    }
+
+    /**
+     * The former {@link BitTorrentClient#createRequestQuery}: one regex replacement per placeholder on each announce.
+     */
+    private static String regexRequestQuery(final BitTorrentClient client, final BitTorrentClientConfig config, final RequestEvent event,
+                                            final InfoHash torrentInfoHash, final TorrentSeedStats stats,
+                                            final ConnectionHandler connectionHandler) {
+        final UrlEncoder urlEncoder = config.getUrlEncoder();
+        String q = INFOHASH_PTRN.matcher(client.getQuery()).replaceAll(urlEncoder.encode(torrentInfoHash.value()));
+        q = UPLOADED_PTRN.matcher(q).replaceAll(valueOf(stats.getUploaded()));
+        q = DOWNLOADED_PTRN.matcher(q).replaceAll(valueOf(stats.getDownloaded()));
+        q = LEFT_PTRN.matcher(q).replaceAll(valueOf(stats.getLeft()));
+        q = PORT_PTRN.matcher(q).replaceAll(valueOf(connectionHandler.getPort()));
+        q = NUMWANT_PTRN.matcher(q).replaceAll(valueOf(client.getNumwant(event)));
+
+        final String peerId = config.getPeerIdGenerator().isShouldUrlEncode()
+                ? urlEncoder.encode(client.getPeerId(torrentInfoHash, event))
+                : client.getPeerId(torrentInfoHash, event);
+        q = PEER_ID_PTRN.matcher(q).replaceAll(peerId);
+
+        final InetAddress addy = connectionHandler.getIpAddress();
+        if (q.contains("{ip}") && addy instanceof Inet4Address) {
+            q = IP_PTRN.matcher(q).replaceAll(addy.getHostAddress());
+        } else if (q.contains("{ipv6}") && addy instanceof Inet6Address) {
+            q = IPV6_PTRN.matcher(q).replaceAll(urlEncoder.encode(addy.getHostAddress()));
+        }
+        q = IP_Q_PTRN.matcher(q).replaceAll(EMPTY);
+
+        if (event == null || event == RequestEvent.NONE) {
+            q = EVENT_Q_PTRN.matcher(q).replaceAll(EMPTY);
+        } else {
+            q = EVENT_PTRN.matcher(q).replaceAll(event.getEventName());
+        }
+
+        if (q.contains("{key}")) {
+            final String key = client.getKey(torrentInfoHash, event)
+                    .orElseThrow(() -> new IllegalStateException("Client request query contains 'key' but BitTorrentClient does not have a key"));
+            q = KEY_PTRN.matcher(q).replaceAll(urlEncoder.encode(key));
+        }
+
+        final Matcher placeholderMatcher = PLACEHOLDER_PTRN.matcher(q);
+        if (placeholderMatcher.find()) {
+            throw new UnrecognizedClientPlaceholder("Placeholder [" + placeholderMatcher.group() + "] were not recognized while building announce URL");
+        }
+
+        if (q.endsWith("&")) {
+            q = q.substring(0, q.length() - 1);
+        }
+        if (q.startsWith("&")) {
+            q = q.substring(1);
+        }
+        return q;
+    }
+}
@@ -0,0 +1,41 @@
+package org.araymond.joal.core.client.emulated.generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The .client files shipped with joal, read as json trees.
+ */
+final class BundledClientFiles {
+    private static final Path CLIENTS_FOLDER = Paths.get("resources", "clients");
+
+    private BundledClientFiles() {
+    }
+
+    static List<JsonNode> readAll() throws IOException {
+        final ObjectMapper mapper = new ObjectMapper();
+        try (final Stream<Path> files = Files.list(CLIENTS_FOLDER)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(".client"))
+                    .sorted()
+                    .map(file -> {
+                        try {
+                            return mapper.readTree(file.toFile());
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .collect(toList());
+        }
+    }
+}
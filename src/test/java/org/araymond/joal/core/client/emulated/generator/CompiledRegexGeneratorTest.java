@@ -0,0 +1,120 @@
+package org.araymond.joal.core.client.emulated.generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mifmif.common.regex.Generex;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompiledRegexGeneratorTest {
+    private static final int GENERATED_PER_PATTERN = 2000;
+    private static final int SAMPLED_PER_GENERATOR = 5000;
+    /**
+     * The distributions differ if the chi-square statistic of a position exceeds its mean by this many standard
+     * deviations (p ~ 3e-7 per position), so that hundreds of positions can be compared without flaky failures.
+     */
+    private static final double CHI_SQUARE_Z = 5.0;
+
+    private static Set<String> bundledRegexPatterns() throws IOException {
+        final Set<String> patterns = new LinkedHashSet<>();
+        for (final JsonNode client : BundledClientFiles.readAll()) {
+            for (final String generator : new String[]{"peerIdGenerator", "keyGenerator"}) {
+                final JsonNode algorithm = client.path(generator).path("algorithm");
+                if ("REGEX".equals(algorithm.path("type").asText())) {
+                    patterns.add(algorithm.path("pattern").asText());
+                }
+            }
+        }
+        return patterns;
+    }
+
+    @Test
+    public void shouldCompileEveryBundledPatternIntoMatchingValues() throws IOException {
+        final Set<String> patterns = bundledRegexPatterns();
+        assertThat(patterns).isNotEmpty();
+
+        for (final String pattern : patterns) {
+            final Optional<CompiledRegexGenerator> generator = CompiledRegexGenerator.compile(pattern);
+            assertThat(generator).as("compiled %s", pattern).isPresent();
+
+            final Pattern regex = Pattern.compile(pattern);
+            for (int i = 0; i < GENERATED_PER_PATTERN; i++) {
+                final String value = generator.get().generate();
+                assertThat(regex.matcher(value).matches()).as("%s matches %s", value, pattern).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void shouldGenerateEveryAlternativeAndEveryCharacterOfAClass() {
+        final CompiledRegexGenerator generator = CompiledRegexGenerator.compile("(ab|cd)[x-z]").get();
+
+        final Set<String> values = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(generator.generate());
+        }
+
+        assertThat(values).containsExactlyInAnyOrder("abx", "aby", "abz", "cdx", "cdy", "cdz");
+    }
+
+    @Test
+    public void shouldPickTheCharactersOfEachPositionLikeGenerex() throws IOException {
+        final Set<String> patterns = bundledRegexPatterns();
+        patterns.add("(ab|cd|ef)[x-z]{3}");
+
+        for (final String pattern : patterns) {
+            final CompiledRegexGenerator compiled = CompiledRegexGenerator.compile(pattern).get();
+            final Generex generex = new Generex(pattern);
+            final String[] compiledValues = new String[SAMPLED_PER_GENERATOR];
+            final String[] generexValues = new String[SAMPLED_PER_GENERATOR];
+            for (int i = 0; i < SAMPLED_PER_GENERATOR; i++) {
+                compiledValues[i] = compiled.generate();
+                generexValues[i] = generex.random();
+                assertThat(compiledValues[i]).as("length of the values of %s", pattern).hasSameSizeAs(generexValues[i]);
+            }
+
+            for (int position = 0; position < compiledValues[0].length(); position++) {
+                final Map<Character, int[]> counts = new HashMap<>();
+                for (int i = 0; i < SAMPLED_PER_GENERATOR; i++) {
+                    counts.computeIfAbsent(compiledValues[i].charAt(position), c -> new int[2])[0]++;
+                    counts.computeIfAbsent(generexValues[i].charAt(position), c -> new int[2])[1]++;
+                }
+                if (counts.size() < 2) {
+                    continue;
+                }
+                // Both samples have the same size: the expected count of each is half the sum of the two
+                double chiSquare = 0;
+                for (final int[] count : counts.values()) {
+                    chiSquare += (double) (count[0] - count[1]) * (count[0] - count[1]) / (count[0] + count[1]);
+                }
+                assertThat(chiSquare).as("chi-square of position %d of %s", position, pattern)
+                        .isLessThan(chiSquareBound(counts.size() - 1));
+            }
+        }
+    }
+
+    /**
+     * Wilson-Hilferty approximation of the chi-square quantile lying {@link #CHI_SQUARE_Z} standard deviations above
+     * the mean.
+     */
+    private static double chiSquareBound(final int degreesOfFreedom) {
+        final double v = 2.0 / (9.0 * degreesOfFreedom);
+        return degreesOfFreedom * Math.pow(1 - v + CHI_SQUARE_Z * Math.sqrt(v), 3);
+    }
+
+    @Test
+    public void shouldNotCompileUnsupportedPatterns() {
+        for (final String pattern : new String[]{"", "[^a]{4}", "a+", "a*", "a?", "a{1,3}", "\\d{4}", "(ab|c)", "a|b", ".{3}", "[a-z"}) {
+            assertThat(CompiledRegexGenerator.compile(pattern)).as("compiled %s", pattern).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.araymond.joal.core.client.emulated.generator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.araymond.joal.core.client.emulated.utils.Casing;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static java.lang.String.valueOf;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UrlEncoderTest {
+
+    /**
+     * The regex based encoding UrlEncoder used before its byte table, kept as the reference.
+     */
+    private static String regexEncode(final String encodingExclusionPattern, final Casing encodedHexCase, final String toBeEncoded) {
+        final Pattern pattern = Pattern.compile(encodingExclusionPattern);
+        final StringBuilder sb = new StringBuilder();
+        for (final char ch : toBeEncoded.toCharArray()) {
+            if (pattern.matcher(valueOf(ch)).matches()) {
+                sb.append(ch);
+            } else {
+                final String hex = ch == 0 ? "%00" : format("%%%02x", (int) ch);
+                sb.append(encodedHexCase.toCase(hex));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Set<String> bundledExclusionPatterns() throws IOException {
+        final Set<String> patterns = new LinkedHashSet<>();
+        for (final JsonNode client : BundledClientFiles.readAll()) {
+            patterns.add(client.path("urlEncoder").path("encodingExclusionPattern").asText());
+        }
+        return patterns;
+    }
+
+    @Test
+    public void shouldEncodeEveryByteLikeTheRegexEncoder() throws IOException {
+        final Set<String> patterns = bundledExclusionPatterns();
+        assertThat(patterns).isNotEmpty();
+
+        final StringBuilder allBytes = new StringBuilder();
+        for (char ch = 0; ch < 256; ch++) {
+            allBytes.append(ch);
+        }
+        for (final String exclusionPattern : patterns) {
+            for (final Casing casing : Casing.values()) {
+                final UrlEncoder urlEncoder = new UrlEncoder(exclusionPattern, casing);
+                for (char ch = 0; ch < 256; ch++) {
+                    assertThat(urlEncoder.urlEncodeChar(ch))
+                            .as("byte %d with %s and %s case", (int) ch, exclusionPattern, casing)
+                            .isEqualTo(regexEncode(exclusionPattern, casing, valueOf(ch)));
+                }
+                assertThat(urlEncoder.encode(allBytes.toString()))
+                        .isEqualTo(regexEncode(exclusionPattern, casing, allBytes.toString()));
+            }
+        }
+    }
+
+    @Test
+    public void shouldEncodeCharactersOutsideOfTheByteRangeLikeTheRegexEncoder() {
+        final String exclusionPattern = "[A-Za-z0-9-]";
+        final String toBeEncoded = "a\u00e9\u20ac-\uffff\u0000";
+
+        for (final Casing casing : Casing.values()) {
+            assertThat(new UrlEncoder(exclusionPattern, casing).encode(toBeEncoded))
+                    .isEqualTo(regexEncode(exclusionPattern, casing, toBeEncoded));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.araymond.joal.core.ttorrent.client;
+
+import org.araymond.joal.MicroBenchmark;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalUnit;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Re-enqueue cost of {@link DelayQueue} against the {@code PriorityQueue.removeIf} queue it replaced, for a queue
+ * holding 1k, 10k and 100k torrents (or the sizes given as arguments). See {@link MicroBenchmark} to run it.
+ */
+public class DelayQueueBenchmark {
+    private static final int HEAP_OPS_PER_ROUND = 200_000;
+    /**
+     * The linear queue is measured on fewer ops, so that 100k torrents still completes in a few seconds.
+     */
+    private static final int LINEAR_OPS_BUDGET = 2_000_000;
+
+    public static void main(final String[] args) {
+        final int[] sizes = args.length == 0
+                ? new int[]{1_000, 10_000, 100_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        for (final int size : sizes) {
+            final Item[] items = items(size);
+            final int[] intervals = new Random(size).ints(HEAP_OPS_PER_ROUND, 1, 1800).toArray();
+
+            final LinearDelayQueue<Item> linear = new LinearDelayQueue<>();
+            final DelayQueue<Item> heap = new DelayQueue<>();
+            for (final Item item : items) {
+                linear.addOrReplace(item, 1800, ChronoUnit.SECONDS);
+                heap.addOrReplace(item, 1800, ChronoUnit.SECONDS);
+            }
+
+            MicroBenchmark.run("addOrReplace removeIf   (" + size + " torrents)", Math.max(20, LINEAR_OPS_BUDGET / size),
+                    i -> linear.addOrReplace(items[i * 7919 % size], intervals[i], ChronoUnit.SECONDS));
+            MicroBenchmark.run("addOrReplace heap+index (" + size + " torrents)", HEAP_OPS_PER_ROUND,
+                    i -> heap.addOrReplace(items[i * 7919 % size], intervals[i], ChronoUnit.SECONDS));
+        }
+    }
+
+    private static Item[] items(final int size) {
+        final Item[] items = new Item[size];
+        for (int i = 0; i < size; ++i) {
+            items[i] = new Item(new InfoHash(ByteBuffer.allocate(20).putInt(i).array()));
+        }
+        return items;
+    }
+
+    private static final class Item implements DelayScheduler.InfoHashAble {
+        private final InfoHash infoHash;
+
+        private Item(final InfoHash infoHash) {
+            this.infoHash = infoHash;
+        }
+
+        @Override
+        public InfoHash getInfoHash() {
+            return this.infoHash;
+        }
+    }
+
+    /**
+     * The re-enqueue path of the former DelayQueue: a linear {@code removeIf} then an insert, with wall-clock deadlines.
+     */
+    private static final class LinearDelayQueue<T extends DelayScheduler.InfoHashAble> {
+        private final Lock lock = new ReentrantLock();
+        private final Queue<IntervalAware<T>> queue = new PriorityQueue<>();
+
+        void addOrReplace(final T item, final int interval, final TemporalUnit unit) {
+            final IntervalAware<T> intervalAware = new IntervalAware<>(item, LocalDateTime.now().plus(interval, unit));
+            this.lock.lock();
+            try {
+                this.queue.removeIf(i -> i.item.getInfoHash().equals(item.getInfoHash()));
+                this.queue.add(intervalAware);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private static final class IntervalAware<T> implements Comparable<IntervalAware<T>> {
+            private final T item;
+            private final LocalDateTime releaseAt;
+
+            private IntervalAware(final T item, final LocalDateTime releaseAt) {
+                this.item = item;
+                this.releaseAt = releaseAt;
+            }
+
+            @Override
+            public int compareTo(final IntervalAware<T> o) {
+                return this.releaseAt.compareTo(o.releaseAt);
+            }
+        }
+    }
+}
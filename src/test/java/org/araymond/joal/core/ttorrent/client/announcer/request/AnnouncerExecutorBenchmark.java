@@ -0,0 +1,196 @@
+package org.araymond.joal.core.ttorrent.client.announcer.request;
+
+import com.sun.net.httpserver.HttpServer;
+import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.araymond.joal.MicroBenchmark;
+import org.araymond.joal.core.config.AnnouncerExecutorMode;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.araymond.joal.core.ttorrent.client.announcer.Announcer;
+import org.araymond.joal.core.ttorrent.client.announcer.exceptions.TooManyAnnouncesFailedInARowException;
+import org.araymond.joal.core.ttorrent.client.announcer.response.AnnounceResponseCallback;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Announces per second sustained by {@link AnnouncerExecutor} when 1k and 10k torrents (or the sizes given as
+ * arguments) announce at once against a local tracker stub answering after {@link #TRACKER_LATENCY_MS}. Each announce
+ * is a blocking GET through a pooled http client, limited to {@link #TRACKER_CONNECTIONS} like the one of the announcers.
+ * Measured for the platform pool, with and without the {@code maxInFlightAnnounces} cap, and for the virtual threads
+ * behind the cap when the JVM has them (Java 21+), otherwise they are reported as unmeasured.
+ * <p/>
+ * Virtual threads are only measured behind the cap, set to the pool size so that no announce waits for a connection,
+ * see {@link AnnouncerExecutor#DEFAULT_VIRTUAL_MAX_IN_FLIGHT_ANNOUNCES}.
+ * <p/>
+ * Announces are started with {@link AnnouncerExecutor#tryExecute(AnnounceRequest)}, retried a bit later when the cap is
+ * reached, as the client does. This is not a {@link MicroBenchmark}, but it runs the same way.
+ */
+public class AnnouncerExecutorBenchmark {
+    private static final long TRACKER_LATENCY_MS = 20;
+    private static final int PLATFORM_POOL_SIZE = 32;
+    /**
+     * Connections per tracker of the SeedManager http client pool.
+     */
+    private static final int TRACKER_CONNECTIONS = 100;
+    private static final int MAX_IN_FLIGHT_ANNOUNCES = TRACKER_CONNECTIONS;
+    private static final long STALLED_AFTER_SECONDS = 60;
+    private static final int WARMUP_ANNOUNCES = 1_000;
+    private static final long RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final byte[] ANNOUNCE_RESPONSE = "d8:completei10e10:incompletei10e8:intervali1800e5:peers0:e".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(final String[] args) throws Exception {
+        final int[] sizes = args.length == 0
+                ? new int[]{1_000, 10_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        final boolean virtualThreads = VirtualThreads.newThreadPerTaskExecutor("probe-").map(probe -> {
+            probe.shutdown();
+            return true;
+        }).orElse(false);
+
+        // platform threads, so that the stub does not compete with the announces for the virtual thread carriers
+        final ExecutorService trackerThreads = Executors.newCachedThreadPool();
+        // the stub writes the headers then the body, Nagle's algorithm would hold the body until the delayed ack
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        final HttpServer tracker = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), TRACKER_CONNECTIONS);
+        tracker.createContext("/announce", exchange -> {
+            try {
+                Thread.sleep(TRACKER_LATENCY_MS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, ANNOUNCE_RESPONSE.length);
+            try (final OutputStream body = exchange.getResponseBody()) {
+                body.write(ANNOUNCE_RESPONSE);
+            }
+        });
+        tracker.setExecutor(trackerThreads);
+        tracker.start();
+
+        final PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
+        connManager.setDefaultMaxPerRoute(TRACKER_CONNECTIONS);
+        connManager.setMaxTotal(TRACKER_CONNECTIONS);
+        connManager.setValidateAfterInactivity(1000);
+        // no connection request timeout: thousands of virtual threads may wait for one of the pooled connections
+        final RequestConfig requestConf = RequestConfig.custom().setConnectTimeout(10_000).setSocketTimeout(5000).build();
+        final URI announceUri = URI.create("http://" + tracker.getAddress().getHostString() + ':' + tracker.getAddress().getPort() + "/announce");
+
+        System.out.println(String.format(Locale.ROOT, "java %s, tracker latency %d ms", System.getProperty("java.version"), TRACKER_LATENCY_MS));
+        try (final CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(connManager).setDefaultRequestConfig(requestConf).build()) {
+            for (final int size : sizes) {
+                final Announcer[] announcers = announcers(size, httpClient, announceUri);
+                run("PLATFORM pool " + PLATFORM_POOL_SIZE, AnnouncerExecutorMode.PLATFORM, 0, announcers);
+                run("PLATFORM pool " + PLATFORM_POOL_SIZE + ", cap " + MAX_IN_FLIGHT_ANNOUNCES, AnnouncerExecutorMode.PLATFORM, MAX_IN_FLIGHT_ANNOUNCES, announcers);
+                if (virtualThreads) {
+                    run("VIRTUAL, cap " + MAX_IN_FLIGHT_ANNOUNCES, AnnouncerExecutorMode.VIRTUAL, MAX_IN_FLIGHT_ANNOUNCES, announcers);
+                } else {
+                    System.out.println(String.format(Locale.ROOT, "%-50s %14s", "VIRTUAL, cap " + MAX_IN_FLIGHT_ANNOUNCES + " (" + size + " torrents)", "unmeasured, requires Java 21+"));
+                }
+            }
+        } finally {
+            tracker.stop(0);
+            trackerThreads.shutdownNow();
+        }
+    }
+
+    private static void run(final String label, final AnnouncerExecutorMode mode, final int maxInFlightAnnounces,
+                            final Announcer[] announcers) throws InterruptedException {
+        final CountingCallback callback = new CountingCallback();
+        final AnnouncerExecutor executor = new AnnouncerExecutor(callback, mode, PLATFORM_POOL_SIZE, maxInFlightAnnounces);
+        try {
+            announcesPerSecond(executor, callback, Arrays.copyOf(announcers, Math.min(WARMUP_ANNOUNCES, announcers.length)));
+            final double announcesPerSecond = announcesPerSecond(executor, callback, announcers);
+            System.out.println(String.format(Locale.ROOT, "%-50s %,14.0f announces/s%s", label + " (" + announcers.length + " torrents)",
+                    announcesPerSecond, callback.failures.get() == 0 ? "" : " (" + callback.failures.get() + " failed)"));
+        } finally {
+            executor.awaitForRunningTasks();
+        }
+    }
+
+    private static double announcesPerSecond(final AnnouncerExecutor executor, final CountingCallback callback,
+                                             final Announcer[] announcers) throws InterruptedException {
+        callback.expect(announcers.length);
+        final long start = System.nanoTime();
+        for (final Announcer announcer : announcers) {
+            final AnnounceRequest request = AnnounceRequest.createRegular(announcer);
+            while (!executor.tryExecute(request)) {
+                LockSupport.parkNanos(RETRY_NANOS);
+            }
+        }
+        callback.await();
+        return announcers.length * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static Announcer[] announcers(final int size, final CloseableHttpClient httpClient, final URI announceUri) throws Exception {
+        final Announcer[] announcers = new Announcer[size];
+        for (int i = 0; i < size; ++i) {
+            final Announcer announcer = mock(Announcer.class);
+            doReturn(new InfoHash(ByteBuffer.allocate(20).putInt(i).array())).when(announcer).getTorrentInfoHash();
+            doReturn(false).when(announcer).isAsyncAnnounceSupported();
+            doAnswer(invocation -> httpClient.execute(new HttpGet(announceUri), response -> {
+                EntityUtils.consume(response.getEntity());
+                return new SuccessAnnounceResponse(1800, 10, 10);
+            })).when(announcer).announce(any());
+            announcers[i] = announcer;
+        }
+        return announcers;
+    }
+
+    private static final class CountingCallback implements AnnounceResponseCallback {
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile CountDownLatch completed;
+
+        void expect(final int announces) {
+            this.failures.set(0);
+            this.completed = new CountDownLatch(announces);
+        }
+
+        void await() throws InterruptedException {
+            if (!this.completed.await(STALLED_AFTER_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException(this.completed.getCount() + " announces still running after " + STALLED_AFTER_SECONDS + "s");
+            }
+        }
+
+        @Override
+        public void onAnnounceWillAnnounce(final RequestEvent event, final Announcer announcer) {
+        }
+
+        @Override
+        public void onAnnounceSuccess(final RequestEvent event, final Announcer announcer, final SuccessAnnounceResponse result) {
+            this.completed.countDown();
+        }
+
+        @Override
+        public void onAnnounceFailure(final RequestEvent event, final Announcer announcer, final Throwable throwable) {
+            this.failures.incrementAndGet();
+            this.completed.countDown();
+        }
+
+        @Override
+        public void onTooManyAnnounceFailedInARow(final RequestEvent event, final Announcer announcer, final TooManyAnnouncesFailedInARowException e) {
+            this.onAnnounceFailure(event, announcer, e);
+        }
+    }
+}
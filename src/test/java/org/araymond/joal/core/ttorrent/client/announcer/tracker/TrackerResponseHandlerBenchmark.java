@@ -0,0 +1,98 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import com.turn.ttorrent.common.protocol.http.HTTPTrackerMessage;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.araymond.joal.MicroBenchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Announce response handling of {@link TrackerResponseHandler} against the ttorrent {@link HTTPTrackerMessage} parsing
+ * it replaced, for responses carrying 50 and 200 compact peers plus as many peers6 entries. See {@link MicroBenchmark}
+ * to run it.
+ */
+public class TrackerResponseHandlerBenchmark {
+    private static final int OPS_PER_ROUND = 20_000;
+
+    public static void main(final String[] args) {
+        final TrackerResponseHandler handler = new TrackerResponseHandler(512 * 1024);
+        for (final int peers : new int[]{50, 200}) {
+            final byte[] body = announceResponse(peers);
+            final String size = " (" + peers + " peers, " + body.length + " bytes)";
+
+            MicroBenchmark.run("parse HTTPTrackerMessage" + size, OPS_PER_ROUND, i -> {
+                try {
+                    HTTPTrackerMessage.parse(ByteBuffer.wrap(body));
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            MicroBenchmark.run("parse BencodeReader     " + size, OPS_PER_ROUND, i -> {
+                try {
+                    handler.parse(body);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            MicroBenchmark.run("handle copy + ttorrent  " + size, OPS_PER_ROUND, i -> {
+                try {
+                    copyThenParse(httpResponse(body));
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            MicroBenchmark.run("handle stream + reader  " + size, OPS_PER_ROUND, i -> {
+                try {
+                    handler.handleResponse(httpResponse(body));
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * The former handler: the entity is copied into a ByteArrayOutputStream, copied again, then fully decoded.
+     */
+    private static HTTPTrackerMessage copyThenParse(final HttpResponse response) throws Exception {
+        final long contentLength = response.getEntity().getContentLength();
+        try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(contentLength < 1 ? 1024 : (int) contentLength)) {
+            response.getEntity().writeTo(outputStream);
+            return HTTPTrackerMessage.parse(ByteBuffer.wrap(outputStream.toByteArray()));
+        }
+    }
+
+    private static HttpResponse httpResponse(final byte[] body) {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new ByteArrayEntity(body));
+        return response;
+    }
+
+    private static byte[] announceResponse(final int peers) {
+        final byte[] compactPeers = new byte[peers * 6];
+        final byte[] compactPeers6 = new byte[peers * 18];
+        ThreadLocalRandom.current().nextBytes(compactPeers);
+        ThreadLocalRandom.current().nextBytes(compactPeers6);
+
+        final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        write(out, "d8:completei" + peers + "e10:incompletei" + peers / 4 + "e8:intervali1800e12:min intervali900e5:peers");
+        write(out, compactPeers.length + ":");
+        out.write(compactPeers, 0, compactPeers.length);
+        write(out, "6:peers6" + compactPeers6.length + ":");
+        out.write(compactPeers6, 0, compactPeers6.length);
+        write(out, "e");
+        return out.toByteArray();
+    }
+
+    private static void write(final java.io.ByteArrayOutputStream out, final String ascii) {
+        final byte[] bytes = ascii.getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes, 0, bytes.length);
+    }
+}
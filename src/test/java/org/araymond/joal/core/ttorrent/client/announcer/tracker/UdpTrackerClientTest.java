@@ -0,0 +1,199 @@
+package org.araymond.joal.core.ttorrent.client.announcer.tracker;
+
+import com.turn.ttorrent.client.announce.AnnounceException;
+import com.turn.ttorrent.common.protocol.TrackerMessage.AnnounceRequestMessage.RequestEvent;
+import org.araymond.joal.core.torrent.torrent.InfoHash;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class UdpTrackerClientTest {
+    private static final long PROTOCOL_ID = 0x41727101980L;
+    private static final long CONNECTION_ID = 0x0102030405060708L;
+
+    private UdpTrackerStub tracker;
+    private UdpTrackerClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        this.tracker = new UdpTrackerStub();
+        this.client = new UdpTrackerClient(Duration.ofMillis(50), 2);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        this.client.close();
+        this.tracker.close();
+    }
+
+    @Test
+    public void shouldConnectOnceThenAnnounce() throws Exception {
+        final byte[] infoHash = bytes(20, 1);
+        this.tracker.onRequest(request -> {
+            assertThat(request.getLong(0)).isEqualTo(CONNECTION_ID);
+            final byte[] sentInfoHash = new byte[20];
+            request.position(16);
+            request.get(sentInfoHash);
+            assertThat(sentInfoHash).containsExactly(infoHash);
+            assertThat(request.getInt(80)).isEqualTo(2);  // started
+            return ByteBuffer.allocate(20).putInt(1).putInt(request.getInt(12)).putInt(1800).putInt(5).putInt(8).flip();
+        });
+
+        final UdpAnnounceRequest request = new UdpAnnounceRequest(infoHash, bytes(20, 2), 0, 0, 1024, RequestEvent.STARTED, 42, 200, 6881);
+        final UdpAnnounceResponse first = this.client.announce(this.tracker.getUri(), request).get(5, TimeUnit.SECONDS);
+        final UdpAnnounceResponse second = this.client.announce(this.tracker.getUri(), request).get(5, TimeUnit.SECONDS);
+
+        assertThat(first.getInterval()).isEqualTo(1800);
+        assertThat(first.getLeechers()).isEqualTo(5);
+        assertThat(first.getSeeders()).isEqualTo(8);
+        assertThat(second.getInterval()).isEqualTo(1800);
+        // the connection id is cached for a minute
+        assertThat(this.tracker.getReceivedActions()).containsExactly(0, 1, 1);
+    }
+
+    @Test
+    public void shouldScrapeSeveralTorrentsAtOnce() throws Exception {
+        final InfoHash first = new InfoHash(bytes(20, 1));
+        final InfoHash second = new InfoHash(bytes(20, 2));
+        this.tracker.onRequest(request -> {
+            assertThat(request.limit()).isEqualTo(16 + 2 * 20);
+            // seeders, completed, leechers for each info hash, in request order
+            return ByteBuffer.allocate(32).putInt(2).putInt(request.getInt(12))
+                    .putInt(10).putInt(100).putInt(3)
+                    .putInt(20).putInt(200).putInt(6)
+                    .flip();
+        });
+
+        final Map<InfoHash, TorrentScrapeStats> stats = this.client.scrape(this.tracker.getUri(), List.of(first, second)).get(5, TimeUnit.SECONDS);
+
+        assertThat(stats).hasSize(2);
+        assertThat(stats.get(first).getComplete()).isEqualTo(10);
+        assertThat(stats.get(first).getDownloaded()).isEqualTo(100);
+        assertThat(stats.get(first).getIncomplete()).isEqualTo(3);
+        assertThat(stats.get(second).getComplete()).isEqualTo(20);
+        assertThat(stats.get(second).getDownloaded()).isEqualTo(200);
+        assertThat(stats.get(second).getIncomplete()).isEqualTo(6);
+    }
+
+    @Test
+    public void shouldRetransmitThenTimeOut() {
+        this.tracker.onRequest(request -> null);
+
+        final UdpAnnounceRequest request = new UdpAnnounceRequest(bytes(20, 1), bytes(20, 2), 0, 0, 0, RequestEvent.NONE, 42, 200, 6881);
+
+        assertThatThrownBy(() -> this.client.announce(this.tracker.getUri(), request).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SocketTimeoutException.class);
+        // first attempt then two retransmissions, after 50ms and 100ms
+        assertThat(this.tracker.getReceivedActions()).containsExactly(0, 1, 1, 1);
+    }
+
+    @Test
+    public void shouldFailWithTheTrackerErrorMessage() {
+        this.tracker.onRequest(request -> {
+            final byte[] message = "unregistered torrent".getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(8 + message.length).putInt(3).putInt(request.getInt(12)).put(message).flip();
+        });
+
+        final UdpAnnounceRequest request = new UdpAnnounceRequest(bytes(20, 1), bytes(20, 2), 0, 0, 0, RequestEvent.NONE, 42, 200, 6881);
+
+        assertThatThrownBy(() -> this.client.announce(this.tracker.getUri(), request).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(AnnounceException.class)
+                .hasMessageContaining("unregistered torrent");
+    }
+
+    private static byte[] bytes(final int length, final int value) {
+        final byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    /**
+     * In-process tracker answering the connect requests itself, and the other requests with the handler of the test.
+     * The handler returns null to leave a request unanswered.
+     */
+    private static final class UdpTrackerStub implements Closeable {
+        private final DatagramSocket socket;
+        private final Thread thread;
+        private final List<Integer> receivedActions = new CopyOnWriteArrayList<>();
+        private volatile Function<ByteBuffer, ByteBuffer> handler = request -> null;
+
+        private UdpTrackerStub() throws IOException {
+            this.socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            this.thread = new Thread(this::serve, "udp-tracker-stub");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private URI getUri() {
+            return URI.create("udp://127.0.0.1:" + this.socket.getLocalPort() + "/announce");
+        }
+
+        private List<Integer> getReceivedActions() {
+            return this.receivedActions;
+        }
+
+        private void onRequest(final Function<ByteBuffer, ByteBuffer> handler) {
+            this.handler = handler;
+        }
+
+        private void serve() {
+            final byte[] buffer = new byte[2048];
+            while (!this.socket.isClosed()) {
+                try {
+                    final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    this.socket.receive(packet);
+                    final ByteBuffer request = ByteBuffer.wrap(Arrays.copyOf(packet.getData(), packet.getLength()));
+                    final int action = request.getInt(8);
+                    this.receivedActions.add(action);
+                    final ByteBuffer response = action == 0
+                            ? this.connectResponse(request)
+                            : this.handler.apply(request);
+                    if (response != null) {
+                        this.socket.send(new DatagramPacket(response.array(), response.limit(), packet.getSocketAddress()));
+                    }
+                } catch (final IOException e) {
+                    return;  // closed
+                }
+            }
+        }
+
+        private ByteBuffer connectResponse(final ByteBuffer request) {
+            assertThat(request.getLong(0)).isEqualTo(PROTOCOL_ID);
+            return ByteBuffer.allocate(16).putInt(0).putInt(request.getInt(12)).putLong(CONNECTION_ID).flip();
+        }
+
+        @Override
+        public void close() {
+            this.socket.close();
+            try {
+                this.thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}